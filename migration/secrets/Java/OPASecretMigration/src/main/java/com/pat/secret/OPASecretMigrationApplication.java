@@ -6,12 +6,18 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
 
 import com.pat.secret.bo.OPASecretServicesBO;
+import com.pat.secret.bo.RunReportBO;
+import com.pat.secret.bo.StagedMigrationBO;
+import com.pat.secret.bo.VaultInventoryBO;
+import com.pat.secret.utility.ShardAssignment;
 
 @SpringBootApplication
 public class OPASecretMigrationApplication implements CommandLineRunner {
 
 	public static void main(String[] args) {
-		ConfigurableApplicationContext context = SpringApplication.run(OPASecretMigrationApplication.class, args);
+		// --shard-index=i --shard-count=n migrate one shard of a run split over n processes
+		ConfigurableApplicationContext context = SpringApplication.run(OPASecretMigrationApplication.class,
+				ShardAssignment.withShardProperties(args));
 		context.close();
 	}
 
@@ -19,8 +25,32 @@ public class OPASecretMigrationApplication implements CommandLineRunner {
 	public void run(String... args) throws Exception {
 
 		try {
-			OPASecretServicesBO opaSecretServicesBO = new OPASecretServicesBO();
-			opaSecretServicesBO.migrateHashicorpSecret();
+			VaultInventoryBO vaultInventoryBO = new VaultInventoryBO();
+			// --dry-run only takes the inventory, nothing is written to OPA
+			if (vaultInventoryBO.isDryRun(args)) {
+				vaultInventoryBO.runDryRun();
+				return;
+			}
+			RunReportBO runReportBO = new RunReportBO();
+			// --merge-reports combines the reports of all shards once they are done
+			if (runReportBO.isMergeReports(args)) {
+				runReportBO.mergeShardReports();
+				return;
+			}
+			StagedMigrationBO stagedMigrationBO = new StagedMigrationBO();
+			// --extract stages the encrypted secrets, a later --load sends them to OPA
+			if (stagedMigrationBO.isExtract(args)) {
+				stagedMigrationBO.extract();
+				return;
+			}
+			long startedAtMillis = System.currentTimeMillis();
+			if (stagedMigrationBO.isLoad(args)) {
+				stagedMigrationBO.load();
+			} else {
+				OPASecretServicesBO opaSecretServicesBO = new OPASecretServicesBO();
+				opaSecretServicesBO.migrateHashicorpSecret();
+			}
+			runReportBO.writeRunReport(startedAtMillis);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -0,0 +1,85 @@
+package com.pat.secret.bo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.Payload;
+import com.pat.secret.bo.OPAKeyCache.EncryptionKey;
+import com.pat.secret.utility.MigrationMetrics;
+
+/**
+ * Encrypts secret data into compact JWE (RSA-OAEP-256 + A256GCM). This is the
+ * CPU bound part of a migration, it runs on the encrypt stage workers which are
+ * sized to the available cores and never block on the network.
+ *
+ * The RSAEncrypter and JWEHeader of a key are built once by OPAKeyCache and
+ * shared by every worker: RSAEncrypter is thread safe, it creates a new JCA
+ * cipher for every encryption, and JWEHeader is immutable.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class JWEEncryptionService {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(JWEEncryptionService.class);
+
+	private static MigrationMetrics migrationMetrics;
+
+	@Autowired
+	private void setMigrationMetrics(MigrationMetrics migrationMetrics) {
+		JWEEncryptionService.migrationMetrics = migrationMetrics;
+	}
+
+	public JWEEncryptionService() {
+
+	}
+
+	/**
+	 * Number of encrypt workers to start
+	 *
+	 * @param configuredWorkers - register.migration.encryptWorkers, 0 or less for one per core
+	 * @return int - worker count
+	 */
+	public static int resolveWorkers(int configuredWorkers) {
+		if (configuredWorkers > 0) {
+			return configuredWorkers;
+		}
+		return Math.max(1, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Encrypt secret data with a cached OPA key
+	 *
+	 * @param secretData
+	 * @param key
+	 * @return String - JWE in compact serialization
+	 * @throws JOSEException
+	 */
+	public String encrypt(String secretData, EncryptionKey key) throws JOSEException {
+		if (key == null) {
+			throw new IllegalStateException("No OPA public key available");
+		}
+		long startNanos = migrationMetrics.start(MigrationMetrics.SYSTEM_JWE, "encrypt");
+		String status = MigrationMetrics.STATUS_OK;
+		try {
+			JWEObject encrypted_data = new JWEObject(key.getHeader(), new Payload(secretData));
+			encrypted_data.encrypt(key.getEncrypter());
+			LOGGER.trace("encrypt Encrypted secret with kid " + key.getKid());
+			// Serialize the JWE to compact form
+			return encrypted_data.serialize();
+		} catch (JOSEException | RuntimeException e) {
+			status = e.getClass().getSimpleName();
+			throw e;
+		} finally {
+			migrationMetrics.stop(MigrationMetrics.SYSTEM_JWE, "encrypt", startNanos, status);
+		}
+	}
+
+}
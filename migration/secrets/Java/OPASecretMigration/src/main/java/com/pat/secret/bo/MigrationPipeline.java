@@ -0,0 +1,239 @@
+package com.pat.secret.bo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.pat.secret.vo.MigrationItem;
+
+/**
+ * Multi stage pipeline used to migrate secrets. Every stage owns its own pool
+ * of workers and hands its output to the next stage through a bounded queue,
+ * so Vault reads, JWE encryption and OPA creates overlap with each other.
+ *
+ * @author rajeshkumar
+ *
+ */
+public class MigrationPipeline {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(MigrationPipeline.class);
+
+	// Marker put on a queue once the upstream stage has no more items to hand over
+	private static final MigrationItem END_OF_STREAM = new MigrationItem();
+
+	private final String name;
+	private final int sourceCapacity;
+	private final int queueCapacity;
+	private final List<Stage> stages = new ArrayList<Stage>(3);
+	private BlockingQueue<MigrationItem> sourceQueue;
+
+	/**
+	 * @param name
+	 * @param sourceCapacity - capacity of the queue feeding the first stage
+	 * @param queueCapacity - capacity of the queues between stages
+	 */
+	public MigrationPipeline(String name, int sourceCapacity, int queueCapacity) {
+		this.name = name;
+		this.sourceCapacity = Math.max(1, sourceCapacity);
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	/**
+	 * Add a stage to the end of the pipeline. A task returning null drops the
+	 * item, it is not handed over to the next stage.
+	 *
+	 * @param stageName
+	 * @param workers
+	 * @param task
+	 * @return MigrationPipeline - this pipeline
+	 */
+	public MigrationPipeline addStage(String stageName, int workers, Function<MigrationItem, MigrationItem> task) {
+		if (sourceQueue != null) {
+			throw new IllegalStateException("Pipeline " + name + " is already started");
+		}
+		stages.add(new Stage(stageName, Math.max(1, workers), task));
+		return this;
+	}
+
+	/**
+	 * Wire the stage queues together and start all workers
+	 */
+	public void start() {
+		LOGGER.info("start Starting pipeline " + name + " with " + stages.size() + " stages");
+		BlockingQueue<MigrationItem> input = new ArrayBlockingQueue<MigrationItem>(sourceCapacity);
+		sourceQueue = input;
+		for (int i = 0; i < stages.size(); i++) {
+			Stage stage = stages.get(i);
+			BlockingQueue<MigrationItem> output = null;
+			if (i < stages.size() - 1) {
+				output = new ArrayBlockingQueue<MigrationItem>(queueCapacity);
+			}
+			stage.start(input, output);
+			input = output;
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return List of stage names in pipeline order
+	 */
+	public List<String> getStageNames() {
+		List<String> stageNames = new ArrayList<String>(stages.size());
+		for (Stage stage : stages) {
+			stageNames.add(stage.stageName);
+		}
+		return stageNames;
+	}
+
+	/**
+	 * @param stageName
+	 * @return int - items waiting for the stage, 0 before start
+	 */
+	public int getQueueDepth(String stageName) {
+		Stage stage = getStage(stageName);
+		return stage == null || stage.input == null ? 0 : stage.input.size();
+	}
+
+	/**
+	 * @param stageName
+	 * @return int - workers of the stage processing an item
+	 */
+	public int getBusyWorkers(String stageName) {
+		Stage stage = getStage(stageName);
+		return stage == null ? 0 : stage.busy.get();
+	}
+
+	private Stage getStage(String stageName) {
+		for (Stage stage : stages) {
+			if (stage.stageName.equals(stageName)) {
+				return stage;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Hand an item to the first stage, blocks while the source queue is full.
+	 * Safe to call from several producer threads.
+	 *
+	 * @param item
+	 * @throws InterruptedException
+	 */
+	public void submit(MigrationItem item) throws InterruptedException {
+		sourceQueue.put(item);
+	}
+
+	/**
+	 * Signal that no more items will be submitted and wait until every stage
+	 * has drained
+	 *
+	 * @throws InterruptedException
+	 */
+	public void complete() throws InterruptedException {
+		sourceQueue.put(END_OF_STREAM);
+		for (Stage stage : stages) {
+			stage.awaitTermination();
+		}
+		LOGGER.info("complete Pipeline " + name + " drained");
+	}
+
+	/**
+	 * Abort the pipeline, items still queued are discarded
+	 */
+	public void shutdownNow() {
+		for (Stage stage : stages) {
+			stage.executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * One pipeline stage with its own workers
+	 */
+	private class Stage {
+
+		private final String stageName;
+		private final int workers;
+		private final Function<MigrationItem, MigrationItem> task;
+		private final AtomicInteger running = new AtomicInteger();
+		private final AtomicInteger busy = new AtomicInteger();
+		private volatile BlockingQueue<MigrationItem> input;
+		private ExecutorService executor;
+
+		private Stage(String stageName, int workers, Function<MigrationItem, MigrationItem> task) {
+			this.stageName = stageName;
+			this.workers = workers;
+			this.task = task;
+		}
+
+		private void start(final BlockingQueue<MigrationItem> input, final BlockingQueue<MigrationItem> output) {
+			this.input = input;
+			final AtomicInteger threadCount = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(workers, runnable -> {
+				Thread thread = new Thread(runnable, name + "-" + stageName + "-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			running.set(workers);
+			for (int i = 0; i < workers; i++) {
+				executor.execute(() -> work(input, output));
+			}
+			executor.shutdown();
+		}
+
+		private void work(BlockingQueue<MigrationItem> input, BlockingQueue<MigrationItem> output) {
+			try {
+				while (true) {
+					MigrationItem item = input.take();
+					if (item == END_OF_STREAM) {
+						// Put the marker back so the sibling workers stop as well
+						input.put(END_OF_STREAM);
+						break;
+					}
+					MigrationItem result = null;
+					busy.incrementAndGet();
+					try {
+						result = task.apply(item);
+					} catch (Exception e) {
+						LOGGER.error("work " + stageName + " failed for " + item + " >>> " + e.getMessage());
+					} finally {
+						busy.decrementAndGet();
+					}
+					if (result != null && output != null) {
+						output.put(result);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				// Last worker out tells the next stage that this stage is drained
+				if (running.decrementAndGet() == 0 && output != null) {
+					try {
+						output.put(END_OF_STREAM);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}
+
+		private void awaitTermination() throws InterruptedException {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				LOGGER.debug("awaitTermination Waiting for stage " + stageName + " of pipeline " + name);
+			}
+		}
+	}
+
+}
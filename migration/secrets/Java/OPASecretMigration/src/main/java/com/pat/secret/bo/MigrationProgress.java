@@ -0,0 +1,311 @@
+package com.pat.secret.bo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.EngineReport;
+import com.pat.secret.vo.Migration;
+import com.pat.secret.vo.Shard;
+
+/**
+ * Live progress of the secret engines being migrated. Migration threads only
+ * bump LongAdder counters, a single scheduled thread reads them every
+ * progressIntervalSeconds and logs secrets done and remaining, the rolling
+ * rate over progressWindowSeconds and the ETA.
+ *
+ * The total of an engine grows while its metadata is still being crawled, the
+ * total, remaining and ETA are then lower bounds and marked with a +.
+ *
+ * The final counters of every finished engine are kept for the run report.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class MigrationProgress {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(MigrationProgress.class);
+
+	private static RegisterProperties regProps;
+
+	private final Map<String, EngineProgress> engines = new ConcurrentHashMap<String, EngineProgress>();
+
+	private final List<EngineReport> finishedEngines = new CopyOnWriteArrayList<EngineReport>();
+
+	private ScheduledExecutorService reporter;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		MigrationProgress.regProps = regProps;
+	}
+
+	public MigrationProgress() {
+
+	}
+
+	@PostConstruct
+	private void postConstruct() {
+		int intervalSeconds = regProps.getMigration().getProgressIntervalSeconds();
+		if (intervalSeconds <= 0) {
+			LOGGER.info("postConstruct Progress reporting disabled");
+			return;
+		}
+		reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "migration-progress");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		reporter.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	private void preDestroy() {
+		if (reporter != null) {
+			reporter.shutdownNow();
+		}
+	}
+
+	/**
+	 * Start tracking a secret engine
+	 *
+	 * @param secretEngine
+	 */
+	public void startEngine(String secretEngine) {
+		engines.put(secretEngine, new EngineProgress(secretEngine));
+	}
+
+	/**
+	 * Log the final progress of a secret engine and stop tracking it
+	 *
+	 * @param secretEngine
+	 */
+	public void finishEngine(String secretEngine) {
+		EngineProgress progress = engines.remove(secretEngine);
+		if (progress != null) {
+			progress.crawlComplete = true;
+			long nowNanos = System.nanoTime();
+			finishedEngines.add(progress.toReport(nowNanos));
+			LOGGER.info("finishEngine " + describe(progress, nowNanos, true));
+		}
+	}
+
+	/**
+	 * @return List - final counters of the engines finished so far
+	 */
+	public List<EngineReport> getFinishedEngines() {
+		return new ArrayList<EngineReport>(finishedEngines);
+	}
+
+	/**
+	 * A secret path was found by the crawler
+	 */
+	public void discovered(String secretEngine) {
+		EngineProgress progress = engines.get(secretEngine);
+		if (progress != null) {
+			progress.discovered.increment();
+		}
+	}
+
+	/**
+	 * The crawler listed every folder of the engine, the total is final
+	 */
+	public void crawlComplete(String secretEngine) {
+		EngineProgress progress = engines.get(secretEngine);
+		if (progress != null) {
+			progress.crawlComplete = true;
+		}
+	}
+
+	/**
+	 * A secret was created or updated in OPA
+	 */
+	public void migrated(String secretEngine) {
+		EngineProgress progress = engines.get(secretEngine);
+		if (progress != null) {
+			progress.migrated.increment();
+		}
+	}
+
+	/**
+	 * A secret needed no work, already migrated or unchanged since the last sync
+	 */
+	public void skipped(String secretEngine) {
+		EngineProgress progress = engines.get(secretEngine);
+		if (progress != null) {
+			progress.skipped.increment();
+		}
+	}
+
+	/**
+	 * A folder could not be listed by the crawler, its secrets are neither
+	 * discovered nor migrated
+	 */
+	public void failedFolder(String secretEngine) {
+		EngineProgress progress = engines.get(secretEngine);
+		if (progress != null) {
+			progress.failedFolders.increment();
+		}
+	}
+
+	/**
+	 * A secret could not be migrated
+	 */
+	public void failed(String secretEngine) {
+		EngineProgress progress = engines.get(secretEngine);
+		if (progress != null) {
+			progress.failed.increment();
+		}
+	}
+
+	/**
+	 * Runs on the reporter thread only
+	 */
+	private void report() {
+		try {
+			long nowNanos = System.nanoTime();
+			for (EngineProgress progress : engines.values()) {
+				LOGGER.info("report " + describe(progress, nowNanos, false));
+			}
+		} catch (Exception e) {
+			LOGGER.error("report >>> " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @param progress
+	 * @param nowNanos
+	 * @param finished - true for the summary line of a finished engine
+	 * @return String - one progress line
+	 */
+	private String describe(EngineProgress progress, long nowNanos, boolean finished) {
+		Migration migration = regProps.getMigration();
+		long migrated = progress.migrated.sum();
+		long skipped = progress.skipped.sum();
+		long failed = progress.failed.sum();
+		long done = migrated + skipped + failed;
+		// Read the total last, an item is always discovered before it is done
+		long total = Math.max(done, progress.discovered.sum());
+		long remaining = total - done;
+		String open = progress.crawlComplete ? "" : "+";
+		double elapsedSeconds = (nowNanos - progress.startNanos) / 1e9;
+		StringBuilder line = new StringBuilder(192);
+		Shard shard = regProps.getShard();
+		if (shard.isSharded()) {
+			line.append("shard=").append(shard.getIndex()).append('/').append(shard.getCount()).append(' ');
+		}
+		line.append("engine=").append(progress.secretEngine);
+		line.append(" done=").append(done).append('/').append(total).append(open);
+		if (total > 0) {
+			line.append(String.format(Locale.ROOT, " (%.1f%%)", 100.0 * done / total));
+		}
+		line.append(" migrated=").append(migrated).append(" skipped=").append(skipped).append(" failed=")
+				.append(failed);
+		long failedFolders = progress.failedFolders.sum();
+		if (failedFolders > 0) {
+			line.append(" failedFolders=").append(failedFolders);
+		}
+		if (finished) {
+			line.append(String.format(Locale.ROOT, " elapsed=%s rate=%.1f/s", formatDuration(elapsedSeconds),
+					elapsedSeconds > 0 ? done / elapsedSeconds : 0));
+			return line.toString();
+		}
+		double rate = progress.rollingRate(nowNanos, done,
+				TimeUnit.SECONDS.toNanos(Math.max(1, migration.getProgressWindowSeconds())));
+		line.append(" remaining=").append(remaining).append(open);
+		line.append(String.format(Locale.ROOT, " rate=%.1f/s", rate));
+		line.append(" eta=").append(rate > 0 ? formatDuration(remaining / rate) + open : "unknown");
+		return line.toString();
+	}
+
+	/**
+	 * @param seconds
+	 * @return String - duration as h:mm:ss
+	 */
+	static String formatDuration(double seconds) {
+		long total = (long) Math.ceil(seconds);
+		return String.format(Locale.ROOT, "%d:%02d:%02d", total / 3600, (total / 60) % 60, total % 60);
+	}
+
+	/**
+	 * Counters of one secret engine
+	 */
+	private static class EngineProgress {
+
+		private final String secretEngine;
+		private final long startNanos = System.nanoTime();
+		private final LongAdder discovered = new LongAdder();
+		private final LongAdder migrated = new LongAdder();
+		private final LongAdder skipped = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder failedFolders = new LongAdder();
+		private volatile boolean crawlComplete;
+
+		// (time, done) samples of the rolling window, used by the reporter thread only
+		private final ArrayDeque<long[]> samples = new ArrayDeque<long[]>();
+
+		private EngineProgress(String secretEngine) {
+			this.secretEngine = secretEngine;
+			samples.add(new long[] { startNanos, 0 });
+		}
+
+		/**
+		 * @param nowNanos
+		 * @return EngineReport - the counters as they are now
+		 */
+		private EngineReport toReport(long nowNanos) {
+			EngineReport report = new EngineReport();
+			report.setEngine(secretEngine);
+			report.setMigrated(migrated.sum());
+			report.setSkipped(skipped.sum());
+			report.setFailed(failed.sum());
+			report.setFailedFolders(failedFolders.sum());
+			report.setDiscovered(Math.max(report.getMigrated() + report.getSkipped() + report.getFailed(),
+					discovered.sum()));
+			report.setElapsedSeconds((nowNanos - startNanos) / 1e9);
+			return report;
+		}
+
+		/**
+		 * @return double - secrets done per second over the window
+		 */
+		private double rollingRate(long nowNanos, long done, long windowNanos) {
+			samples.addLast(new long[] { nowNanos, done });
+			// Keep the newest sample older than the window as the base of the rate
+			while (samples.size() > 2) {
+				Iterator<long[]> oldestFirst = samples.iterator();
+				oldestFirst.next();
+				if (nowNanos - oldestFirst.next()[0] < windowNanos) {
+					break;
+				}
+				samples.removeFirst();
+			}
+			long[] oldest = samples.peekFirst();
+			long elapsedNanos = nowNanos - oldest[0];
+			return elapsedNanos <= 0 ? 0 : (done - oldest[1]) * 1e9 / elapsedNanos;
+		}
+	}
+
+}
@@ -0,0 +1,249 @@
+package com.pat.secret.bo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.dao.OPAApiException;
+import com.pat.secret.dao.OPASecretServicesDAO;
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.OPASecretUtility;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.OPAVaultRequest;
+import com.pat.secret.vo.OPAVaultResponse;
+
+/**
+ * Resolves OPA secret folders by name under the parent secret folder. The
+ * existing folders are listed once and cached name to id. A missing folder is
+ * created by a single caller, concurrent callers asking for the same folder
+ * wait for that one create call.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class OPAFolderResolver {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(OPAFolderResolver.class);
+
+	// Item type OPA returns for a secret folder
+	private static final String FOLDER_TYPE = "secret_folder";
+
+	// Seconds between two listings while waiting for a folder created by another shard
+	private static final long AWAIT_POLL_SECONDS = 5;
+
+	private static OPASecretUtility opaSecretUtility;
+
+	private static OPASecretServicesDAO opaSecretServicesDAO;
+
+	private static OPATokenManager opaTokenManager;
+
+	private static RegisterProperties regProps;
+
+	// Folder name to pending or resolved folder id
+	private final Map<String, CompletableFuture<String>> folders = new ConcurrentHashMap<String, CompletableFuture<String>>();
+
+	// Held during the folder list call, a virtual thread waiting on it unmounts from its carrier
+	private final ReentrantLock listLock = new ReentrantLock();
+
+	private volatile Map<String, String> existingFolders;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		OPAFolderResolver.regProps = regProps;
+	}
+
+	@Autowired
+	private void setRegister(OPASecretUtility opaSecretUtility) {
+		OPAFolderResolver.opaSecretUtility = opaSecretUtility;
+	}
+
+	@Autowired
+	private void setOPASecretServicesDAO(OPASecretServicesDAO opaSecretServicesDAO) {
+		OPAFolderResolver.opaSecretServicesDAO = opaSecretServicesDAO;
+	}
+
+	@Autowired
+	private void setOPATokenManager(OPATokenManager opaTokenManager) {
+		OPAFolderResolver.opaTokenManager = opaTokenManager;
+	}
+
+	public OPAFolderResolver() {
+
+	}
+
+	/**
+	 * Get the id of the folder with the given name under the parent secret
+	 * folder, creating it when it does not exist yet
+	 *
+	 * @param folderName
+	 * @return String - folder id, null when the folder could neither be found nor created
+	 */
+	public String resolveFolder(String folderName) {
+		CompletableFuture<String> pending = new CompletableFuture<String>();
+		CompletableFuture<String> existing = folders.putIfAbsent(folderName, pending);
+		if (existing != null) {
+			return existing.join();
+		}
+		String folderId = null;
+		try {
+			folderId = lookupOrCreate(folderName);
+		} finally {
+			if (folderId == null) {
+				// Let a later caller try again instead of caching the failure
+				folders.remove(folderName, pending);
+			}
+			pending.complete(folderId);
+		}
+		return folderId;
+	}
+
+	/**
+	 * Wait for a folder another process creates, listing the folders under the
+	 * parent secret folder every few seconds
+	 *
+	 * @param folderName
+	 * @param timeoutSeconds
+	 * @return String - folder id, null when the folder did not show up in time
+	 * @throws InterruptedException
+	 */
+	public String awaitFolder(String folderName, long timeoutSeconds) throws InterruptedException {
+		CompletableFuture<String> resolved = folders.get(folderName);
+		if (resolved != null && resolved.join() != null) {
+			return resolved.join();
+		}
+		long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+		boolean reload = false;
+		while (true) {
+			Map<String, String> existing = getExistingFolders(reload);
+			String folderId = existing != null ? existing.get(folderName) : null;
+			if (folderId != null) {
+				LOGGER.info("awaitFolder Found folder " + folderName + " id " + folderId);
+				folders.putIfAbsent(folderName, CompletableFuture.completedFuture(folderId));
+				return folderId;
+			}
+			if (System.nanoTime() >= deadlineNanos) {
+				LOGGER.warn("awaitFolder Folder " + folderName + " not created within " + timeoutSeconds + "s");
+				return null;
+			}
+			LOGGER.info("awaitFolder Waiting for folder " + folderName + " to be created by its shard");
+			TimeUnit.SECONDS.sleep(AWAIT_POLL_SECONDS);
+			reload = true;
+		}
+	}
+
+	/**
+	 * @param folderName
+	 * @return String - id of the existing or newly created folder
+	 */
+	private String lookupOrCreate(String folderName) {
+		Map<String, String> existing = getExistingFolders(false);
+		if (existing == null) {
+			// Without the full listing a create could duplicate an existing folder
+			LOGGER.error("lookupOrCreate >>> Unable to list folders, not creating folder " + folderName);
+			return null;
+		}
+		String folderId = existing.get(folderName);
+		if (folderId != null) {
+			LOGGER.info("lookupOrCreate Reusing existing folder " + folderName + " id " + folderId);
+			return folderId;
+		}
+		try {
+			OPAVaultResponse response = createSecretFolder(folderName);
+			if (response != null && response.getNewObjectId() != null) {
+				LOGGER.info("lookupOrCreate Created folder " + folderName + " id " + response.getNewObjectId());
+				return response.getNewObjectId();
+			}
+		} catch (OPAApiException e) {
+			LOGGER.warn("lookupOrCreate Create of folder " + folderName + " failed, looking it up again >>> "
+					+ e.getMessage());
+		}
+		// Another process may have created the folder in the meantime
+		existing = getExistingFolders(true);
+		folderId = existing != null ? existing.get(folderName) : null;
+		if (folderId == null) {
+			LOGGER.error("lookupOrCreate >>> Unable to find or create folder " + folderName);
+		}
+		return folderId;
+	}
+
+	/**
+	 * List the folders under the parent secret folder, once unless a reload is
+	 * requested. A failed listing is not cached, the next caller lists again.
+	 *
+	 * @param reload
+	 * @return Map - folder name to folder id, null when the listing failed
+	 */
+	private Map<String, String> getExistingFolders(boolean reload) {
+		listLock.lock();
+		try {
+			if (existingFolders != null && !reload) {
+				return existingFolders;
+			}
+			Map<String, String> loadedFolders = new ConcurrentHashMap<String, String>();
+			try {
+				final String apiEndpointURL = opaSecretUtility
+						.getFolderItemsAPIEndpoint(regProps.getOktapam().getParentSecretFolderId());
+				List<OPAVaultResponse> items = opaTokenManager
+						.callWithToken(token -> opaSecretServicesDAO.listOPASecretFolderItems(apiEndpointURL, token));
+				for (OPAVaultResponse item : items) {
+					if (item.getNewObjectName() != null && item.getNewObjectId() != null
+							&& (item.getType() == null || FOLDER_TYPE.equals(item.getType()))) {
+						loadedFolders.putIfAbsent(item.getNewObjectName(), item.getNewObjectId());
+					}
+				}
+				LOGGER.info("getExistingFolders Found " + loadedFolders.size() + " folders under parent folder");
+			} catch (Exception e) {
+				LOGGER.error("getExistingFolders >>> " + e.getMessage());
+				// e.printStackTrace();
+				return null;
+			}
+			existingFolders = loadedFolders;
+			return loadedFolders;
+		} finally {
+			listLock.unlock();
+		}
+	}
+
+	/**
+	 * Create a folder to store secrets
+	 *
+	 * @param folderName
+	 * @return OPAVaultResponse - Secret folder response details with folder id
+	 * @throws OPAApiException when OPA refuses the folder
+	 */
+	private OPAVaultResponse createSecretFolder(String folderName) {
+		LOGGER.info("createSecretFolder Create secret folder in OPA");
+		OPAVaultResponse opaSecretVaultResponse = null;
+		try {
+			// Get the Create folder API endpoint
+			final String apiEndpointURL = opaSecretUtility.getCreateFolderAPIEndpoint();
+			LOGGER.debug("createSecretFolder apiEndpointURL: " + apiEndpointURL);
+			// Set Object payload to create folder
+			OPAVaultRequest opaVaultRequest = new OPAVaultRequest();
+			opaVaultRequest.setSecretDescription(regProps.getOktapam().getSecretFolderDesc());
+			opaVaultRequest.setParentFolderId(regProps.getOktapam().getParentSecretFolderId());
+			opaVaultRequest.setName(folderName);
+			LOGGER.debug("createSecretFolder folderPayloadOPA: " + opaVaultRequest);
+			opaSecretVaultResponse = opaTokenManager.callWithToken(
+					token -> opaSecretServicesDAO.createOPASecretFolder(opaVaultRequest, apiEndpointURL, token));
+		} catch (OPAApiException e) {
+			throw e;
+		} catch (Exception e) {
+			LOGGER.error("createSecretFolder >>> " + e.getMessage());
+			// e.printStackTrace();
+		}
+		return opaSecretVaultResponse;
+	}
+
+}
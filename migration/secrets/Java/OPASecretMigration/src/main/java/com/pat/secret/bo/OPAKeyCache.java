@@ -0,0 +1,296 @@
+package com.pat.secret.bo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.crypto.RSAEncrypter;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.pat.secret.dao.OPAApiException;
+import com.pat.secret.dao.OPASecretServicesDAO;
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.OPASecretUtility;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.JWKSPublicKey;
+
+/**
+ * Cache of the OPA vault JWKS key set keyed by kid. Every key holds a pre-built
+ * RSAEncrypter and JWEHeader. The set is refreshed in the background on a TTL,
+ * and on demand when OPA rejects a JWE encrypted with a rotated key.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class OPAKeyCache {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(OPAKeyCache.class);
+
+	// Errors OPA answers for a JWE whose kid is not one of its current keys
+	private static final List<String> KEY_REJECTION_MESSAGES = Arrays.asList("unknown kid", "unknown key id",
+			"key id not found", "kid not found", "invalid kid", "key has been rotated", "key is expired",
+			"unable to decrypt");
+
+	private static OPASecretUtility opaSecretUtility;
+
+	private static OPASecretServicesDAO opaSecretServicesDAO;
+
+	private static OPATokenManager opaTokenManager;
+
+	private static RegisterProperties regProps;
+
+	private final ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "opa-jwks-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// Held during the JWKS call, a virtual thread waiting on it unmounts from its carrier
+	private final ReentrantLock refreshLock = new ReentrantLock();
+
+	// Replaced as a whole on refresh so readers never need a lock
+	private volatile Map<String, EncryptionKey> keys = Collections.emptyMap();
+
+	private volatile EncryptionKey currentKey;
+
+	private volatile boolean refreshScheduled;
+
+	// Rejected kids the key set was already reloaded for
+	private final Set<String> refreshedKids = ConcurrentHashMap.newKeySet();
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		OPAKeyCache.regProps = regProps;
+	}
+
+	@Autowired
+	private void setRegister(OPASecretUtility opaSecretUtility) {
+		OPAKeyCache.opaSecretUtility = opaSecretUtility;
+	}
+
+	@Autowired
+	private void setOPASecretServicesDAO(OPASecretServicesDAO opaSecretServicesDAO) {
+		OPAKeyCache.opaSecretServicesDAO = opaSecretServicesDAO;
+	}
+
+	@Autowired
+	private void setOPATokenManager(OPATokenManager opaTokenManager) {
+		OPAKeyCache.opaTokenManager = opaTokenManager;
+	}
+
+	public OPAKeyCache() {
+
+	}
+
+	/**
+	 * Get the key new secrets are encrypted with, loading the key set on first use
+	 *
+	 * @return EncryptionKey - current key, null when no key could be loaded
+	 */
+	public EncryptionKey getCurrentKey() {
+		EncryptionKey key = currentKey;
+		if (key == null) {
+			key = loadIfMissing();
+		}
+		return key;
+	}
+
+	/**
+	 * Get a cached key by kid
+	 *
+	 * @param kid
+	 * @return EncryptionKey - cached key, null when the kid is unknown
+	 */
+	public EncryptionKey getKey(String kid) {
+		return keys.get(kid);
+	}
+
+	/**
+	 * Refresh the key set because OPA rejected a JWE. The set is reloaded once per
+	 * rejected kid, later callers get the already refreshed key.
+	 *
+	 * @param rejectedKid
+	 * @return EncryptionKey - key to encrypt with from now on, null when OPA
+	 *         still publishes the rejected kid and a replay would fail again
+	 */
+	public EncryptionKey refreshOnRejection(String rejectedKid) {
+		refreshLock.lock();
+		try {
+			EncryptionKey key = currentKey;
+			if (key != null && !Objects.equals(key.getKid(), rejectedKid)) {
+				return key;
+			}
+			if (refreshedKids.add(rejectedKid)) {
+				LOGGER.info("refreshOnRejection OPA rejected JWE encrypted with kid " + rejectedKid);
+				loadKeys();
+				key = currentKey;
+			}
+			if (key == null || Objects.equals(key.getKid(), rejectedKid)) {
+				LOGGER.error("refreshOnRejection >>> OPA still publishes rejected kid " + rejectedKid);
+				return null;
+			}
+			return key;
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	/**
+	 * Check if an OPA error is the rejection of an unknown or rotated JWE key.
+	 * Other validation errors are not, even when they mention a key.
+	 *
+	 * @param e
+	 * @return true when the secret should be encrypted again with a fresh key
+	 */
+	public boolean isKeyRejection(OPAApiException e) {
+		if ((e.getStatusCode() != 400 && e.getStatusCode() != 422) || e.getResponseBody() == null) {
+			return false;
+		}
+		String responseBody = e.getResponseBody().toLowerCase(Locale.ROOT);
+		for (String message : KEY_REJECTION_MESSAGES) {
+			if (responseBody.contains(message)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Load the key set unless an other caller already did
+	 *
+	 * @return EncryptionKey - current key
+	 */
+	private EncryptionKey loadIfMissing() {
+		refreshLock.lock();
+		try {
+			if (currentKey == null) {
+				loadKeys();
+			}
+			return currentKey;
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	/**
+	 * Fetch the JWKS set and build encrypters for every key. Must be called while
+	 * holding refreshLock.
+	 */
+	private void loadKeys() {
+		LOGGER.info("loadKeys get OPA public keys");
+		try {
+			final String apiEndpointURL = opaSecretUtility.getJWKSAPIEndpoint();
+			LOGGER.debug("loadKeys apiEndpointURL ---> " + apiEndpointURL);
+			List<JWKSPublicKey> publicKeys = opaTokenManager
+					.callWithToken(token -> opaSecretServicesDAO.getVaultPublicKeys(apiEndpointURL, token));
+			Map<String, EncryptionKey> loadedKeys = new LinkedHashMap<String, EncryptionKey>(publicKeys.size());
+			EncryptionKey firstKey = null;
+			for (JWKSPublicKey publicKey : publicKeys) {
+				RSAKey rsaPublicJWK = RSAKey.parse(JsonCodec.JWKS_PUBLIC_KEY_WRITER.writeValueAsString(publicKey));
+				// Reuse the encrypter of a key that did not change
+				EncryptionKey key = keys.get(rsaPublicJWK.getKeyID());
+				if (key == null) {
+					key = new EncryptionKey(rsaPublicJWK);
+				}
+				loadedKeys.put(key.getKid(), key);
+				if (firstKey == null) {
+					firstKey = key;
+				}
+			}
+			if (firstKey == null) {
+				LOGGER.error("loadKeys >>> OPA returned no public key, keeping cached keys");
+				return;
+			}
+			keys = Collections.unmodifiableMap(loadedKeys);
+			currentKey = firstKey;
+			LOGGER.info("loadKeys Loaded kids " + loadedKeys.keySet() + " current kid " + firstKey.getKid());
+			scheduleRefresh();
+		} catch (Exception e) {
+			LOGGER.error("loadKeys >>> " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Start the periodic background refresh once a key set is loaded
+	 */
+	private void scheduleRefresh() {
+		if (refreshScheduled) {
+			return;
+		}
+		long ttlSeconds = Math.max(1, regProps.getOktapam().getJwksCacheTtlSeconds());
+		refreshScheduler.scheduleWithFixedDelay(() -> {
+			refreshLock.lock();
+			try {
+				loadKeys();
+			} finally {
+				refreshLock.unlock();
+			}
+		}, ttlSeconds, ttlSeconds, TimeUnit.SECONDS);
+		refreshScheduled = true;
+	}
+
+	/**
+	 * Stop the background refresh thread
+	 */
+	@PreDestroy
+	public void close() {
+		refreshScheduler.shutdownNow();
+	}
+
+	/**
+	 * OPA public key with its pre-built encrypter and header. RSAEncrypter is
+	 * thread safe so one instance is shared by all workers.
+	 */
+	public static class EncryptionKey {
+
+		private final String kid;
+		private final RSAEncrypter encrypter;
+		private final JWEHeader header;
+
+		private EncryptionKey(RSAKey rsaPublicJWK) throws Exception {
+			this.kid = rsaPublicJWK.getKeyID();
+			// Prepare the header to make to send in as request header
+			this.header = new JWEHeader.Builder(JWEAlgorithm.RSA_OAEP_256, EncryptionMethod.A256GCM)
+					.keyID(rsaPublicJWK.getKeyID()).contentType("text/plain") // Set the content type
+					.build();
+			// prepare RSAEncrypter object using public key
+			this.encrypter = new RSAEncrypter(rsaPublicJWK);
+		}
+
+		public String getKid() {
+			return kid;
+		}
+
+		public RSAEncrypter getEncrypter() {
+			return encrypter;
+		}
+
+		public JWEHeader getHeader() {
+			return header;
+		}
+	}
+
+}
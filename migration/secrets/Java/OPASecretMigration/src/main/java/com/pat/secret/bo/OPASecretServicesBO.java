@@ -1,9 +1,19 @@
 package com.pat.secret.bo;
 
 import java.util.ArrayList;
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import javax.annotation.PostConstruct;
 
@@ -12,22 +22,29 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.nimbusds.jose.EncryptionMethod;
-import com.nimbusds.jose.JWEAlgorithm;
-import com.nimbusds.jose.JWEHeader;
-import com.nimbusds.jose.JWEObject;
-import com.nimbusds.jose.Payload;
-import com.nimbusds.jose.crypto.RSAEncrypter;
-import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.RSAKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.pat.secret.bo.OPAKeyCache.EncryptionKey;
+import com.pat.secret.dao.DeltaSyncState;
 import com.pat.secret.dao.HashicorpVaultDAO;
+import com.pat.secret.dao.MigrationJournal;
+import com.pat.secret.dao.OPAApiException;
 import com.pat.secret.dao.OPASecretServicesDAO;
+import com.pat.secret.dao.StagingFile;
+import com.pat.secret.dao.VaultExportDAO;
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.MigrationMetrics;
 import com.pat.secret.utility.OPASecretUtility;
 import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.utility.ShardAssignment;
+import com.pat.secret.utility.VirtualThreads;
+import com.pat.secret.vo.ExportedSecret;
 import com.pat.secret.vo.Hashicorp;
+import com.pat.secret.vo.Migration;
+import com.pat.secret.vo.MigrationItem;
 import com.pat.secret.vo.OPAVaultRequest;
 import com.pat.secret.vo.OPAVaultResponse;
+import com.pat.secret.vo.SecretVersion;
+import com.pat.secret.vo.StagedSecret;
 
 /**
  * This is business Object to migrate hashicorp secrets into Okta vault
@@ -47,6 +64,45 @@ public class OPASecretServicesBO {
 
 	private static RegisterProperties regProps;
 
+	private static OPATokenManager opaTokenManager;
+
+	private static OPAKeyCache opaKeyCache;
+
+	private static MigrationJournal migrationJournal;
+
+	private static DeltaSyncState deltaSyncState;
+
+	private static OPAFolderResolver opaFolderResolver;
+
+	private static JWEEncryptionService jweEncryptionService;
+
+	private static MigrationMetrics migrationMetrics;
+
+	private static MigrationProgress migrationProgress;
+
+	private static ShardAssignment shardAssignment;
+
+	private static VaultExportDAO vaultExportDAO;
+
+	private static StagingFile stagingFile;
+
+	// True while extractHashicorpSecret runs, encrypted secrets are then staged instead of created
+	private volatile boolean extracting;
+
+	// Global caps of the current run, null when uncapped
+	private volatile Semaphore readPermits;
+
+	private volatile Semaphore encryptPermits;
+
+	private volatile Semaphore createPermits;
+
+	// Per endpoint limits of the virtual thread execution
+	private volatile Semaphore opaPermits;
+
+	private volatile Semaphore secretsInFlight;
+
+	private final Map<String, Semaphore> vaultPermits = new ConcurrentHashMap<String, Semaphore>();
+
 	@Autowired
 	private void setRegister(RegisterProperties regProps) {
 		OPASecretServicesBO.regProps = regProps;
@@ -62,6 +118,61 @@ public class OPASecretServicesBO {
 		OPASecretServicesBO.opaSecretServicesDAO = opaSecretServicesDAO;
 	}
 
+	@Autowired
+	private void setOPATokenManager(OPATokenManager opaTokenManager) {
+		OPASecretServicesBO.opaTokenManager = opaTokenManager;
+	}
+
+	@Autowired
+	private void setOPAKeyCache(OPAKeyCache opaKeyCache) {
+		OPASecretServicesBO.opaKeyCache = opaKeyCache;
+	}
+
+	@Autowired
+	private void setMigrationJournal(MigrationJournal migrationJournal) {
+		OPASecretServicesBO.migrationJournal = migrationJournal;
+	}
+
+	@Autowired
+	private void setDeltaSyncState(DeltaSyncState deltaSyncState) {
+		OPASecretServicesBO.deltaSyncState = deltaSyncState;
+	}
+
+	@Autowired
+	private void setOPAFolderResolver(OPAFolderResolver opaFolderResolver) {
+		OPASecretServicesBO.opaFolderResolver = opaFolderResolver;
+	}
+
+	@Autowired
+	private void setJWEEncryptionService(JWEEncryptionService jweEncryptionService) {
+		OPASecretServicesBO.jweEncryptionService = jweEncryptionService;
+	}
+
+	@Autowired
+	private void setMigrationMetrics(MigrationMetrics migrationMetrics) {
+		OPASecretServicesBO.migrationMetrics = migrationMetrics;
+	}
+
+	@Autowired
+	private void setMigrationProgress(MigrationProgress migrationProgress) {
+		OPASecretServicesBO.migrationProgress = migrationProgress;
+	}
+
+	@Autowired
+	private void setShardAssignment(ShardAssignment shardAssignment) {
+		OPASecretServicesBO.shardAssignment = shardAssignment;
+	}
+
+	@Autowired
+	private void setVaultExportDAO(VaultExportDAO vaultExportDAO) {
+		OPASecretServicesBO.vaultExportDAO = vaultExportDAO;
+	}
+
+	@Autowired
+	private void setStagingFile(StagingFile stagingFile) {
+		OPASecretServicesBO.stagingFile = stagingFile;
+	}
+
 	@Autowired
 	private void setHashicorpVaultDAO(HashicorpVaultDAO hashicorpVaultDAO) {
 		OPASecretServicesBO.hashicorpVaultDAO = hashicorpVaultDAO;
@@ -70,13 +181,6 @@ public class OPASecretServicesBO {
 	// Logger
 	private static final Logger LOGGER = LoggerFactory.getLogger(OPASecretServicesBO.class);
 
-	static String authToken = "";
-	static String publicKeyDetails = "";
-	static JWK key = null;
-	static RSAKey rsaPublicJWK = null;
-	static JWEHeader header = null;
-	static RSAEncrypter encrypter = null;
-
 	public OPASecretServicesBO() {
 
 	}
@@ -85,18 +189,9 @@ public class OPASecretServicesBO {
 	private void postConstruct() {
 		LOGGER.info("OPASecretServicesBO postConstruct");
 		try {
-			getUserAuthToken();
-			getJWKSPublicKey();
-			// Get Okta Vault public key
-			key = JWK.parse(publicKeyDetails);
-			LOGGER.info("JWK key ====>>>  " + key);
-			rsaPublicJWK = RSAKey.parse(publicKeyDetails);
-			// Prepare the header to make to send in as request header
-			header = new JWEHeader.Builder(JWEAlgorithm.RSA_OAEP_256, EncryptionMethod.A256GCM)
-					.keyID(rsaPublicJWK.getKeyID()).contentType("text/plain") // Set the content type
-					.build();
-			// prepare RSAEncrypter object using public key
-			encrypter = new RSAEncrypter(rsaPublicJWK);
+			// Get Okta Vault public keys
+			EncryptionKey key = opaKeyCache.getCurrentKey();
+			LOGGER.info("JWK key ====>>>  " + (key == null ? null : key.getKid()));
 		} catch (Exception e) {
 			LOGGER.error("postConstruct >>> " + e.getMessage());
 			// e.printStackTrace();
@@ -105,185 +200,798 @@ public class OPASecretServicesBO {
 	}
 
 	/**
-	 * Get Auth token to use OPA API
+	 * Read secret from Hashicorp and Create secret in Okta vault Mapping Hashicorp
+	 * engine as folder and metadata as secret. The secret engines of every
+	 * cluster are migrated at the same time, up to engineParallelism engines,
+	 * each through its own pipeline.
+	 */
+	public void migrateHashicorpSecret() {
+		LOGGER.info("migrateHashicorpSecret Start Secret Creation process in OPA");
+		Migration migration = regProps.getMigration();
+		if (migration.isExportSource()) {
+			// Secrets come from an export file, Hashicorp vault is not called
+			migrateFromExport();
+			return;
+		}
+		if (migration.isReactiveExecution() && !extracting) {
+			// Non-blocking flow on the shared event loop threads
+			new ReactiveMigrationBO().migrateHashicorpSecret();
+			return;
+		}
+		// Global caps shared by the pipelines of every engine
+		readPermits = newPermits(migration.getMaxReadsInFlight());
+		encryptPermits = newPermits(JWEEncryptionService.resolveWorkers(migration.getEncryptWorkers()));
+		createPermits = newPermits(migration.getMaxCreatesInFlight());
+		opaPermits = newPermits(migration.getOpaConcurrency());
+		secretsInFlight = newPermits(migration.getMaxSecretsInFlight());
+		vaultPermits.clear();
+		if (extracting && (migration.isVirtualThreadExecution() || migration.isReactiveExecution())) {
+			LOGGER.warn("migrateHashicorpSecret Extract runs on the pipeline, ignoring execution "
+					+ migration.getExecution());
+		} else if (migration.isVirtualThreadExecution() && !VirtualThreads.isAvailable()) {
+			LOGGER.warn("migrateHashicorpSecret Virtual threads need Java 21, running on "
+					+ System.getProperty("java.version") + ", falling back to the pipeline");
+		}
+		ExecutorService enginePool = null;
+		try {
+			// Get every Hashicorp cluster and its Secret Engines to interact with
+			List<Hashicorp> clusters = opaSecretUtility.getHashicorpClusters();
+			List<List<String>> secretEngines = new ArrayList<List<String>>(clusters.size());
+			int engineCount = 0;
+			for (Hashicorp hashicorp : clusters) {
+				List<String> secretEnginesList = hashicorp.getSecretengineList();
+				LOGGER.info("migrateHashicorpSecret " + hashicorp.getHost() + ":" + hashicorp.getPort()
+						+ " secretEnginesList  ==>>>  " + secretEnginesList);
+				secretEngines.add(secretEnginesList);
+				engineCount += secretEnginesList.size();
+			}
+			final AtomicInteger threadCount = new AtomicInteger();
+			enginePool = Executors.newFixedThreadPool(
+					Math.max(1, Math.min(engineCount, migration.getEngineParallelism())), runnable -> {
+						Thread thread = new Thread(runnable, "engine-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			// Round robin over the clusters so no cluster waits for all engines of another
+			List<Future<?>> engines = new ArrayList<Future<?>>(engineCount);
+			for (int index = 0; engines.size() < engineCount; index++) {
+				for (int cluster = 0; cluster < clusters.size(); cluster++) {
+					if (index < secretEngines.get(cluster).size()) {
+						final Hashicorp hashicorp = clusters.get(cluster);
+						final String secretEngine = secretEngines.get(cluster).get(index);
+						engines.add(enginePool.submit(() -> migrateSecretEngine(hashicorp, secretEngine)));
+					}
+				}
+			}
+			for (Future<?> engine : engines) {
+				engine.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.error("migrateHashicorpSecret >>> Interrupted " + e.getMessage());
+		} catch (Exception e) {
+			LOGGER.error("migrateHashicorpSecret >>> " + e.getMessage());
+			// e.printStackTrace();
+		} finally {
+			if (enginePool != null) {
+				enginePool.shutdownNow();
+			}
+			// Versions synced by this run are the baseline of the next delta run
+			deltaSyncState.save();
+		}
+	}
+
+	/**
+	 * Extract phase of a two phase migration. Secrets are read and encrypted
+	 * like migrateHashicorpSecret does, then appended to the staging file
+	 * instead of created. OPA is only called for the public key and the folders.
+	 */
+	public void extractHashicorpSecret() {
+		LOGGER.info("extractHashicorpSecret Start staging encrypted secrets");
+		try {
+			stagingFile.create();
+		} catch (Exception e) {
+			LOGGER.error("extractHashicorpSecret >>> Unable to create staging file " + e.getMessage());
+			// e.printStackTrace();
+			return;
+		}
+		extracting = true;
+		try {
+			migrateHashicorpSecret();
+		} finally {
+			extracting = false;
+			stagingFile.close();
+		}
+	}
+
+	/**
+	 * Migrate the secrets of a Hashicorp KV export. The file is parsed on the
+	 * calling thread straight into the encrypt and create stages of a single
+	 * pipeline, parsing pauses while the pipeline is full.
 	 */
-	private static void getUserAuthToken() {
-		LOGGER.info("OPASecretServicesBO getUserAuthToken Retrieve auth token");
-		String requestBody = "";
-		String apiEndpointURL = "";
+	private void migrateFromExport() {
+		Migration migration = regProps.getMigration();
+		String exportFile = migration.getExportFile() == null ? "" : migration.getExportFile().trim();
+		if (exportFile.isEmpty()) {
+			LOGGER.error("migrateFromExport >>> register.migration.exportFile is not set");
+			return;
+		}
+		encryptPermits = newPermits(JWEEncryptionService.resolveWorkers(migration.getEncryptWorkers()));
+		createPermits = newPermits(migration.getMaxCreatesInFlight());
+		MigrationPipeline pipeline = new MigrationPipeline("export", migration.getDiscoveryQueueCapacity(),
+				migration.getQueueCapacity());
+		pipeline.addStage("encrypt", JWEEncryptionService.resolveWorkers(migration.getEncryptWorkers()),
+				item -> withPermit(encryptPermits, () -> encryptSecret(item)))
+				.addStage(extracting ? "stage" : "create", migration.getCreateWorkers(),
+						item -> withPermit(createPermits, () -> extracting ? stageSecret(item) : createSecret(item)));
+		// Engine key to OPA folder id, empty for an engine without folder. Used by the parsing thread only
+		final Map<String, String> engineFolders = new LinkedHashMap<String, String>();
+		pipeline.start();
+		trackPipeline(pipeline, true);
 		try {
-			apiEndpointURL = opaSecretUtility.getTokenAPIEndpoint();
-			LOGGER.debug("getUserAuthToken apiEndpointURL ---> " + apiEndpointURL);
-			requestBody = opaSecretUtility.getAPITokenRequestBody();
-			LOGGER.debug("getUserAuthToken requestBody ---> " + requestBody);
-			authToken = opaSecretServicesDAO.getUserAuthToken(apiEndpointURL, requestBody);
+			vaultExportDAO.readSecrets(Paths.get(exportFile),
+					exportedSecret -> submitExportedSecret(exportedSecret, engineFolders, pipeline));
+			pipeline.complete();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pipeline.shutdownNow();
+			LOGGER.error("migrateFromExport >>> Interrupted " + e.getMessage());
 		} catch (Exception e) {
-			LOGGER.error("getUserAuthToken >>> " + e.getMessage());
+			pipeline.shutdownNow();
+			LOGGER.error("migrateFromExport >>> " + e.getMessage());
 			// e.printStackTrace();
+		} finally {
+			trackPipeline(pipeline, false);
+			for (String engineKey : engineFolders.keySet()) {
+				migrationProgress.crawlComplete(engineKey);
+				migrationProgress.finishEngine(engineKey);
+			}
+			deltaSyncState.save();
 		}
 	}
 
 	/**
-	 * Get JWKS Public key from OPA
+	 * Make the item of an exported secret and queue it for encryption. The OPA
+	 * folder of an engine is resolved when its first secret is read.
+	 * 
+	 * @param exportedSecret
+	 * @param engineFolders - engine key to folder id of the engines seen so far
+	 * @param pipeline
 	 */
-	private static void getJWKSPublicKey() {
-		LOGGER.info("OPASecretServicesBO getJWKSPublicKey get OPA public key");
-		String apiEndpointURL = "";
+	private void submitExportedSecret(ExportedSecret exportedSecret, Map<String, String> engineFolders,
+			MigrationPipeline pipeline) {
+		if (exportedSecret.getEngine() == null || exportedSecret.getPath() == null
+				|| exportedSecret.getData() == null) {
+			LOGGER.error("submitExportedSecret >>> Skipping incomplete export record " + exportedSecret);
+			return;
+		}
+		String engineKey = exportedSecret.getEngine();
+		String secretFolderId = engineFolders.get(engineKey);
+		if (secretFolderId == null) {
+			secretFolderId = resolveSecretFolder(engineKey);
+			if (secretFolderId == null) {
+				LOGGER.error("submitExportedSecret >>> No OPA folder for secret engine " + engineKey
+						+ ", skipping its secrets");
+				secretFolderId = "";
+			}
+			engineFolders.put(engineKey, secretFolderId);
+			migrationProgress.startEngine(engineKey);
+		}
+		MigrationItem item = newMigrationItem(engineKey, engineKey, exportedSecret.getPath(), secretFolderId);
+		if (item == null) {
+			return;
+		}
 		try {
-			apiEndpointURL = opaSecretUtility.getJWKSAPIEndpoint();
-			LOGGER.debug("getJWKSPublicKey apiEndpointURL ---> " + apiEndpointURL);
-			LOGGER.debug("getJWKSPublicKey authToken ---> " + authToken);
-			publicKeyDetails = opaSecretServicesDAO.getVaultPublicKey(apiEndpointURL, authToken);
+			if (secretFolderId.isEmpty()) {
+				throw new IllegalStateException("No OPA folder for " + exportedSecret.getPath());
+			}
+			if (regProps.getMigration().isDeltaMode()
+					&& !isChangedSinceLastSync(item, toSecretMetadata(exportedSecret.getData()))) {
+				migrationProgress.skipped(engineKey);
+				return;
+			}
+			if (withSecretData(item, exportedSecret.getData()) == null) {
+				throw new IllegalStateException("No secret data in export record " + exportedSecret.getPath());
+			}
 		} catch (Exception e) {
-			LOGGER.error("getJWKSPublicKey >>> " + e.getMessage());
+			LOGGER.error("submitExportedSecret >>> " + e.getMessage());
 			// e.printStackTrace();
+			migrationProgress.failed(engineKey);
+			return;
+		}
+		try {
+			pipeline.submit(item);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while queueing " + exportedSecret.getPath(), e);
 		}
-		LOGGER.info("OPASecretServicesBO::getJWKSPublicKey::publicKeyDetails ---> " + publicKeyDetails);
 	}
 
 	/**
-	 * Read secret from Hashicorp and Create secret in Okta vault Mapping Hashicorp
-	 * engine as folder and metadata as secret
+	 * Shape the version metadata of an exported secret like the KV v2 metadata
+	 * compared by a delta run. The version was created when the secret was last
+	 * updated, a record without metadata never matches a synced version.
+	 * 
+	 * @param exportedData - data object of the export record
+	 * @return Map - current_version and updated_time
 	 */
 	@SuppressWarnings("unchecked")
-	public void migrateHashicorpSecret() {
-		LOGGER.info("migrateHashicorpSecret Start Secret Creation process in OPA");
-		String secretName = "";
-		String secretData = "";
-		String secretFolderId = "";
-		Hashicorp hashicorp = null;
-		OPAVaultResponse opaSecretVaultResponse = null;
-		List<String> listResponse = new ArrayList<String>(5);
-		Map<String, Object> hashiVaultSecrets = new HashMap<String, Object>(1);
-		Map<String, String> vaultSecret = new HashMap<String, String>(1);
-		List<String> secretEnginesList = new ArrayList<String>(5);
+	private static Map<String, Object> toSecretMetadata(Map<String, Object> exportedData) {
+		Map<String, Object> secretMetadata = new HashMap<String, Object>(4);
+		secretMetadata.put("current_version", -1);
+		Object versionMetadata = exportedData.get("metadata");
+		if (versionMetadata instanceof Map) {
+			secretMetadata.put("current_version", ((Map<String, Object>) versionMetadata).get("version"));
+			secretMetadata.put("updated_time", ((Map<String, Object>) versionMetadata).get("created_time"));
+		}
+		return secretMetadata;
+	}
+
+	/**
+	 * Migrate one secret engine through its own read, encrypt and create pipeline
+	 * 
+	 * @param hashicorp - cluster of the engine
+	 * @param secretEngine
+	 */
+	private void migrateSecretEngine(Hashicorp hashicorp, String secretEngine) {
+		String engineKey = hashicorp.getEngineKey(secretEngine);
+		try {
+			String secretFolderId = resolveSecretFolder(engineKey);
+			if (secretFolderId == null) {
+				LOGGER.error("migrateSecretEngine >>> No OPA folder for secret engine " + engineKey + ", skipping it");
+				return;
+			}
+			if (regProps.getMigration().isVirtualThreadExecution() && VirtualThreads.isAvailable() && !extracting) {
+				migrateOnVirtualThreads(hashicorp, secretEngine, secretFolderId);
+				return;
+			}
+			// Read, encrypt and create secrets through the pipeline
+			MigrationPipeline pipeline = newMigrationPipeline(hashicorp, engineKey);
+			pipeline.start();
+			trackPipeline(pipeline, true);
+			migrationProgress.startEngine(engineKey);
+			try {
+				// Stream secret paths into the pipeline while the engine is still being crawled
+				discoverSecrets(hashicorp, secretEngine, secretFolderId, pipeline::submit);
+				pipeline.complete();
+			} catch (Exception e) {
+				pipeline.shutdownNow();
+				throw e;
+			} finally {
+				trackPipeline(pipeline, false);
+				migrationProgress.finishEngine(engineKey);
+			}
+		} catch (Exception e) {
+			LOGGER.error("migrateSecretEngine >>> " + engineKey + " " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Get the OPA folder of a secret engine
+	 * 
+	 * @param engineKey
+	 * @return String - folder id, null when no folder could be found or created
+	 */
+	String resolveSecretFolder(String engineKey) {
+		// Reuse the folder of an interrupted run, otherwise create folder for each secret engine
+		String secretFolderId = migrationJournal.getFolderId(engineKey);
+		if (secretFolderId == null) {
+			if (shardAssignment.isOwned(engineKey, "")) {
+				// Reuse a folder of the same name or create it once
+				secretFolderId = opaFolderResolver.resolveFolder(engineKey);
+			} else {
+				// Only the shard owning the engine creates its folder, the other shards wait for it
+				secretFolderId = awaitSecretFolder(engineKey);
+			}
+			if (secretFolderId != null) {
+				migrationJournal.recordFolder(engineKey, secretFolderId);
+			}
+		}
+		return secretFolderId;
+	}
+
+	/**
+	 * @param engineKey
+	 * @return String - id of the folder created by the shard owning the engine,
+	 *         created by this shard when the owner did not create it in time
+	 */
+	private String awaitSecretFolder(String engineKey) {
 		try {
-			// Get Hashicorp Environment details
-			hashicorp = opaSecretUtility.getHashicorpEnvironmentDetails();
-			// Get the list of Secret Engines to interact with
-			secretEnginesList = hashicorp.getSecretengineList();
-			LOGGER.info("migrateHashicorpSecret secretEnginesList  ==>>>  " + secretEnginesList);
-			for (String secretEngine : secretEnginesList) {
-				// Create folder for each secret engine
-				opaSecretVaultResponse = createSecretFolder(secretEngine);
-				// Retrieve Secret Folder Id
-				secretFolderId = opaSecretVaultResponse.getNewObjectId();
-				// Get Secret metadata from Hashicorp
-				listResponse = getSecretMetadata(hashicorp, secretEngine);
-				for (String name : listResponse) {
-					secretName = name;
-					LOGGER.info("migrateHashicorpSecret  ===>>>  " + secretName);
-					hashiVaultSecrets = hashicorpVaultDAO.getSecrets(hashicorp.getHost(), hashicorp.getPort(),
-							hashicorp.getScheme(), hashicorp.getToken(), secretEngine, secretName);
-					if (hashiVaultSecrets.size() > 0) {
-						vaultSecret = (Map<String, String>) hashiVaultSecrets.get("data");
-						//Below logger writes credential in log (Not recommended to uncomment)
-						//LOGGER.debug("migrateHashicorpSecret vaultSecret ======== " + vaultSecret);
-						ObjectMapper secretDataObj = new ObjectMapper();
-						secretData = secretDataObj.writeValueAsString(vaultSecret);
-						createSecret(secretData, secretName, secretFolderId, secretEngine);
+			String secretFolderId = opaFolderResolver.awaitFolder(engineKey, regProps.getShard().getFolderWaitSeconds());
+			if (secretFolderId != null) {
+				return secretFolderId;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		// The owning shard is not running, create the folder rather than leave the engine behind
+		LOGGER.warn("awaitSecretFolder Folder " + engineKey + " not created by its shard, creating it");
+		return opaFolderResolver.resolveFolder(engineKey);
+	}
+
+	/**
+	 * Migrate one secret engine with a virtual thread per secret running read,
+	 * encrypt and create in a row. Threads only wait on the permits of the
+	 * endpoint they call: the Vault cluster, the encrypt CPU cap and OPA, and
+	 * crawling pauses while maxSecretsInFlight secrets are in flight.
+	 * 
+	 * @param hashicorp - cluster of the engine
+	 * @param secretEngine
+	 * @param secretFolderId
+	 * @throws InterruptedException
+	 */
+	private void migrateOnVirtualThreads(final Hashicorp hashicorp, String secretEngine, String secretFolderId)
+			throws InterruptedException {
+		final String engineKey = hashicorp.getEngineKey(secretEngine);
+		// A cluster takes at most as many reads as its connection pool serves at once
+		final Semaphore clusterPermits = vaultPermits.computeIfAbsent(
+				hashicorp.getScheme() + "://" + hashicorp.getHost() + ":" + hashicorp.getPort(),
+				cluster -> newPermits(Math.max(1, hashicorp.getMaxConnectionsPerRoute())));
+		final Semaphore inFlight = secretsInFlight;
+		ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor(engineKey + "-secret-");
+		migrationProgress.startEngine(engineKey);
+		try {
+			discoverSecrets(hashicorp, secretEngine, secretFolderId, item -> {
+				if (inFlight != null) {
+					inFlight.acquire();
+				}
+				try {
+					executor.execute(() -> {
+						try {
+							migrateSecret(hashicorp, clusterPermits, item);
+						} finally {
+							if (inFlight != null) {
+								inFlight.release();
+							}
+						}
+					});
+				} catch (RuntimeException e) {
+					if (inFlight != null) {
+						inFlight.release();
 					}
+					throw e;
 				}
+			});
+		} catch (RuntimeException e) {
+			executor.shutdownNow();
+			throw e;
+		} finally {
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				LOGGER.debug("migrateOnVirtualThreads Waiting for the secrets of " + engineKey);
 			}
+			migrationProgress.finishEngine(engineKey);
+		}
+	}
 
+	/**
+	 * Read, encrypt and create one secret on the calling thread
+	 * 
+	 * @param hashicorp
+	 * @param clusterPermits - reads allowed at once on the Vault cluster
+	 * @param item
+	 */
+	private void migrateSecret(Hashicorp hashicorp, Semaphore clusterPermits, MigrationItem item) {
+		try {
+			MigrationItem read = withPermit(clusterPermits,
+					() -> withPermit(readPermits, () -> readSecret(hashicorp, item)));
+			if (read == null) {
+				return;
+			}
+			MigrationItem encrypted = withPermit(encryptPermits, () -> encryptSecret(read));
+			if (encrypted == null) {
+				return;
+			}
+			withPermit(opaPermits, () -> withPermit(createPermits, () -> createSecret(encrypted)));
 		} catch (Exception e) {
-			LOGGER.error("migrateHashicorpSecret >>> " + e.getMessage());
+			LOGGER.error("migrateSecret >>> " + item + " " + e.getMessage());
 			// e.printStackTrace();
 		}
 	}
 
 	/**
-	 * Create Secret
+	 * Build the read, encrypt and create pipeline for a secret engine
 	 * 
-	 * @param secretData
-	 * @param secretName
-	 * @param folderId
-	 * @param secretEngine
+	 * @param hashicorp
+	 * @param engineKey
+	 * @return MigrationPipeline - pipeline ready to be started
 	 */
-	private void createSecret(String secretData, String secretName, String folderId, String secretEngine) {
-		LOGGER.info("createSecret Create secret in OPA");
-		String apiEndpointURL = "";
-		String secretPayloadOPA = "";
-		OPAVaultRequest opaVaultRequest = null;
-		ObjectMapper opaPayloadObj = null;
-		//
+	private MigrationPipeline newMigrationPipeline(final Hashicorp hashicorp, String engineKey) {
+		Migration migration = regProps.getMigration();
+		LOGGER.debug("newMigrationPipeline migration settings ---> " + migration);
+		MigrationPipeline pipeline = new MigrationPipeline(engineKey, migration.getDiscoveryQueueCapacity(),
+				migration.getQueueCapacity());
+		// Read workers of the engine, the cluster may have its own quota
+		int readWorkers = hashicorp.getReadWorkers() > 0 ? hashicorp.getReadWorkers() : migration.getReadWorkers();
+		pipeline.addStage("read", readWorkers, item -> withPermit(readPermits, () -> readSecret(hashicorp, item)))
+				// CPU bound RSA work, one worker per core unless configured
+				.addStage("encrypt", JWEEncryptionService.resolveWorkers(migration.getEncryptWorkers()),
+						item -> withPermit(encryptPermits, () -> encryptSecret(item)))
+				.addStage(extracting ? "stage" : "create", migration.getCreateWorkers(),
+						item -> withPermit(createPermits, () -> extracting ? stageSecret(item) : createSecret(item)));
+		return pipeline;
+	}
+
+	/**
+	 * @param permits - 0 or less for no cap
+	 * @return Semaphore - fair semaphore shared by all pipelines, null for no cap
+	 */
+	private static Semaphore newPermits(int permits) {
+		return permits > 0 ? new Semaphore(permits, true) : null;
+	}
+
+	/**
+	 * Run a stage task while holding a permit of a global cap. The semaphore is
+	 * fair, so the workers of a small engine are not starved by a large one.
+	 * 
+	 * @param permits - null for no cap
+	 * @param task
+	 * @return MigrationItem - result of the task
+	 */
+	private static MigrationItem withPermit(Semaphore permits, Supplier<MigrationItem> task) {
+		if (permits == null) {
+			return task.get();
+		}
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a permit", e);
+		}
 		try {
-			apiEndpointURL = opaSecretUtility.getCreateSecretAPIEndpoint();
-			LOGGER.debug("createSecret apiEndpointURL: " + apiEndpointURL);
-			Payload payload = new Payload(secretData);
-			JWEObject encrypted_data = new JWEObject(header, payload);
-			encrypted_data.encrypt(encrypter);
-			// Serialize the JWE to compact form
-			String jweString = encrypted_data.serialize();
-			// Set the request payload to create secret
-			opaVaultRequest = new OPAVaultRequest();
-			opaVaultRequest.setSecretJwe(jweString);
-			opaVaultRequest.setSecretDescription(regProps.getOktapam().getSecretFolderDesc());
-			opaVaultRequest.setParentFolderId(folderId);
-			opaVaultRequest.setName(secretName);
-			opaPayloadObj = new ObjectMapper();
-			secretPayloadOPA = opaPayloadObj.writeValueAsString(opaVaultRequest);
-			LOGGER.debug("createSecret secretPayloadOPA: -->>> " + secretPayloadOPA);
-			// Create Secret
-			opaSecretServicesDAO.createOPASecret(secretPayloadOPA, apiEndpointURL, authToken);
+			return task.get();
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Publish or withdraw the queue depth and busy worker gauges of every stage
+	 * 
+	 * @param pipeline
+	 * @param track - false once the pipeline is drained
+	 */
+	private void trackPipeline(final MigrationPipeline pipeline, boolean track) {
+		for (final String stageName : pipeline.getStageNames()) {
+			if (track) {
+				migrationMetrics.trackStage(pipeline.getName(), stageName, () -> pipeline.getQueueDepth(stageName),
+						() -> pipeline.getBusyWorkers(stageName));
+			} else {
+				migrationMetrics.untrackStage(pipeline.getName(), stageName);
+			}
+		}
+	}
+
+	/**
+	 * Read secret data from Hashicorp
+	 * 
+	 * @param hashicorp
+	 * @param item
+	 * @return MigrationItem - item with secret data, null when nothing was read
+	 */
+	private MigrationItem readSecret(Hashicorp hashicorp, MigrationItem item) {
+		LOGGER.info("readSecret  ===>>>  " + item.getSecretName());
+		Map<String, Object> hashiVaultSecrets = new HashMap<String, Object>(1);
+		try {
+			if (regProps.getMigration().isDeltaMode() && !isChangedSinceLastSync(hashicorp, item)) {
+				migrationProgress.skipped(item.getEngineKey());
+				return null;
+			}
+			hashiVaultSecrets = hashicorpVaultDAO.getSecrets(hashicorp.getHost(), hashicorp.getPort(),
+					hashicorp.getScheme(), hashicorp.getToken(), item.getSecretEngine(), item.getSecretName());
+			if (withSecretData(item, hashiVaultSecrets) != null) {
+				return item;
+			}
 		} catch (Exception e) {
-			LOGGER.error("createSecret >>> " + e.getMessage());
+			LOGGER.error("readSecret >>> " + e.getMessage());
 			// e.printStackTrace();
 		}
+		migrationProgress.failed(item.getEngineKey());
+		return null;
 	}
 
 	/**
-	 * Create a folder to store secrets
+	 * Set the secret data and version of a KV v2 read response on the item
 	 * 
-	 * @param secretEngine
-	 * @return OPAVaultResponse - Secret folder response details with folder id
+	 * @param item
+	 * @param hashiVaultSecrets - data of the read response
+	 * @return MigrationItem - item with secret data, null when the response is empty
+	 * @throws JsonProcessingException
 	 */
-	private OPAVaultResponse createSecretFolder(String secretEngine) {
-		LOGGER.info("createSecretFolder Create secret folder in OPA");
-		OPAVaultRequest opaVaultRequest = null;
-		ObjectMapper opaPayloadObj = new ObjectMapper();
-		String folderPayloadOPA = "";
-		OPAVaultResponse opaSecretVaultResponse = null;
-		String apiEndpointURL = "";
+	@SuppressWarnings("unchecked")
+	MigrationItem withSecretData(MigrationItem item, Map<String, Object> hashiVaultSecrets)
+			throws JsonProcessingException {
+		if (hashiVaultSecrets == null || hashiVaultSecrets.isEmpty()) {
+			return null;
+		}
+		Map<String, String> vaultSecret = (Map<String, String>) hashiVaultSecrets.get("data");
+		//Below logger writes credential in log (Not recommended to uncomment)
+		//LOGGER.debug("readSecret vaultSecret ======== " + vaultSecret);
+		item.setSecretData(JsonCodec.SECRET_DATA_WRITER.writeValueAsString(vaultSecret));
+		// Version actually read, KV v2 returns it next to the data
+		Object versionMetadata = hashiVaultSecrets.get("metadata");
+		if (versionMetadata instanceof Map) {
+			item.setVersion(toVersion(((Map<String, Object>) versionMetadata).get("version")));
+		}
+		return item;
+	}
+
+	/**
+	 * Compare the KV v2 metadata of a secret with the version synced by the
+	 * previous run. Only metadata is read, the secret value is not.
+	 * 
+	 * @param hashicorp
+	 * @param item
+	 * @return true when the secret is new or changed and has to be synced
+	 * @throws IllegalStateException when the metadata could not be read
+	 */
+	private boolean isChangedSinceLastSync(Hashicorp hashicorp, MigrationItem item) {
+		Map<String, Object> secretMetadata = hashicorpVaultDAO.getSecretVersionMetadata(hashicorp.getHost(),
+				hashicorp.getPort(), hashicorp.getScheme(), hashicorp.getToken(), item.getSecretEngine(),
+				hashicorp.getMetadata(), item.getSecretName());
+		return isChangedSinceLastSync(item, secretMetadata);
+	}
+
+	/**
+	 * Compare KV v2 metadata of a secret with the version synced by the previous
+	 * run
+	 * 
+	 * @param item
+	 * @param secretMetadata - metadata read from Hashicorp, null or empty when it could not be read
+	 * @return true when the secret is new or changed and has to be synced
+	 * @throws IllegalStateException when there is no metadata, the secret fails and keeps its delta state so
+	 *                               the next run checks it again
+	 */
+	boolean isChangedSinceLastSync(MigrationItem item, Map<String, Object> secretMetadata) {
+		if (secretMetadata == null || secretMetadata.isEmpty()) {
+			throw new IllegalStateException("Unable to read metadata of " + item.getSecretName());
+		}
+		int currentVersion = toVersion(secretMetadata.get("current_version"));
+		String updatedTime = secretMetadata.get("updated_time") == null ? null
+				: String.valueOf(secretMetadata.get("updated_time"));
+		SecretVersion previous = deltaSyncState.get(item.getEngineKey(), item.getSecretName());
+		if (previous != null && previous.getVersion() == currentVersion
+				&& (previous.getUpdatedTime() == null || previous.getUpdatedTime().equals(updatedTime))) {
+			LOGGER.debug("isChangedSinceLastSync Unchanged secret " + item.getSecretName());
+			return false;
+		}
+		item.setUpdatedTime(updatedTime);
+		// Existing OPA secret is updated instead of created again
+		if (previous != null && previous.getSecretId() != null) {
+			item.setSecretId(previous.getSecretId());
+		} else {
+			item.setSecretId(migrationJournal.getSecretId(item.getEngineKey(), item.getSecretName()));
+		}
+		LOGGER.info("isChangedSinceLastSync " + (item.getSecretId() == null ? "New" : "Changed") + " secret "
+				+ item.getSecretName() + " version " + currentVersion);
+		return true;
+	}
+
+	private static int toVersion(Object version) {
+		if (version instanceof Number) {
+			return ((Number) version).intValue();
+		}
+		try {
+			return version == null ? 0 : Integer.parseInt(String.valueOf(version));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Encrypt secret data and prepare the OPA request payload
+	 * 
+	 * @param item
+	 * @return MigrationItem - item with secret payload, null when encryption failed
+	 */
+	MigrationItem encryptSecret(MigrationItem item) {
+		LOGGER.debug("encryptSecret Encrypt secret " + item.getSecretName());
+		try {
+			return encryptSecret(item, opaKeyCache.getCurrentKey());
+		} catch (Exception e) {
+			LOGGER.error("encryptSecret >>> " + e.getMessage());
+			// e.printStackTrace();
+		}
+		migrationProgress.failed(item.getEngineKey());
+		return null;
+	}
+
+	/**
+	 * Encrypt secret data with the given key and prepare the OPA request payload
+	 * 
+	 * @param item
+	 * @param key
+	 * @return MigrationItem - item with secret payload
+	 */
+	MigrationItem encryptSecret(MigrationItem item, EncryptionKey key) throws Exception {
+		if (key == null) {
+			throw new IllegalStateException("No OPA public key available to encrypt " + item.getSecretName());
+		}
+		String jweString = jweEncryptionService.encrypt(item.getSecretData(), key);
+		// Set the request payload to create secret
+		OPAVaultRequest opaVaultRequest = new OPAVaultRequest();
+		opaVaultRequest.setSecretJwe(jweString);
+		opaVaultRequest.setSecretDescription(regProps.getOktapam().getSecretFolderDesc());
+		opaVaultRequest.setParentFolderId(item.getFolderId());
+		opaVaultRequest.setName(item.getSecretName());
+		// Serialized straight into the request body by the DAO
+		LOGGER.debug("encryptSecret secretPayloadOPA: -->>> " + opaVaultRequest);
+		item.setSecretPayload(opaVaultRequest);
+		item.setKeyId(key.getKid());
+		return item;
+	}
+
+	/**
+	 * Create Secret, or update it when the item carries the id of an existing
+	 * OPA secret
+	 * 
+	 * @param item
+	 * @return MigrationItem - created item, null when creation failed
+	 */
+	private MigrationItem createSecret(MigrationItem item) {
+		LOGGER.info("createSecret Create secret in OPA");
 		try {
-			// Get the Create folder API endpoint
-			apiEndpointURL = opaSecretUtility.getCreateFolderAPIEndpoint();
-			LOGGER.debug("createSecretFolder apiEndpointURL: " + apiEndpointURL);
-			// Set Object payload to create folder
-			opaVaultRequest = new OPAVaultRequest();
-			opaVaultRequest.setSecretDescription(regProps.getOktapam().getSecretFolderDesc());
-			opaVaultRequest.setParentFolderId(regProps.getOktapam().getParentSecretFolderId());
-			opaVaultRequest.setName(secretEngine);
-			// Convert Object in Json Object format for request payload
-			opaPayloadObj = new ObjectMapper();
-			folderPayloadOPA = opaPayloadObj.writeValueAsString(opaVaultRequest);
-			LOGGER.debug("createSecretFolder folderPayloadOPA: " + folderPayloadOPA);
-			// Create folder as Secret Engines
-			opaSecretVaultResponse = opaSecretServicesDAO.createOPASecretFolder(folderPayloadOPA, apiEndpointURL,
-					authToken);
+			OPAVaultResponse opaVaultResponse = null;
+			try {
+				opaVaultResponse = writeSecret(item);
+			} catch (OPAApiException e) {
+				if (!opaKeyCache.isKeyRejection(e)) {
+					throw e;
+				}
+				EncryptionKey refreshedKey = opaKeyCache.refreshOnRejection(item.getKeyId());
+				if (refreshedKey == null) {
+					// The kid did not change, a replay would be rejected again
+					throw e;
+				}
+				// Key was rotated, encrypt again with the refreshed key and replay once
+				encryptSecret(item, refreshedKey);
+				opaVaultResponse = writeSecret(item);
+			}
+			if (opaVaultResponse == null) {
+				migrationProgress.failed(item.getEngineKey());
+				return null;
+			}
+			recordMigrated(item, opaVaultResponse);
+			return item;
 		} catch (Exception e) {
-			LOGGER.error("createSecretFolder >>> " + e.getMessage());
+			LOGGER.error("createSecret >>> " + e.getMessage());
 			// e.printStackTrace();
+			migrationProgress.failed(item.getEngineKey());
+		} finally {
+			// Plain secret data is not needed anymore
+			item.setSecretData(null);
 		}
-		return opaSecretVaultResponse;
+		return null;
 	}
 
 	/**
-	 * Retrieve Hashicorp Secret Engine metadata
+	 * Append an encrypted secret to the staging file, the load phase sends it to
+	 * OPA
 	 * 
-	 * @return
+	 * @param item
+	 * @return MigrationItem - staged item, null when it could not be written
 	 */
-	private List<String> getSecretMetadata(Hashicorp hashicorp, String secretEngine) {
-		LOGGER.info("getSecretMetadata Retrieve Hashicorp secret engine metadata");
-		List<String> listResponse = new ArrayList<String>(5);
+	private MigrationItem stageSecret(MigrationItem item) {
+		LOGGER.debug("stageSecret Stage secret " + item.getSecretName());
 		try {
-			listResponse = hashicorpVaultDAO.getSecretMetadata(hashicorp.getHost(), hashicorp.getPort(),
-					hashicorp.getScheme(), hashicorp.getToken(), secretEngine, hashicorp.getMetadata());
+			StagedSecret stagedSecret = new StagedSecret();
+			stagedSecret.setSecretEngine(item.getEngineKey());
+			stagedSecret.setPath(item.getSecretName());
+			stagedSecret.setVersion(item.getVersion());
+			stagedSecret.setUpdatedTime(item.getUpdatedTime());
+			stagedSecret.setSecretId(item.getSecretId());
+			stagedSecret.setKeyId(item.getKeyId());
+			stagingFile.append(stagedSecret, item.getSecretPayload());
+			migrationProgress.migrated(item.getEngineKey());
+			return item;
 		} catch (Exception e) {
-			LOGGER.error("getSecretMetadata >>> " + e.getMessage());
+			LOGGER.error("stageSecret >>> " + e.getMessage());
 			// e.printStackTrace();
+			migrationProgress.failed(item.getEngineKey());
+		} finally {
+			// Plain secret data is not needed anymore
+			item.setSecretData(null);
+		}
+		return null;
+	}
+
+	/**
+	 * Checkpoint a secret written to OPA so a rerun does not create it again
+	 * 
+	 * @param item
+	 * @param opaVaultResponse - response of the create or update call
+	 */
+	void recordMigrated(MigrationItem item, OPAVaultResponse opaVaultResponse) {
+		String secretId = item.getSecretId() != null ? item.getSecretId() : opaVaultResponse.getNewObjectId();
+		migrationJournal.record(item.getEngineKey(), item.getSecretName(), secretId);
+		deltaSyncState.update(item.getEngineKey(), item.getSecretName(), item.getVersion(), item.getUpdatedTime(),
+				secretId);
+		migrationProgress.migrated(item.getEngineKey());
+	}
+
+	/**
+	 * Send the secret payload to OPA
+	 * 
+	 * @param item
+	 * @return OPAVaultResponse
+	 */
+	private OPAVaultResponse writeSecret(MigrationItem item) throws Exception {
+		if (item.getSecretId() != null) {
+			final String updateEndpointURL = opaSecretUtility.getUpdateSecretAPIEndpoint(item.getSecretId());
+			LOGGER.debug("writeSecret apiEndpointURL: " + updateEndpointURL);
+			return opaTokenManager.callWithToken(
+					token -> opaSecretServicesDAO.updateOPASecret(item.getSecretPayload(), updateEndpointURL, token));
+		}
+		final String createEndpointURL = opaSecretUtility.getCreateSecretAPIEndpoint();
+		LOGGER.debug("writeSecret apiEndpointURL: " + createEndpointURL);
+		return opaTokenManager.callWithToken(
+				token -> opaSecretServicesDAO.createOPASecret(item.getSecretPayload(), createEndpointURL, token));
+	}
+
+	/**
+	 * Crawl Hashicorp Secret Engine metadata and submit every secret path to the
+	 * sink as soon as it is found. Crawler threads block while the sink is full,
+	 * so memory stays flat whatever the size of the engine.
+	 * 
+	 * @param hashicorp
+	 * @param secretEngine
+	 * @param secretFolderId
+	 * @param sink - pipeline or virtual thread executor taking the secrets
+	 */
+	private void discoverSecrets(Hashicorp hashicorp, String secretEngine, String secretFolderId,
+			SecretSink sink) {
+		LOGGER.info("discoverSecrets Retrieve Hashicorp secret engine metadata");
+		Migration migration = regProps.getMigration();
+		VaultPathCrawler crawler = new VaultPathCrawler(hashicorpVaultDAO, hashicorp,
+				migration.getCrawlConcurrency(), migration.getCrawlMaxDepth());
+		final String engineKey = hashicorp.getEngineKey(secretEngine);
+		crawler.crawl(secretEngine, secretName -> {
+			MigrationItem item = newMigrationItem(secretEngine, engineKey, secretName, secretFolderId);
+			if (item == null) {
+				return;
+			}
+			try {
+				sink.submit(item);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while queueing " + secretName, e);
+			}
+		}, folder -> migrationProgress.failedFolder(engineKey));
+		migrationProgress.crawlComplete(engineKey);
+	}
+
+	/**
+	 * Count a secret found by the crawler and make the item to migrate it
+	 * 
+	 * @param secretEngine
+	 * @param engineKey
+	 * @param secretName
+	 * @param secretFolderId
+	 * @return MigrationItem - null when another shard owns the secret or an interrupted run already migrated it
+	 */
+	MigrationItem newMigrationItem(String secretEngine, String engineKey, String secretName, String secretFolderId) {
+		// Secrets of other shards are neither counted nor migrated by this process
+		if (!shardAssignment.isOwned(engineKey, secretName)) {
+			return null;
 		}
-		return listResponse;
+		migrationProgress.discovered(engineKey);
+		// Skip secrets already migrated by an interrupted run, delta runs compare versions instead
+		if (!regProps.getMigration().isDeltaMode() && migrationJournal.isMigrated(engineKey, secretName)) {
+			LOGGER.debug("discoverSecrets Skipping already migrated secret " + secretName);
+			migrationProgress.skipped(engineKey);
+			return null;
+		}
+		return new MigrationItem(secretEngine, engineKey, secretName, secretFolderId);
+	}
+
+	/**
+	 * Takes the secrets found by the crawler, blocks while it is full
+	 */
+	private interface SecretSink {
+
+		void submit(MigrationItem item) throws InterruptedException;
 	}
 
 }
@@ -0,0 +1,210 @@
+package com.pat.secret.bo;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.dao.OPAApiException;
+import com.pat.secret.dao.OPASecretServicesDAO;
+import com.pat.secret.utility.OPASecretUtility;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.OPAAuthTokenDetails;
+
+/**
+ * Owns the OPA bearer token. The token is refreshed in the background before
+ * it expires, and at most once per expiry when OPA rejects it, so concurrent
+ * callers never stampede the token endpoint.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class OPATokenManager {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(OPATokenManager.class);
+
+	private static OPASecretUtility opaSecretUtility;
+
+	private static OPASecretServicesDAO opaSecretServicesDAO;
+
+	private static RegisterProperties regProps;
+
+	private final ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "opa-token-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// Held during the token call, a virtual thread waiting on it unmounts from its carrier
+	private final ReentrantLock refreshLock = new ReentrantLock();
+
+	private volatile String bearerToken;
+
+	private volatile Instant expiresAt = Instant.EPOCH;
+
+	private ScheduledFuture<?> scheduledRefresh;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		OPATokenManager.regProps = regProps;
+	}
+
+	@Autowired
+	private void setRegister(OPASecretUtility opaSecretUtility) {
+		OPATokenManager.opaSecretUtility = opaSecretUtility;
+	}
+
+	@Autowired
+	private void setOPASecretServicesDAO(OPASecretServicesDAO opaSecretServicesDAO) {
+		OPATokenManager.opaSecretServicesDAO = opaSecretServicesDAO;
+	}
+
+	public OPATokenManager() {
+
+	}
+
+	/**
+	 * Get a valid bearer token, fetching one if none is held or it has expired
+	 *
+	 * @return String - bearer token
+	 */
+	public String getToken() {
+		String token = bearerToken;
+		if (token == null || !Instant.now().isBefore(expiresAt)) {
+			token = refresh(token);
+		}
+		return token;
+	}
+
+	/**
+	 * Get the held token without fetching one, for callers that must not block
+	 *
+	 * @return String - bearer token, null when none is held or it has expired
+	 */
+	public String getCachedToken() {
+		String token = bearerToken;
+		return token != null && Instant.now().isBefore(expiresAt) ? token : null;
+	}
+
+	/**
+	 * Refresh the token unless another caller already replaced the stale one.
+	 * Callers arriving during a refresh wait for it and share its result.
+	 *
+	 * @param staleToken - token the caller found to be invalid, may be null
+	 * @return String - current bearer token
+	 */
+	public String refresh(String staleToken) {
+		refreshLock.lock();
+		try {
+			String token = bearerToken;
+			if (token != null && !token.equals(staleToken) && Instant.now().isBefore(expiresAt)) {
+				LOGGER.debug("refresh Token already refreshed by another caller");
+				return token;
+			}
+			fetchToken();
+			return bearerToken;
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	/**
+	 * Run an OPA call with the current token. When OPA answers 401 the token is
+	 * refreshed once and the call is replayed with the new token.
+	 *
+	 * @param call
+	 * @return result of the call
+	 */
+	public <T> T callWithToken(Function<String, T> call) {
+		String token = getToken();
+		try {
+			return call.apply(token);
+		} catch (OPAApiException e) {
+			if (!e.isUnauthorized()) {
+				throw e;
+			}
+			LOGGER.info("callWithToken Token rejected by OPA, refreshing and replaying request");
+			return call.apply(refresh(token));
+		}
+	}
+
+	/**
+	 * Fetch a new token and schedule its background refresh. Must be called
+	 * while holding refreshLock.
+	 */
+	private void fetchToken() {
+		LOGGER.info("fetchToken Retrieve auth token");
+		OPAAuthTokenDetails tokenDetails = null;
+		try {
+			String apiEndpointURL = opaSecretUtility.getTokenAPIEndpoint();
+			LOGGER.debug("fetchToken apiEndpointURL ---> " + apiEndpointURL);
+			tokenDetails = opaSecretServicesDAO.getAuthTokenDetails(apiEndpointURL,
+					opaSecretUtility.getAPITokenRequestBody());
+		} catch (Exception e) {
+			LOGGER.error("fetchToken >>> " + e.getMessage());
+			// e.printStackTrace();
+		}
+		if (tokenDetails == null || tokenDetails.getBearer_token() == null) {
+			LOGGER.error("fetchToken >>> Unable to retrieve auth token from OPA");
+			return;
+		}
+		bearerToken = tokenDetails.getBearer_token();
+		expiresAt = parseExpiry(tokenDetails.getExpires_at());
+		LOGGER.info("fetchToken Token valid until " + expiresAt);
+		scheduleRefresh();
+	}
+
+	/**
+	 * Schedule a background refresh a little before the token expires
+	 */
+	private void scheduleRefresh() {
+		if (scheduledRefresh != null) {
+			scheduledRefresh.cancel(false);
+		}
+		long refreshSkewMillis = TimeUnit.SECONDS.toMillis(regProps.getOktapam().getTokenRefreshSkewSeconds());
+		long delayMillis = Math.max(0, expiresAt.toEpochMilli() - refreshSkewMillis - System.currentTimeMillis());
+		final String scheduledToken = bearerToken;
+		scheduledRefresh = refreshScheduler.schedule(() -> {
+			LOGGER.info("scheduleRefresh Refreshing auth token before expiry");
+			refresh(scheduledToken);
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Parse the expires_at value returned by OPA
+	 *
+	 * @param expires
+	 * @return Instant - expiry, falling back to the configured default lifetime
+	 */
+	private Instant parseExpiry(String expires) {
+		try {
+			return OffsetDateTime.parse(expires).toInstant();
+		} catch (Exception e) {
+			LOGGER.error("parseExpiry >>> Unable to parse expires_at " + expires + " " + e.getMessage());
+		}
+		return Instant.now().plusSeconds(regProps.getOktapam().getTokenDefaultLifetimeSeconds());
+	}
+
+	/**
+	 * Stop the background refresh thread
+	 */
+	@PreDestroy
+	public void close() {
+		refreshScheduler.shutdownNow();
+	}
+
+}
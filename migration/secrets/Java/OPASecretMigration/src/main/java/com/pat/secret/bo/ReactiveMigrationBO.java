@@ -0,0 +1,374 @@
+package com.pat.secret.bo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.bo.OPAKeyCache.EncryptionKey;
+import com.pat.secret.dao.DeltaSyncState;
+import com.pat.secret.dao.OPAApiException;
+import com.pat.secret.dao.ReactiveHashicorpVaultDAO;
+import com.pat.secret.dao.ReactiveOPASecretServicesDAO;
+import com.pat.secret.utility.OPASecretUtility;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.Hashicorp;
+import com.pat.secret.vo.Migration;
+import com.pat.secret.vo.MigrationItem;
+import com.pat.secret.vo.OPAVaultResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking migration flow, register.migration.execution=reactive. Every
+ * secret engine is a Reactor flow: crawling, reading, encrypting and creating
+ * are chained with flatMap, and every stage only requests as many secrets from
+ * the stage before it as it has room for, so crawling slows down to the pace of
+ * OPA. Vault and OPA calls run on a few shared event loop threads, only the
+ * CPU bound encryption and the occasional blocking call (folder, token and key
+ * refresh, journal) use worker threads.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class ReactiveMigrationBO {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveMigrationBO.class);
+
+	private static RegisterProperties regProps;
+
+	private static OPASecretUtility opaSecretUtility;
+
+	private static OPASecretServicesBO opaSecretServicesBO;
+
+	private static ReactiveHashicorpVaultDAO reactiveHashicorpVaultDAO;
+
+	private static ReactiveOPASecretServicesDAO reactiveOPASecretServicesDAO;
+
+	private static OPATokenManager opaTokenManager;
+
+	private static OPAKeyCache opaKeyCache;
+
+	private static DeltaSyncState deltaSyncState;
+
+	private static MigrationProgress migrationProgress;
+
+	// Worker threads of the current run
+	private volatile Scheduler encryptScheduler;
+
+	private volatile Scheduler journalScheduler;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		ReactiveMigrationBO.regProps = regProps;
+	}
+
+	@Autowired
+	private void setRegister(OPASecretUtility opaSecretUtility) {
+		ReactiveMigrationBO.opaSecretUtility = opaSecretUtility;
+	}
+
+	@Autowired
+	private void setOPASecretServicesBO(OPASecretServicesBO opaSecretServicesBO) {
+		ReactiveMigrationBO.opaSecretServicesBO = opaSecretServicesBO;
+	}
+
+	@Autowired
+	private void setReactiveHashicorpVaultDAO(ReactiveHashicorpVaultDAO reactiveHashicorpVaultDAO) {
+		ReactiveMigrationBO.reactiveHashicorpVaultDAO = reactiveHashicorpVaultDAO;
+	}
+
+	@Autowired
+	private void setReactiveOPASecretServicesDAO(ReactiveOPASecretServicesDAO reactiveOPASecretServicesDAO) {
+		ReactiveMigrationBO.reactiveOPASecretServicesDAO = reactiveOPASecretServicesDAO;
+	}
+
+	@Autowired
+	private void setOPATokenManager(OPATokenManager opaTokenManager) {
+		ReactiveMigrationBO.opaTokenManager = opaTokenManager;
+	}
+
+	@Autowired
+	private void setOPAKeyCache(OPAKeyCache opaKeyCache) {
+		ReactiveMigrationBO.opaKeyCache = opaKeyCache;
+	}
+
+	@Autowired
+	private void setDeltaSyncState(DeltaSyncState deltaSyncState) {
+		ReactiveMigrationBO.deltaSyncState = deltaSyncState;
+	}
+
+	@Autowired
+	private void setMigrationProgress(MigrationProgress migrationProgress) {
+		ReactiveMigrationBO.migrationProgress = migrationProgress;
+	}
+
+	public ReactiveMigrationBO() {
+
+	}
+
+	/**
+	 * Read secrets from every Hashicorp cluster and create them in Okta vault,
+	 * up to engineParallelism secret engines at the same time. Blocks the
+	 * calling thread until every engine is done.
+	 */
+	public void migrateHashicorpSecret() {
+		LOGGER.info("migrateHashicorpSecret Start reactive Secret Creation process in OPA");
+		Migration migration = regProps.getMigration();
+		encryptScheduler = Schedulers.newParallel("encrypt",
+				JWEEncryptionService.resolveWorkers(migration.getEncryptWorkers()), true);
+		journalScheduler = Schedulers.newSingle("migration-journal", true);
+		try {
+			// Get every Hashicorp cluster and its Secret Engines to interact with
+			List<Hashicorp> clusters = opaSecretUtility.getHashicorpClusters();
+			int maxEngines = 0;
+			for (Hashicorp hashicorp : clusters) {
+				LOGGER.info("migrateHashicorpSecret " + hashicorp.getHost() + ":" + hashicorp.getPort()
+						+ " secretEnginesList  ==>>>  " + hashicorp.getSecretengineList());
+				maxEngines = Math.max(maxEngines, hashicorp.getSecretengineList().size());
+			}
+			// Round robin over the clusters so no cluster waits for all engines of another
+			List<Mono<Void>> engines = new ArrayList<Mono<Void>>();
+			for (int index = 0; index < maxEngines; index++) {
+				for (final Hashicorp hashicorp : clusters) {
+					if (index < hashicorp.getSecretengineList().size()) {
+						final String secretEngine = hashicorp.getSecretengineList().get(index);
+						engines.add(Mono.defer(() -> migrateSecretEngine(hashicorp, secretEngine)));
+					}
+				}
+			}
+			Flux.fromIterable(engines).flatMap(engine -> engine, Math.max(1, migration.getEngineParallelism()))
+					.blockLast();
+		} catch (Exception e) {
+			LOGGER.error("migrateHashicorpSecret >>> " + e.getMessage());
+			// e.printStackTrace();
+		} finally {
+			encryptScheduler.dispose();
+			journalScheduler.dispose();
+			// Versions synced by this run are the baseline of the next delta run
+			deltaSyncState.save();
+		}
+	}
+
+	/**
+	 * Flow of one secret engine: crawl, read, encrypt and create
+	 *
+	 * @param hashicorp - cluster of the engine
+	 * @param secretEngine
+	 * @return Mono - completes when every secret of the engine is done
+	 */
+	private Mono<Void> migrateSecretEngine(Hashicorp hashicorp, String secretEngine) {
+		final String engineKey = hashicorp.getEngineKey(secretEngine);
+		Migration migration = regProps.getMigration();
+		// Calls in flight per engine, the cluster may have its own quota
+		int readWorkers = hashicorp.getReadWorkers() > 0 ? hashicorp.getReadWorkers() : migration.getReadWorkers();
+		int encryptWorkers = JWEEncryptionService.resolveWorkers(migration.getEncryptWorkers());
+		int createWorkers = Math.max(1, migration.getCreateWorkers());
+		// Folder lookup and creation are blocking OPA calls, made once per engine
+		return Mono.fromCallable(() -> opaSecretServicesBO.resolveSecretFolder(engineKey))
+				.subscribeOn(Schedulers.boundedElastic())
+				.switchIfEmpty(Mono.fromRunnable(() -> LOGGER.error(
+						"migrateSecretEngine >>> No OPA folder for secret engine " + engineKey + ", skipping it")))
+				.flatMap(secretFolderId -> {
+					migrationProgress.startEngine(engineKey);
+					return discoverSecrets(hashicorp, secretEngine, secretFolderId)
+							.flatMap(item -> readSecret(hashicorp, item), Math.max(1, readWorkers))
+							.flatMap(this::encryptSecret, encryptWorkers)
+							.flatMap(this::createSecret, createWorkers)
+							.then()
+							// Before the completion reaches blockLast, the run report reads the finished engines
+							.doOnTerminate(() -> migrationProgress.finishEngine(engineKey));
+				}).onErrorResume(e -> {
+					LOGGER.error("migrateSecretEngine >>> " + engineKey + " " + e.getMessage());
+					return Mono.empty();
+				});
+	}
+
+	/**
+	 * Crawl Hashicorp Secret Engine metadata. Folders are only listed when the
+	 * read stage asks for more secrets.
+	 *
+	 * @param hashicorp
+	 * @param secretEngine
+	 * @param secretFolderId
+	 * @return Flux of the secrets to migrate
+	 */
+	private Flux<MigrationItem> discoverSecrets(Hashicorp hashicorp, String secretEngine, String secretFolderId) {
+		LOGGER.info("discoverSecrets Retrieve Hashicorp secret engine metadata");
+		Migration migration = regProps.getMigration();
+		final String engineKey = hashicorp.getEngineKey(secretEngine);
+		return listFolder(hashicorp, secretEngine, "", 0, Math.max(1, migration.getCrawlConcurrency()),
+				Math.max(0, migration.getCrawlMaxDepth())).<MigrationItem>handle((secretName, sink) -> {
+					MigrationItem item = opaSecretServicesBO.newMigrationItem(secretEngine, engineKey, secretName,
+							secretFolderId);
+					if (item != null) {
+						sink.next(item);
+					}
+				}).doOnComplete(() -> migrationProgress.crawlComplete(engineKey));
+	}
+
+	/**
+	 * List a folder and, recursively, its sub folders
+	 *
+	 * @param path - folder path relative to the engine, empty for the engine root
+	 * @param depth - folder level, the engine root is level 0
+	 * @param concurrency - sub folders of a folder listed at the same time
+	 * @param maxDepth - deepest folder level crawled
+	 * @return Flux of leaf secret paths relative to the engine
+	 */
+	private Flux<String> listFolder(Hashicorp hashicorp, String secretEngine, String path, int depth,
+			int concurrency, int maxDepth) {
+		return reactiveHashicorpVaultDAO.getSecretMetadata(hashicorp.getHost(), hashicorp.getPort(),
+				hashicorp.getScheme(), hashicorp.getToken(), secretEngine, hashicorp.getMetadata(), path)
+				.onErrorResume(e -> {
+					LOGGER.error("listFolder >>> Unable to list folder " + secretEngine + "/" + path
+							+ ", its secrets are not migrated");
+					migrationProgress.failedFolder(hashicorp.getEngineKey(secretEngine));
+					return Flux.empty();
+				}).flatMap(entry -> {
+					String entryPath = path + entry;
+					if (!entry.endsWith("/")) {
+						return Flux.just(entryPath);
+					}
+					if (depth < maxDepth) {
+						return listFolder(hashicorp, secretEngine, entryPath, depth + 1, concurrency, maxDepth);
+					}
+					LOGGER.warn("listFolder Skipping " + secretEngine + "/" + entryPath + " deeper than maxDepth "
+							+ maxDepth);
+					return Flux.empty();
+				}, concurrency);
+	}
+
+	/**
+	 * Read secret data from Hashicorp, in delta mode only when its version
+	 * changed since the last sync
+	 *
+	 * @param hashicorp
+	 * @param item
+	 * @return Mono of the item with secret data, empty when nothing was read
+	 */
+	private Mono<MigrationItem> readSecret(Hashicorp hashicorp, MigrationItem item) {
+		LOGGER.info("readSecret  ===>>>  " + item.getSecretName());
+		Mono<Boolean> changed = Mono.just(true);
+		if (regProps.getMigration().isDeltaMode()) {
+			changed = reactiveHashicorpVaultDAO.getSecretVersionMetadata(hashicorp.getHost(), hashicorp.getPort(),
+					hashicorp.getScheme(), hashicorp.getToken(), item.getSecretEngine(), hashicorp.getMetadata(),
+					item.getSecretName())
+					.map(secretMetadata -> opaSecretServicesBO.isChangedSinceLastSync(item, secretMetadata))
+					// No metadata is a failure, not an unchanged secret
+					.switchIfEmpty(Mono.error(
+							new IllegalStateException("Unable to read metadata of " + item.getSecretName())));
+		}
+		return changed.flatMap(isChanged -> {
+			if (!isChanged) {
+				migrationProgress.skipped(item.getEngineKey());
+				return Mono.<MigrationItem>empty();
+			}
+			return reactiveHashicorpVaultDAO.getSecrets(hashicorp.getHost(), hashicorp.getPort(),
+					hashicorp.getScheme(), hashicorp.getToken(), item.getSecretEngine(), item.getSecretName())
+					.flatMap(hashiVaultSecrets -> Mono
+							.fromCallable(() -> opaSecretServicesBO.withSecretData(item, hashiVaultSecrets)))
+					.switchIfEmpty(Mono.fromRunnable(() -> migrationProgress.failed(item.getEngineKey())));
+		}).onErrorResume(e -> {
+			LOGGER.error("readSecret >>> " + e.getMessage());
+			migrationProgress.failed(item.getEngineKey());
+			return Mono.empty();
+		});
+	}
+
+	/**
+	 * Encrypt secret data on the encrypt workers, the event loop threads never
+	 * run RSA work
+	 *
+	 * @param item
+	 * @return Mono of the item with secret payload, empty when encryption failed
+	 */
+	private Mono<MigrationItem> encryptSecret(MigrationItem item) {
+		return Mono.fromCallable(() -> opaSecretServicesBO.encryptSecret(item)).subscribeOn(encryptScheduler);
+	}
+
+	/**
+	 * Create Secret, or update it when the item carries the id of an existing
+	 * OPA secret
+	 *
+	 * @param item
+	 * @return Mono of the created item, empty when creation failed
+	 */
+	private Mono<MigrationItem> createSecret(MigrationItem item) {
+		LOGGER.info("createSecret Create secret in OPA");
+		return writeSecret(item)
+				.onErrorResume(e -> e instanceof OPAApiException && opaKeyCache.isKeyRejection((OPAApiException) e),
+						// Key was rotated, encrypt again with the refreshed key and replay once
+						e -> Mono.fromCallable(() -> {
+							EncryptionKey refreshedKey = opaKeyCache.refreshOnRejection(item.getKeyId());
+							if (refreshedKey == null) {
+								// The kid did not change, a replay would be rejected again
+								throw (OPAApiException) e;
+							}
+							return opaSecretServicesBO.encryptSecret(item, refreshedKey);
+						}).subscribeOn(Schedulers.boundedElastic()).flatMap(this::writeSecret))
+				// Journal records may sync the file to disk, kept off the event loop
+				.publishOn(journalScheduler).map(opaVaultResponse -> {
+					opaSecretServicesBO.recordMigrated(item, opaVaultResponse);
+					return item;
+				}).switchIfEmpty(Mono.fromRunnable(() -> migrationProgress.failed(item.getEngineKey())))
+				.onErrorResume(e -> {
+					LOGGER.error("createSecret >>> " + e.getMessage());
+					migrationProgress.failed(item.getEngineKey());
+					return Mono.empty();
+				}).doFinally(signal -> item.setSecretData(null));
+	}
+
+	/**
+	 * Send the secret payload to OPA
+	 *
+	 * @param item
+	 * @return Mono of the OPA response
+	 */
+	private Mono<OPAVaultResponse> writeSecret(MigrationItem item) {
+		return withToken(token -> Mono.fromCallable(() -> item.getSecretId() != null
+				? opaSecretUtility.getUpdateSecretAPIEndpoint(item.getSecretId())
+				: opaSecretUtility.getCreateSecretAPIEndpoint()).flatMap(apiEndpointURL -> {
+					LOGGER.debug("writeSecret apiEndpointURL: " + apiEndpointURL);
+					if (item.getSecretId() != null) {
+						return reactiveOPASecretServicesDAO.updateOPASecret(item.getSecretPayload(), apiEndpointURL,
+								token);
+					}
+					return reactiveOPASecretServicesDAO.createOPASecret(item.getSecretPayload(), apiEndpointURL,
+							token);
+				}));
+	}
+
+	/**
+	 * Run an OPA call with the current token. When OPA answers 401 the token is
+	 * refreshed once and the call is replayed with the new token. Fetching a
+	 * token blocks, it runs on the bounded elastic workers.
+	 *
+	 * @param call
+	 * @return Mono - result of the call
+	 */
+	private <T> Mono<T> withToken(Function<String, Mono<T>> call) {
+		return Mono.defer(() -> {
+			String cachedToken = opaTokenManager.getCachedToken();
+			Mono<String> token = cachedToken != null ? Mono.just(cachedToken)
+					: Mono.fromCallable(opaTokenManager::getToken).subscribeOn(Schedulers.boundedElastic());
+			return token.flatMap(currentToken -> call.apply(currentToken).onErrorResume(
+					e -> e instanceof OPAApiException && ((OPAApiException) e).isUnauthorized(), e -> {
+						LOGGER.info("withToken Token rejected by OPA, refreshing and replaying request");
+						return Mono.fromCallable(() -> opaTokenManager.refresh(currentToken))
+								.subscribeOn(Schedulers.boundedElastic()).flatMap(call);
+					}));
+		});
+	}
+
+}
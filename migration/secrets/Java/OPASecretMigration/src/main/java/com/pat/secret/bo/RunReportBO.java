@@ -0,0 +1,239 @@
+package com.pat.secret.bo;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.EngineReport;
+import com.pat.secret.vo.RunReport;
+import com.pat.secret.vo.Shard;
+
+/**
+ * Run report of a migration. Every shard of a sharded run writes its own
+ * report, the merge step started with --merge-reports sums the reports of all
+ * shards into one.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class RunReportBO {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(RunReportBO.class);
+
+	public static final String MERGE_REPORTS_ARGUMENT = "--merge-reports";
+
+	private static RegisterProperties regProps;
+
+	private static MigrationProgress migrationProgress;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		RunReportBO.regProps = regProps;
+	}
+
+	@Autowired
+	private void setMigrationProgress(MigrationProgress migrationProgress) {
+		RunReportBO.migrationProgress = migrationProgress;
+	}
+
+	public RunReportBO() {
+
+	}
+
+	/**
+	 * @param args - command line arguments
+	 * @return boolean - true when the shard reports are to be merged instead of migrating
+	 */
+	public boolean isMergeReports(String... args) {
+		return args != null && Arrays.asList(args).contains(MERGE_REPORTS_ARGUMENT);
+	}
+
+	/**
+	 * Write the report of this run, or of this shard, from the engines the
+	 * migration finished
+	 *
+	 * @param startedAtMillis - start of the run
+	 * @return RunReport
+	 */
+	public RunReport writeRunReport(long startedAtMillis) {
+		Shard shard = regProps.getShard();
+		RunReport report = newReport(shard.getCount(), migrationProgress.getFinishedEngines());
+		report.setShards(Arrays.asList(shard.getIndex()));
+		report.setStartedAt(Instant.ofEpochMilli(startedAtMillis).toString());
+		report.setFinishedAt(Instant.now().toString());
+		setElapsed(report, startedAtMillis, System.currentTimeMillis());
+		LOGGER.info("writeRunReport " + describe(report));
+		String reportFile = getReportFile();
+		if (reportFile != null) {
+			write(report, Paths.get(shard.getShardFile(reportFile)));
+		}
+		return report;
+	}
+
+	/**
+	 * Merge the reports of shards 0 to count - 1 into the report file. Engines
+	 * are summed by name, a shard without report is listed as missing.
+	 *
+	 * @return RunReport - the merged report, null when no shard report was found
+	 */
+	public RunReport mergeShardReports() {
+		String reportFile = getReportFile();
+		int shardCount = regProps.getShard().getCount();
+		if (reportFile == null) {
+			LOGGER.error("mergeShardReports >>> register.shard.reportFile is not set");
+			return null;
+		}
+		List<Integer> shards = new ArrayList<Integer>();
+		List<Integer> missingShards = new ArrayList<Integer>();
+		Map<String, EngineReport> engines = new LinkedHashMap<String, EngineReport>();
+		long startedAtMillis = Long.MAX_VALUE;
+		long finishedAtMillis = Long.MIN_VALUE;
+		for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+			Path shardFile = Paths.get(Shard.getShardFile(reportFile, shardIndex));
+			if (!shardFile.toFile().isFile()) {
+				LOGGER.warn("mergeShardReports No report of shard " + shardIndex + " at " + shardFile);
+				missingShards.add(shardIndex);
+				continue;
+			}
+			try {
+				RunReport shardReport = JsonCodec.RUN_REPORT_READER.readValue(shardFile.toFile());
+				shards.add(shardIndex);
+				startedAtMillis = Math.min(startedAtMillis, Instant.parse(shardReport.getStartedAt()).toEpochMilli());
+				finishedAtMillis = Math.max(finishedAtMillis, Instant.parse(shardReport.getFinishedAt()).toEpochMilli());
+				if (shardReport.getEngines() != null) {
+					for (EngineReport engine : shardReport.getEngines()) {
+						add(engines, engine);
+					}
+				}
+			} catch (Exception e) {
+				LOGGER.error("mergeShardReports >>> Unable to read report of shard " + shardIndex + " " + e.getMessage());
+				// e.printStackTrace();
+				missingShards.add(shardIndex);
+			}
+		}
+		if (shards.isEmpty()) {
+			LOGGER.error("mergeShardReports >>> No shard report found for " + reportFile);
+			return null;
+		}
+		RunReport report = newReport(shardCount, new ArrayList<EngineReport>(engines.values()));
+		report.setShards(shards);
+		report.setMissingShards(missingShards);
+		report.setStartedAt(Instant.ofEpochMilli(startedAtMillis).toString());
+		report.setFinishedAt(Instant.ofEpochMilli(finishedAtMillis).toString());
+		// Shards run side by side, the run lasts from the first start to the last finish
+		setElapsed(report, startedAtMillis, finishedAtMillis);
+		LOGGER.info("mergeShardReports " + describe(report));
+		write(report, Paths.get(reportFile));
+		return report;
+	}
+
+	/**
+	 * @param shardCount
+	 * @param engines
+	 * @return RunReport - with the engines and their totals
+	 */
+	private RunReport newReport(int shardCount, List<EngineReport> engines) {
+		RunReport report = new RunReport();
+		report.setShardCount(shardCount);
+		report.setEngines(engines);
+		for (EngineReport engine : engines) {
+			report.setDiscovered(report.getDiscovered() + engine.getDiscovered());
+			report.setMigrated(report.getMigrated() + engine.getMigrated());
+			report.setSkipped(report.getSkipped() + engine.getSkipped());
+			report.setFailed(report.getFailed() + engine.getFailed());
+			report.setFailedFolders(report.getFailedFolders() + engine.getFailedFolders());
+		}
+		return report;
+	}
+
+	/**
+	 * Sum an engine into the engines merged so far
+	 *
+	 * @param engines
+	 * @param engine
+	 */
+	private void add(Map<String, EngineReport> engines, EngineReport engine) {
+		EngineReport merged = engines.get(engine.getEngine());
+		if (merged == null) {
+			engines.put(engine.getEngine(), engine);
+			return;
+		}
+		merged.setDiscovered(merged.getDiscovered() + engine.getDiscovered());
+		merged.setMigrated(merged.getMigrated() + engine.getMigrated());
+		merged.setSkipped(merged.getSkipped() + engine.getSkipped());
+		merged.setFailed(merged.getFailed() + engine.getFailed());
+		merged.setFailedFolders(merged.getFailedFolders() + engine.getFailedFolders());
+		merged.setElapsedSeconds(Math.max(merged.getElapsedSeconds(), engine.getElapsedSeconds()));
+	}
+
+	private void setElapsed(RunReport report, long startedAtMillis, long finishedAtMillis) {
+		double elapsedSeconds = Math.max(0, finishedAtMillis - startedAtMillis) / 1000.0;
+		long done = report.getMigrated() + report.getSkipped() + report.getFailed();
+		report.setElapsedSeconds(elapsedSeconds);
+		report.setRate(elapsedSeconds > 0 ? done / elapsedSeconds : 0);
+	}
+
+	/**
+	 * @param report
+	 * @return String - one summary line
+	 */
+	private String describe(RunReport report) {
+		return String.format(Locale.ROOT,
+				"shards=%s/%d missing=%s engines=%d discovered=%d migrated=%d skipped=%d failed=%d failedFolders=%d"
+						+ " elapsed=%s rate=%.1f/s",
+				report.getShards(), report.getShardCount(),
+				report.getMissingShards() == null ? "[]" : report.getMissingShards(), report.getEngines().size(),
+				report.getDiscovered(), report.getMigrated(), report.getSkipped(), report.getFailed(),
+				report.getFailedFolders(),
+				MigrationProgress.formatDuration(report.getElapsedSeconds()), report.getRate());
+	}
+
+	/**
+	 * @return String - the configured report file, null when reports are not written
+	 */
+	private String getReportFile() {
+		String reportFile = regProps.getShard().getReportFile();
+		return reportFile == null || reportFile.trim().isEmpty() ? null : reportFile.trim();
+	}
+
+	/**
+	 * Write a report. The file is replaced atomically so the merge step never
+	 * reads a partial report.
+	 *
+	 * @param report
+	 * @param reportPath
+	 */
+	private void write(RunReport report, Path reportPath) {
+		try {
+			File parent = reportPath.toAbsolutePath().getParent().toFile();
+			parent.mkdirs();
+			Path tempFile = File.createTempFile("run-report", ".tmp", parent).toPath();
+			JsonCodec.RUN_REPORT_WRITER.writeValue(tempFile.toFile(), report);
+			Files.move(tempFile, reportPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.info("write Wrote run report to " + reportPath);
+		} catch (Exception e) {
+			LOGGER.error("write >>> Unable to write run report " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+}
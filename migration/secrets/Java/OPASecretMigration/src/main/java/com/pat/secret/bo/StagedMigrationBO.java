@@ -0,0 +1,309 @@
+package com.pat.secret.bo;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.dao.MigrationJournal;
+import com.pat.secret.dao.OPAApiException;
+import com.pat.secret.dao.OPASecretServicesDAO;
+import com.pat.secret.dao.StagedRequestBody;
+import com.pat.secret.dao.StagingFile;
+import com.pat.secret.utility.OPASecretUtility;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.MigrationItem;
+import com.pat.secret.vo.OPAVaultResponse;
+import com.pat.secret.vo.StagedSecret;
+import com.pat.secret.vo.Staging;
+
+/**
+ * Two phase migration. --extract reads and encrypts the secrets into the
+ * staging file, --load sends the staged requests to OPA with loadConcurrency
+ * calls in flight. Hashicorp vault is only read by the extract, a failed or
+ * interrupted load is replayed from the staging file.
+ *
+ * The load saves the offset below which every record reached OPA, a rerun
+ * starts there. Records after it that were already created are skipped by the
+ * journal.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class StagedMigrationBO {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(StagedMigrationBO.class);
+
+	public static final String EXTRACT_ARGUMENT = "--extract";
+
+	public static final String LOAD_ARGUMENT = "--load";
+
+	private static RegisterProperties regProps;
+
+	private static OPASecretUtility opaSecretUtility;
+
+	private static OPASecretServicesDAO opaSecretServicesDAO;
+
+	private static OPATokenManager opaTokenManager;
+
+	private static OPAKeyCache opaKeyCache;
+
+	private static OPASecretServicesBO opaSecretServicesBO;
+
+	private static MigrationJournal migrationJournal;
+
+	private static MigrationProgress migrationProgress;
+
+	private static StagingFile stagingFile;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		StagedMigrationBO.regProps = regProps;
+	}
+
+	@Autowired
+	private void setRegister(OPASecretUtility opaSecretUtility) {
+		StagedMigrationBO.opaSecretUtility = opaSecretUtility;
+	}
+
+	@Autowired
+	private void setOPASecretServicesDAO(OPASecretServicesDAO opaSecretServicesDAO) {
+		StagedMigrationBO.opaSecretServicesDAO = opaSecretServicesDAO;
+	}
+
+	@Autowired
+	private void setOPATokenManager(OPATokenManager opaTokenManager) {
+		StagedMigrationBO.opaTokenManager = opaTokenManager;
+	}
+
+	@Autowired
+	private void setOPAKeyCache(OPAKeyCache opaKeyCache) {
+		StagedMigrationBO.opaKeyCache = opaKeyCache;
+	}
+
+	@Autowired
+	private void setOPASecretServicesBO(OPASecretServicesBO opaSecretServicesBO) {
+		StagedMigrationBO.opaSecretServicesBO = opaSecretServicesBO;
+	}
+
+	@Autowired
+	private void setMigrationJournal(MigrationJournal migrationJournal) {
+		StagedMigrationBO.migrationJournal = migrationJournal;
+	}
+
+	@Autowired
+	private void setMigrationProgress(MigrationProgress migrationProgress) {
+		StagedMigrationBO.migrationProgress = migrationProgress;
+	}
+
+	@Autowired
+	private void setStagingFile(StagingFile stagingFile) {
+		StagedMigrationBO.stagingFile = stagingFile;
+	}
+
+	public StagedMigrationBO() {
+
+	}
+
+	/**
+	 * @param args - command line arguments
+	 * @return boolean - true to run the extract phase
+	 */
+	public boolean isExtract(String... args) {
+		return args != null && Arrays.asList(args).contains(EXTRACT_ARGUMENT);
+	}
+
+	/**
+	 * @param args - command line arguments
+	 * @return boolean - true to run the load phase
+	 */
+	public boolean isLoad(String... args) {
+		return args != null && Arrays.asList(args).contains(LOAD_ARGUMENT);
+	}
+
+	/**
+	 * Read and encrypt every secret into the staging file
+	 */
+	public void extract() {
+		opaSecretServicesBO.extractHashicorpSecret();
+	}
+
+	/**
+	 * Send the staged requests to OPA, from the offset saved by an earlier load
+	 */
+	public void load() {
+		Staging staging = regProps.getStaging();
+		if (!stagingFile.getPath().toFile().isFile()) {
+			LOGGER.error("load >>> No staging file " + stagingFile.getPath() + ", run the extract first");
+			return;
+		}
+		final long startOffset = stagingFile.readOffset();
+		LOGGER.info("load Start loading " + stagingFile.getPath() + " from offset " + startOffset);
+		final int concurrency = Math.max(1, staging.getLoadConcurrency());
+		final LoadWatermark watermark = new LoadWatermark(startOffset);
+		final Semaphore inFlight = new Semaphore(concurrency);
+		final Set<String> engines = new LinkedHashSet<String>();
+		final AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService loaders = Executors.newFixedThreadPool(concurrency, runnable -> {
+			Thread thread = new Thread(runnable, "staging-load-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		ScheduledExecutorService offsetSync = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "staging-offset-sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long syncIntervalSeconds = Math.max(1, staging.getOffsetSyncIntervalSeconds());
+		offsetSync.scheduleWithFixedDelay(() -> stagingFile.saveOffset(watermark.get()), syncIntervalSeconds,
+				syncIntervalSeconds, TimeUnit.SECONDS);
+		try {
+			long endOffset = stagingFile.read(startOffset, (offset, nextOffset, stagedSecret, body) -> {
+				if (engines.add(stagedSecret.getSecretEngine())) {
+					migrationProgress.startEngine(stagedSecret.getSecretEngine());
+				}
+				migrationProgress.discovered(stagedSecret.getSecretEngine());
+				// The reader waits while loadConcurrency records are in flight, mapped bodies stay bounded
+				inFlight.acquire();
+				loaders.execute(() -> {
+					try {
+						if (loadSecret(stagedSecret, body)) {
+							watermark.loaded(offset, nextOffset);
+						} else {
+							watermark.failed(offset);
+						}
+					} finally {
+						inFlight.release();
+					}
+				});
+			});
+			loaders.shutdown();
+			loaders.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			LOGGER.info("load Read staging file up to offset " + endOffset + ", loaded up to offset " + watermark.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.error("load >>> Interrupted " + e.getMessage());
+		} catch (Exception e) {
+			LOGGER.error("load >>> " + e.getMessage());
+			// e.printStackTrace();
+		} finally {
+			loaders.shutdownNow();
+			offsetSync.shutdownNow();
+			stagingFile.saveOffset(watermark.get());
+			for (String engine : engines) {
+				migrationProgress.crawlComplete(engine);
+				migrationProgress.finishEngine(engine);
+			}
+			migrationJournal.sync();
+		}
+	}
+
+	/**
+	 * Send one staged request to OPA and checkpoint it
+	 *
+	 * @param stagedSecret
+	 * @param body - OPAVaultRequest JSON
+	 * @return boolean - true when the secret is in OPA
+	 */
+	private boolean loadSecret(StagedSecret stagedSecret, ByteBuffer body) {
+		String engineKey = stagedSecret.getSecretEngine();
+		// Created by the load that was interrupted before saving its offset
+		if (stagedSecret.getSecretId() == null && migrationJournal.isMigrated(engineKey, stagedSecret.getPath())) {
+			migrationProgress.skipped(engineKey);
+			return true;
+		}
+		MigrationItem item = new MigrationItem(engineKey, engineKey, stagedSecret.getPath(), null);
+		item.setVersion(stagedSecret.getVersion());
+		item.setUpdatedTime(stagedSecret.getUpdatedTime());
+		item.setSecretId(stagedSecret.getSecretId());
+		item.setKeyId(stagedSecret.getKeyId());
+		try {
+			final StagedRequestBody requestBody = new StagedRequestBody(body);
+			OPAVaultResponse opaVaultResponse;
+			if (item.getSecretId() != null) {
+				final String updateEndpointURL = opaSecretUtility.getUpdateSecretAPIEndpoint(item.getSecretId());
+				opaVaultResponse = opaTokenManager.callWithToken(
+						token -> opaSecretServicesDAO.updateOPASecret(requestBody, updateEndpointURL, token));
+			} else {
+				final String createEndpointURL = opaSecretUtility.getCreateSecretAPIEndpoint();
+				opaVaultResponse = opaTokenManager.callWithToken(
+						token -> opaSecretServicesDAO.createOPASecret(requestBody, createEndpointURL, token));
+			}
+			if (opaVaultResponse != null) {
+				opaSecretServicesBO.recordMigrated(item, opaVaultResponse);
+				return true;
+			}
+		} catch (OPAApiException e) {
+			if (opaKeyCache.isKeyRejection(e)) {
+				// The plain secret is not staged, only a new extract can encrypt it with the current key
+				LOGGER.error("loadSecret >>> " + stagedSecret.getPath() + " was encrypted with key "
+						+ stagedSecret.getKeyId() + " OPA no longer accepts, extract it again");
+			} else {
+				LOGGER.error("loadSecret >>> " + e.getMessage());
+			}
+		} catch (Exception e) {
+			LOGGER.error("loadSecret >>> " + e.getMessage());
+			// e.printStackTrace();
+		}
+		migrationProgress.failed(engineKey);
+		return false;
+	}
+
+	/**
+	 * Offset below which every record reached OPA. Records complete out of order,
+	 * the offset moves past a record once all records before it are loaded and
+	 * never past a failed record, so a rerun replays it.
+	 */
+	static class LoadWatermark {
+
+		// Guarded by this
+		private long offset;
+
+		private long firstFailed = Long.MAX_VALUE;
+
+		// Start to end of the records loaded beyond the offset
+		private final Map<Long, Long> loaded = new TreeMap<Long, Long>();
+
+		LoadWatermark(long offset) {
+			this.offset = offset;
+		}
+
+		synchronized void loaded(long start, long end) {
+			if (start >= firstFailed) {
+				return;
+			}
+			loaded.put(start, end);
+			Long next;
+			while ((next = loaded.remove(offset)) != null) {
+				offset = next;
+			}
+		}
+
+		synchronized void failed(long start) {
+			firstFailed = Math.min(firstFailed, start);
+			// Records after the first failure can not move the offset anymore
+			loaded.keySet().removeIf(recordStart -> recordStart >= firstFailed);
+		}
+
+		synchronized long get() {
+			return offset;
+		}
+	}
+
+}
@@ -0,0 +1,570 @@
+package com.pat.secret.bo;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.bo.OPAKeyCache.EncryptionKey;
+import com.pat.secret.dao.HashicorpVaultDAO;
+import com.pat.secret.dao.OPASecretServicesDAO;
+import com.pat.secret.utility.MigrationMetrics;
+import com.pat.secret.utility.OPASecretUtility;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.DryRun;
+import com.pat.secret.vo.Hashicorp;
+import com.pat.secret.vo.Migration;
+import com.pat.secret.vo.MigrationItem;
+
+/**
+ * Dry run of the migration for inventory and capacity planning. The configured
+ * secret engines are crawled in parallel and the KV v2 metadata of every secret
+ * is read, nothing is written to OPA and no secret value is parsed.
+ *
+ * The report holds secret and folder counts, depth, version and payload size
+ * histograms and the runtime estimated for the configured concurrency and OPA
+ * rate limit. Payload sizes are the byte counts of sampled read responses
+ * (register.dryRun.sizeSampleRate), KV v2 metadata carries no size.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class VaultInventoryBO {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(VaultInventoryBO.class);
+
+	// Command line switch starting a dry run instead of the migration
+	public static final String DRY_RUN_ARGUMENT = "--dry-run";
+
+	private static final long[] SIZE_BOUNDS = { 512, 1024, 4096, 16384, 65536, 262144 };
+
+	private static final String[] SIZE_LABELS = { "<=512B", "<=1KiB", "<=4KiB", "<=16KiB", "<=64KiB", "<=256KiB",
+			">256KiB" };
+
+	private static final long[] VERSION_BOUNDS = { 1, 2, 5, 10, 50 };
+
+	private static final String[] VERSION_LABELS = { "1", "2", "3-5", "6-10", "11-50", ">50" };
+
+	// Payload encrypted to time JWE when no read response was sampled
+	private static final int DEFAULT_PAYLOAD_SIZE = 1024;
+
+	private static RegisterProperties regProps;
+
+	private static OPASecretUtility opaSecretUtility;
+
+	private static HashicorpVaultDAO hashicorpVaultDAO;
+
+	private static OPASecretServicesDAO opaSecretServicesDAO;
+
+	private static OPATokenManager opaTokenManager;
+
+	private static OPAKeyCache opaKeyCache;
+
+	private static JWEEncryptionService jweEncryptionService;
+
+	private static MigrationMetrics migrationMetrics;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		VaultInventoryBO.regProps = regProps;
+	}
+
+	@Autowired
+	private void setRegister(OPASecretUtility opaSecretUtility) {
+		VaultInventoryBO.opaSecretUtility = opaSecretUtility;
+	}
+
+	@Autowired
+	private void setHashicorpVaultDAO(HashicorpVaultDAO hashicorpVaultDAO) {
+		VaultInventoryBO.hashicorpVaultDAO = hashicorpVaultDAO;
+	}
+
+	@Autowired
+	private void setOPASecretServicesDAO(OPASecretServicesDAO opaSecretServicesDAO) {
+		VaultInventoryBO.opaSecretServicesDAO = opaSecretServicesDAO;
+	}
+
+	@Autowired
+	private void setOPATokenManager(OPATokenManager opaTokenManager) {
+		VaultInventoryBO.opaTokenManager = opaTokenManager;
+	}
+
+	@Autowired
+	private void setOPAKeyCache(OPAKeyCache opaKeyCache) {
+		VaultInventoryBO.opaKeyCache = opaKeyCache;
+	}
+
+	@Autowired
+	private void setJWEEncryptionService(JWEEncryptionService jweEncryptionService) {
+		VaultInventoryBO.jweEncryptionService = jweEncryptionService;
+	}
+
+	@Autowired
+	private void setMigrationMetrics(MigrationMetrics migrationMetrics) {
+		VaultInventoryBO.migrationMetrics = migrationMetrics;
+	}
+
+	public VaultInventoryBO() {
+
+	}
+
+	/**
+	 * @param args - command line arguments
+	 * @return boolean - true when --dry-run is given or register.dryRun.enabled is set
+	 */
+	public boolean isDryRun(String... args) {
+		return (args != null && Arrays.asList(args).contains(DRY_RUN_ARGUMENT)) || regProps.getDryRun().isEnabled();
+	}
+
+	/**
+	 * Crawl every configured secret engine, log the inventory and capacity report
+	 * and write it to register.dryRun.reportFile when set
+	 *
+	 * @return String - the report, empty when the inventory failed
+	 */
+	public String runDryRun() {
+		LOGGER.info("runDryRun Start inventory of Hashicorp secret engines, nothing is written to OPA");
+		DryRun dryRun = regProps.getDryRun();
+		LOGGER.info("runDryRun dry run settings ---> " + dryRun);
+		String report = "";
+		try {
+			List<Hashicorp> clusters = opaSecretUtility.getHashicorpClusters();
+			int engineCount = 0;
+			for (Hashicorp hashicorp : clusters) {
+				LOGGER.info("runDryRun " + hashicorp.getHost() + ":" + hashicorp.getPort()
+						+ " secretEnginesList  ==>>>  " + hashicorp.getSecretengineList());
+				engineCount += hashicorp.getSecretengineList().size();
+			}
+			List<EngineInventory> inventories = new ArrayList<EngineInventory>(engineCount);
+			final AtomicInteger threadCount = new AtomicInteger();
+			ExecutorService enginePool = Executors.newFixedThreadPool(
+					Math.max(1, Math.min(engineCount, dryRun.getEngineParallelism())), runnable -> {
+						Thread thread = new Thread(runnable, "inventory-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			try {
+				List<Future<EngineInventory>> engines = new ArrayList<Future<EngineInventory>>(engineCount);
+				for (final Hashicorp hashicorp : clusters) {
+					for (final String secretEngine : hashicorp.getSecretengineList()) {
+						engines.add(enginePool.submit(() -> inventoryEngine(hashicorp, secretEngine)));
+					}
+				}
+				for (Future<EngineInventory> engine : engines) {
+					inventories.add(engine.get());
+				}
+			} finally {
+				enginePool.shutdownNow();
+			}
+			report = describe(inventories);
+			LOGGER.info("runDryRun Inventory and capacity report" + System.lineSeparator() + report);
+			writeReport(report);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.error("runDryRun >>> Interrupted " + e.getMessage());
+		} catch (Exception e) {
+			LOGGER.error("runDryRun >>> " + e.getMessage());
+			// e.printStackTrace();
+		}
+		return report;
+	}
+
+	/**
+	 * Crawl one secret engine and read the metadata of every secret through a
+	 * single stage pipeline of readWorkers workers
+	 *
+	 * @param hashicorp
+	 * @param secretEngine
+	 * @return EngineInventory - counts and histograms of the engine
+	 */
+	private EngineInventory inventoryEngine(final Hashicorp hashicorp, final String secretEngine) {
+		Migration migration = regProps.getMigration();
+		final EngineInventory inventory = new EngineInventory(hashicorp.getEngineKey(secretEngine),
+				migration.getCrawlMaxDepth());
+		final MigrationPipeline pipeline = new MigrationPipeline(inventory.secretEngine + "-inventory",
+				migration.getDiscoveryQueueCapacity(), migration.getQueueCapacity());
+		int readWorkers = hashicorp.getReadWorkers() > 0 ? hashicorp.getReadWorkers() : migration.getReadWorkers();
+		pipeline.addStage("metadata", readWorkers, item -> inspectSecret(hashicorp, inventory, item));
+		pipeline.start();
+		migrationMetrics.trackStage(pipeline.getName(), "metadata", () -> pipeline.getQueueDepth("metadata"),
+				() -> pipeline.getBusyWorkers("metadata"));
+		long startNanos = System.nanoTime();
+		try {
+			VaultPathCrawler crawler = new VaultPathCrawler(hashicorpVaultDAO, hashicorp,
+					migration.getCrawlConcurrency(), migration.getCrawlMaxDepth());
+			crawler.crawl(secretEngine, secretName -> {
+				int separator = secretName.lastIndexOf('/');
+				inventory.folders.add(separator < 0 ? "" : secretName.substring(0, separator));
+				inventory.depths.record(countSeparators(secretName));
+				try {
+					pipeline.submit(new MigrationItem(secretEngine, secretName, null));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while queueing " + secretName, e);
+				}
+			}, folder -> inventory.failedFolders.increment());
+			pipeline.complete();
+			// The secrets below a folder that could not be listed are missing from the counts
+			inventory.complete = inventory.failedFolders.sum() == 0;
+		} catch (Exception e) {
+			pipeline.shutdownNow();
+			LOGGER.error("inventoryEngine >>> " + secretEngine + " " + e.getMessage());
+			// e.printStackTrace();
+		} finally {
+			inventory.elapsedNanos = System.nanoTime() - startNanos;
+			migrationMetrics.untrackStage(pipeline.getName(), "metadata");
+		}
+		LOGGER.info("inventoryEngine Finished inventory of secret engine " + secretEngine + " secrets="
+				+ inventory.depths.count.sum());
+		return inventory;
+	}
+
+	/**
+	 * Read the metadata of a secret and, for a sample of the secrets, the size of
+	 * its read response
+	 *
+	 * @param hashicorp
+	 * @param inventory
+	 * @param item
+	 * @return MigrationItem - always null, nothing is handed to a next stage
+	 */
+	private MigrationItem inspectSecret(Hashicorp hashicorp, EngineInventory inventory, MigrationItem item) {
+		long startNanos = System.nanoTime();
+		Map<String, Object> metadata = hashicorpVaultDAO.getSecretVersionMetadata(hashicorp.getHost(),
+				hashicorp.getPort(), hashicorp.getScheme(), hashicorp.getToken(), item.getSecretEngine(),
+				hashicorp.getMetadata(), item.getSecretName());
+		inventory.metadataNanos.add(System.nanoTime() - startNanos);
+		if (metadata == null || metadata.isEmpty()) {
+			inventory.failed.increment();
+			return null;
+		}
+		Object versions = metadata.get("versions");
+		inventory.versions.record(versions instanceof Map ? Math.max(1, ((Map<?, ?>) versions).size()) : 1);
+		double sampleRate = regProps.getDryRun().getSizeSampleRate();
+		if (sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+			long size = hashicorpVaultDAO.getSecretSize(hashicorp.getHost(), hashicorp.getPort(),
+					hashicorp.getScheme(), hashicorp.getToken(), item.getSecretEngine(), item.getSecretName());
+			if (size >= 0) {
+				inventory.sizes.record(size);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param inventories
+	 * @return String - the inventory and capacity report
+	 */
+	private String describe(List<EngineInventory> inventories) {
+		Migration migration = regProps.getMigration();
+		DryRun dryRun = regProps.getDryRun();
+		Histogram depths = Histogram.depths(migration.getCrawlMaxDepth());
+		Histogram versions = new Histogram(VERSION_BOUNDS, VERSION_LABELS);
+		Histogram sizes = new Histogram(SIZE_BOUNDS, SIZE_LABELS);
+		long folders = 0;
+		long failed = 0;
+		long metadataReads = 0;
+		long metadataNanos = 0;
+		StringBuilder report = new StringBuilder(2048);
+		report.append("Secret engines").append(System.lineSeparator());
+		for (EngineInventory inventory : inventories) {
+			long secrets = inventory.depths.count.sum();
+			report.append(String.format(Locale.ROOT,
+					"  %s secrets=%d folders=%d maxDepth=%d metadataFailures=%d failedFolders=%d crawl=%s%s%n",
+					inventory.secretEngine, secrets, inventory.folders.size(), inventory.depths.max.get(),
+					inventory.failed.sum(), inventory.failedFolders.sum(),
+					MigrationProgress.formatDuration(inventory.elapsedNanos / 1e9),
+					inventory.complete ? "" : " INCOMPLETE"));
+			depths.addAll(inventory.depths);
+			versions.addAll(inventory.versions);
+			sizes.addAll(inventory.sizes);
+			folders += inventory.folders.size();
+			failed += inventory.failed.sum();
+			metadataReads += secrets;
+			metadataNanos += inventory.metadataNanos.sum();
+		}
+		long secrets = depths.count.sum();
+		report.append(String.format(Locale.ROOT, "  total secrets=%d folders=%d metadataFailures=%d%n", secrets,
+				folders, failed));
+		report.append("Secret depth (folders below the engine)").append(System.lineSeparator())
+				.append(depths.describe());
+		report.append("Versions per secret").append(System.lineSeparator()).append(versions.describe());
+		long sampled = sizes.count.sum();
+		if (sampled > 0) {
+			report.append(String.format(Locale.ROOT,
+					"Payload size (read response bytes, %d sampled secrets, mean %.0f, max %d)%n", sampled,
+					sizes.mean(), sizes.max.get())).append(sizes.describe());
+		} else {
+			report.append("Payload size not sampled, set register.dryRun.sizeSampleRate above 0")
+					.append(System.lineSeparator());
+		}
+
+		// Per secret cost of every migration stage
+		double vaultMillis = metadataReads == 0 ? -1 : metadataNanos / 1e6 / metadataReads;
+		int payloadSize = sampled > 0 ? (int) Math.max(1, sizes.mean()) : DEFAULT_PAYLOAD_SIZE;
+		double encryptMillis = measureEncryptMillis(payloadSize, dryRun.getEncryptSamples());
+		double opaMillis = measureOPAMillis(dryRun.getOpaLatencySamples());
+		int readWorkers = dryRun.getConcurrency() > 0 ? dryRun.getConcurrency() : migration.getReadWorkers();
+		int createWorkers = dryRun.getConcurrency() > 0 ? dryRun.getConcurrency() : migration.getCreateWorkers();
+		// Encryption is CPU bound, workers beyond the core count add nothing
+		int encryptWorkers = Math.min(JWEEncryptionService.resolveWorkers(migration.getEncryptWorkers()),
+				Runtime.getRuntime().availableProcessors());
+		double rateLimit = dryRun.getOpaRateLimitPerSecond() > 0 ? dryRun.getOpaRateLimitPerSecond()
+				: regProps.getOktapam().getRateLimitPerSecond();
+
+		report.append(String.format(Locale.ROOT,
+				"Capacity at readWorkers=%d encryptWorkers=%d createWorkers=%d opaRateLimit=%.1f/s%n", readWorkers,
+				encryptWorkers, createWorkers, rateLimit));
+		double throughput = Double.MAX_VALUE;
+		String bottleneck = "unknown";
+		double[] rates = { perSecond(readWorkers, vaultMillis), perSecond(encryptWorkers, encryptMillis),
+				perSecond(createWorkers, opaMillis), rateLimit > 0 ? rateLimit : -1 };
+		String[] names = { "read", "encrypt", "create", "opa rate limit" };
+		String[] costs = { latency(vaultMillis, "vault metadata read"), latency(encryptMillis, "jwe encrypt"),
+				latency(opaMillis, "opa jwks read"), "" };
+		for (int i = 0; i < rates.length; i++) {
+			report.append(String.format(Locale.ROOT, "  %-15s %12s %s%n", names[i],
+					rates[i] < 0 ? "unknown" : String.format(Locale.ROOT, "%.1f/s", rates[i]), costs[i]));
+			if (rates[i] > 0 && rates[i] < throughput) {
+				throughput = rates[i];
+				bottleneck = names[i];
+			}
+		}
+		if (throughput == Double.MAX_VALUE) {
+			report.append("Estimated runtime unknown, no stage could be measured").append(System.lineSeparator());
+		} else {
+			report.append(String.format(Locale.ROOT, "Estimated runtime %s at %.1f secrets/s, bottleneck %s%n",
+					MigrationProgress.formatDuration(secrets / throughput), throughput, bottleneck));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Time JWE encryption of a synthetic payload with the current OPA key
+	 *
+	 * @param payloadSize - characters of the synthetic payload
+	 * @param samples
+	 * @return double - mean milliseconds per encryption, -1 when no key is available
+	 */
+	private double measureEncryptMillis(int payloadSize, int samples) {
+		try {
+			EncryptionKey key = opaKeyCache.getCurrentKey();
+			if (key == null || samples <= 0) {
+				return -1;
+			}
+			char[] payload = new char[payloadSize];
+			Arrays.fill(payload, 'x');
+			String secretData = new String(payload);
+			// Warm up the cipher and the JIT before timing it
+			for (int i = 0; i < samples; i++) {
+				jweEncryptionService.encrypt(secretData, key);
+			}
+			long startNanos = System.nanoTime();
+			for (int i = 0; i < samples; i++) {
+				jweEncryptionService.encrypt(secretData, key);
+			}
+			return (System.nanoTime() - startNanos) / 1e6 / samples;
+		} catch (Exception e) {
+			LOGGER.error("measureEncryptMillis >>> " + e.getMessage());
+			// e.printStackTrace();
+			return -1;
+		}
+	}
+
+	/**
+	 * Time a read only OPA call, the JWKS read, as a stand-in for the secret create
+	 * round trip
+	 *
+	 * @param samples
+	 * @return double - median milliseconds per call, -1 when OPA could not be reached
+	 */
+	private double measureOPAMillis(int samples) {
+		try {
+			if (samples <= 0) {
+				return -1;
+			}
+			final String apiEndpointURL = opaSecretUtility.getJWKSAPIEndpoint();
+			List<Double> millis = new ArrayList<Double>(samples);
+			for (int i = 0; i < samples; i++) {
+				long startNanos = System.nanoTime();
+				if (opaTokenManager.callWithToken(token -> opaSecretServicesDAO.getVaultPublicKeys(apiEndpointURL,
+						token)).isEmpty()) {
+					return -1;
+				}
+				millis.add((System.nanoTime() - startNanos) / 1e6);
+			}
+			Collections.sort(millis);
+			return millis.get(millis.size() / 2);
+		} catch (Exception e) {
+			LOGGER.error("measureOPAMillis >>> " + e.getMessage());
+			// e.printStackTrace();
+			return -1;
+		}
+	}
+
+	/**
+	 * Write the report to register.dryRun.reportFile when set
+	 *
+	 * @param report
+	 */
+	private void writeReport(String report) {
+		String reportFile = regProps.getDryRun().getReportFile();
+		if (reportFile == null || reportFile.trim().isEmpty()) {
+			return;
+		}
+		try {
+			Path reportPath = Paths.get(reportFile.trim());
+			if (reportPath.toAbsolutePath().getParent() != null) {
+				Files.createDirectories(reportPath.toAbsolutePath().getParent());
+			}
+			Files.write(reportPath, report.getBytes(StandardCharsets.UTF_8));
+			LOGGER.info("writeReport Wrote inventory report to " + reportPath);
+		} catch (Exception e) {
+			LOGGER.error("writeReport >>> Unable to write inventory report " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+	private static double perSecond(int workers, double millis) {
+		return millis <= 0 ? -1 : workers * 1000.0 / millis;
+	}
+
+	private static String latency(double millis, String operation) {
+		return millis < 0 ? "" : String.format(Locale.ROOT, "(%s %.2f ms)", operation, millis);
+	}
+
+	private static int countSeparators(String secretName) {
+		int count = 0;
+		for (int i = 0; i < secretName.length(); i++) {
+			if (secretName.charAt(i) == '/') {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts and histograms of one secret engine, updated by the crawler and
+	 * metadata workers
+	 */
+	private static class EngineInventory {
+
+		private final String secretEngine;
+		private final Set<String> folders = ConcurrentHashMap.newKeySet();
+		private final Histogram depths;
+		private final Histogram versions = new Histogram(VERSION_BOUNDS, VERSION_LABELS);
+		private final Histogram sizes = new Histogram(SIZE_BOUNDS, SIZE_LABELS);
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder failedFolders = new LongAdder();
+		private final LongAdder metadataNanos = new LongAdder();
+		private volatile boolean complete;
+		private volatile long elapsedNanos;
+
+		private EngineInventory(String secretEngine, int maxDepth) {
+			this.secretEngine = secretEngine;
+			this.depths = Histogram.depths(maxDepth);
+		}
+	}
+
+	/**
+	 * Thread safe histogram, a value falls in the first bucket whose upper bound is
+	 * not below it or in the last, open ended, bucket
+	 */
+	private static class Histogram {
+
+		private final long[] bounds;
+		private final String[] labels;
+		private final LongAdder[] buckets;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		private Histogram(long[] bounds, String[] labels) {
+			this.bounds = bounds;
+			this.labels = labels;
+			this.buckets = new LongAdder[labels.length];
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		/**
+		 * One bucket per folder level 0 to maxDepth
+		 */
+		private static Histogram depths(int maxDepth) {
+			int levels = Math.max(0, maxDepth) + 1;
+			long[] bounds = new long[levels - 1];
+			String[] labels = new String[levels];
+			for (int level = 0; level < levels; level++) {
+				if (level < bounds.length) {
+					bounds[level] = level;
+				}
+				labels[level] = String.valueOf(level);
+			}
+			return new Histogram(bounds, labels);
+		}
+
+		private void record(long value) {
+			int bucket = 0;
+			while (bucket < bounds.length && value > bounds[bucket]) {
+				bucket++;
+			}
+			buckets[bucket].increment();
+			count.increment();
+			sum.add(value);
+			max.accumulate(value);
+		}
+
+		private void addAll(Histogram other) {
+			for (int i = 0; i < buckets.length && i < other.buckets.length; i++) {
+				buckets[i].add(other.buckets[i].sum());
+			}
+			count.add(other.count.sum());
+			sum.add(other.sum.sum());
+			max.accumulate(other.max.get());
+		}
+
+		private double mean() {
+			long total = count.sum();
+			return total == 0 ? 0 : (double) sum.sum() / total;
+		}
+
+		private String describe() {
+			long total = count.sum();
+			StringBuilder lines = new StringBuilder(256);
+			for (int i = 0; i < buckets.length; i++) {
+				long bucketCount = buckets[i].sum();
+				if (bucketCount == 0) {
+					continue;
+				}
+				lines.append(String.format(Locale.ROOT, "  %-10s %10d %5.1f%%%n", labels[i], bucketCount,
+						100.0 * bucketCount / total));
+			}
+			return lines.toString();
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.pat.secret.bo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.pat.secret.dao.HashicorpVaultDAO;
+import com.pat.secret.vo.Hashicorp;
+
+/**
+ * Crawls the KV v2 metadata tree of a secret engine. Sub folders are listed in
+ * parallel on a work-stealing pool and every leaf secret path is handed to the
+ * sink as soon as it is found.
+ *
+ * @author rajeshkumar
+ *
+ */
+public class VaultPathCrawler {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(VaultPathCrawler.class);
+
+	private final HashicorpVaultDAO hashicorpVaultDAO;
+	private final Hashicorp hashicorp;
+	private final int concurrency;
+	private final int maxDepth;
+
+	/**
+	 * @param hashicorpVaultDAO
+	 * @param hashicorp
+	 * @param concurrency - maximum number of folders listed at the same time
+	 * @param maxDepth - deepest folder level crawled, the engine root is level 0
+	 */
+	public VaultPathCrawler(HashicorpVaultDAO hashicorpVaultDAO, Hashicorp hashicorp, int concurrency, int maxDepth) {
+		this.hashicorpVaultDAO = hashicorpVaultDAO;
+		this.hashicorp = hashicorp;
+		this.concurrency = Math.max(1, concurrency);
+		this.maxDepth = Math.max(0, maxDepth);
+	}
+
+	/**
+	 * Crawl a secret engine. The sink is called from the crawler threads, it must
+	 * be thread safe.
+	 *
+	 * @param secretEngine
+	 * @param sink - receives leaf secret paths relative to the engine
+	 * @return long - number of leaf paths found
+	 */
+	public long crawl(String secretEngine, Consumer<String> sink) {
+		return crawl(secretEngine, sink, folder -> {
+		});
+	}
+
+	/**
+	 * Crawl a secret engine. The sinks are called from the crawler threads, they
+	 * must be thread safe.
+	 *
+	 * @param secretEngine
+	 * @param sink - receives leaf secret paths relative to the engine
+	 * @param failedFolderSink - receives the folders that could not be listed,
+	 *                         their secrets are not crawled
+	 * @return long - number of leaf paths found
+	 */
+	public long crawl(String secretEngine, Consumer<String> sink, Consumer<String> failedFolderSink) {
+		LOGGER.info("crawl Crawling secret engine " + secretEngine + " concurrency=" + concurrency + " maxDepth="
+				+ maxDepth);
+		final AtomicInteger threadCount = new AtomicInteger();
+		ForkJoinPool crawlPool = new ForkJoinPool(concurrency, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName(secretEngine + "-crawl-" + threadCount.incrementAndGet());
+			return thread;
+		}, null, false);
+		AtomicLong leafCount = new AtomicLong();
+		try {
+			crawlPool.invoke(new CrawlTask(secretEngine, "", 0, sink, failedFolderSink, leafCount));
+		} finally {
+			crawlPool.shutdown();
+		}
+		LOGGER.info("crawl Found " + leafCount.get() + " secrets in secret engine " + secretEngine);
+		return leafCount.get();
+	}
+
+	/**
+	 * Lists one folder and forks a task for every sub folder
+	 */
+	private class CrawlTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String secretEngine;
+		private final String path;
+		private final int depth;
+		private final Consumer<String> sink;
+		private final Consumer<String> failedFolderSink;
+		private final AtomicLong leafCount;
+
+		private CrawlTask(String secretEngine, String path, int depth, Consumer<String> sink,
+				Consumer<String> failedFolderSink, AtomicLong leafCount) {
+			this.secretEngine = secretEngine;
+			this.path = path;
+			this.depth = depth;
+			this.sink = sink;
+			this.failedFolderSink = failedFolderSink;
+			this.leafCount = leafCount;
+		}
+
+		@Override
+		protected void compute() {
+			List<String> entries = hashicorpVaultDAO.getSecretMetadata(hashicorp.getHost(), hashicorp.getPort(),
+					hashicorp.getScheme(), hashicorp.getToken(), secretEngine, hashicorp.getMetadata(), path);
+			if (entries == null) {
+				LOGGER.error("compute >>> Unable to list folder " + secretEngine + "/" + path
+						+ ", its secrets are not migrated");
+				failedFolderSink.accept(path);
+				return;
+			}
+			List<CrawlTask> subFolders = new ArrayList<CrawlTask>();
+			for (String entry : entries) {
+				String entryPath = path + entry;
+				if (!entry.endsWith("/")) {
+					leafCount.incrementAndGet();
+					sink.accept(entryPath);
+				} else if (depth < maxDepth) {
+					subFolders.add(new CrawlTask(secretEngine, entryPath, depth + 1, sink, failedFolderSink,
+							leafCount));
+				} else {
+					LOGGER.warn("compute Skipping " + secretEngine + "/" + entryPath + " deeper than maxDepth "
+							+ maxDepth);
+				}
+			}
+			if (!subFolders.isEmpty()) {
+				invokeAll(subFolders);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.pat.secret.dao;
+
+/**
+ * Raised without calling the remote endpoint while its circuit breaker is open
+ * @author rajeshkumar
+ *
+ */
+
+public class CircuitOpenException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long remainingMillis;
+
+	public CircuitOpenException(String endpoint, long remainingMillis) {
+		super("Circuit open for " + endpoint + ", retry in " + remainingMillis + " ms");
+		this.remainingMillis = remainingMillis;
+	}
+
+	public long getRemainingMillis() {
+		return remainingMillis;
+	}
+
+}
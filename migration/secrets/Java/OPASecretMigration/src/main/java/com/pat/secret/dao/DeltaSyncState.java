@@ -0,0 +1,142 @@
+package com.pat.secret.dao;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.Migration;
+import com.pat.secret.vo.SecretVersion;
+
+/**
+ * Persisted Hashicorp version of every secret synced into OPA. A delta run
+ * compares it with the KV v2 metadata to find new and changed secrets.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class DeltaSyncState {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(DeltaSyncState.class);
+
+	private static RegisterProperties regProps;
+
+	private final Map<String, SecretVersion> versions = new ConcurrentHashMap<String, SecretVersion>(1024);
+
+	private volatile boolean dirty;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		DeltaSyncState.regProps = regProps;
+	}
+
+	public DeltaSyncState() {
+
+	}
+
+	/**
+	 * Load the state file written by the previous run
+	 */
+	@PostConstruct
+	private void postConstruct() {
+		Path stateFile = getStateFile();
+		if (stateFile == null || !stateFile.toFile().isFile()) {
+			LOGGER.info("postConstruct No delta sync state to load");
+			return;
+		}
+		try {
+			List<SecretVersion> loaded = JsonCodec.SECRET_VERSIONS_READER.readValue(stateFile.toFile());
+			for (SecretVersion secretVersion : loaded) {
+				versions.put(key(secretVersion.getSecretEngine(), secretVersion.getPath()), secretVersion);
+			}
+			LOGGER.info("postConstruct Loaded delta sync state of " + versions.size() + " secrets from " + stateFile);
+		} catch (Exception e) {
+			LOGGER.error("postConstruct >>> Unable to load delta sync state " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @param secretEngine
+	 * @param path
+	 * @return SecretVersion - version synced by the previous run, null when never synced
+	 */
+	public SecretVersion get(String secretEngine, String path) {
+		return versions.get(key(secretEngine, path));
+	}
+
+	/**
+	 * Remember the version synced into OPA
+	 *
+	 * @param secretEngine
+	 * @param path
+	 * @param version
+	 * @param updatedTime
+	 * @param secretId
+	 */
+	public void update(String secretEngine, String path, int version, String updatedTime, String secretId) {
+		SecretVersion secretVersion = new SecretVersion();
+		secretVersion.setSecretEngine(secretEngine);
+		secretVersion.setPath(path);
+		secretVersion.setVersion(version);
+		secretVersion.setUpdatedTime(updatedTime);
+		secretVersion.setSecretId(secretId);
+		versions.put(key(secretEngine, path), secretVersion);
+		dirty = true;
+	}
+
+	/**
+	 * Write the state file. The file is replaced atomically so an interrupted
+	 * save never leaves a truncated state behind.
+	 */
+	@PreDestroy
+	public synchronized void save() {
+		Path stateFile = getStateFile();
+		if (stateFile == null || !dirty) {
+			return;
+		}
+		try {
+			File parent = stateFile.toAbsolutePath().getParent().toFile();
+			parent.mkdirs();
+			Path tempFile = File.createTempFile("delta-state", ".tmp", parent).toPath();
+			JsonCodec.SECRET_VERSIONS_WRITER.writeValue(tempFile.toFile(), new ArrayList<SecretVersion>(versions.values()));
+			Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			dirty = false;
+			LOGGER.info("save Saved delta sync state of " + versions.size() + " secrets to " + stateFile);
+		} catch (Exception e) {
+			LOGGER.error("save >>> Unable to save delta sync state " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+	private Path getStateFile() {
+		Migration migration = regProps.getMigration();
+		if (migration.getDeltaStateFile() == null || migration.getDeltaStateFile().trim().isEmpty()) {
+			return null;
+		}
+		// Every shard keeps the versions of the secrets it owns
+		return Paths.get(regProps.getShard().getShardFile(migration.getDeltaStateFile().trim()));
+	}
+
+	private static String key(String secretEngine, String path) {
+		return secretEngine + '\u0000' + path;
+	}
+
+}
@@ -1,5 +1,6 @@
 package com.pat.secret.dao;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -7,12 +8,14 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
-import org.springframework.vault.authentication.TokenAuthentication;
-import org.springframework.vault.client.VaultEndpoint;
 import org.springframework.vault.core.VaultTemplate;
 import org.springframework.vault.support.VaultResponse;
 
+import com.pat.secret.utility.MigrationMetrics;
+
 /**
  * This object connect with Hashicorp vault to retrieve vaulted data
  * @author rajeshkumar
@@ -25,6 +28,27 @@ public class HashicorpVaultDAO {
 	// Logger
 	private static final Logger LOGGER = LoggerFactory.getLogger(HashicorpVaultDAO.class);
 
+	private static VaultTemplateProvider vaultTemplateProvider;
+
+	private static ResilientExecutor resilientExecutor;
+
+	private static MigrationMetrics migrationMetrics;
+
+	@Autowired
+	private void setVaultTemplateProvider(VaultTemplateProvider vaultTemplateProvider) {
+		HashicorpVaultDAO.vaultTemplateProvider = vaultTemplateProvider;
+	}
+
+	@Autowired
+	private void setResilientExecutor(ResilientExecutor resilientExecutor) {
+		HashicorpVaultDAO.resilientExecutor = resilientExecutor;
+	}
+
+	@Autowired
+	private void setMigrationMetrics(MigrationMetrics migrationMetrics) {
+		HashicorpVaultDAO.migrationMetrics = migrationMetrics;
+	}
+
 	public HashicorpVaultDAO() {
 
 	}
@@ -36,23 +60,34 @@ public class HashicorpVaultDAO {
 	 */
 	public List<String> getSecretMetadata(String host, String port, String scheme, String authToken,
 			String secretEngine, String metadataEndpoint) {
-		LOGGER.info("getSecretMetadata Getting Hashicorp Vault Secret Engine Metadata");
-		List<String> listResponse = new ArrayList<String>(5);
-		try {
-			VaultEndpoint vaultEndpoint = new VaultEndpoint();
-			vaultEndpoint.setHost(host);
-			vaultEndpoint.setPort(Integer.parseInt(port));
-			vaultEndpoint.setScheme(scheme);
-
-			// Authenticate
-			VaultTemplate vaultTemplate = new VaultTemplate(vaultEndpoint, new TokenAuthentication(authToken));
-			listResponse = vaultTemplate.list(secretEngine + "/" + metadataEndpoint + "/");
+		return getSecretMetadata(host, port, scheme, authToken, secretEngine, metadataEndpoint, "");
+	}
 
+	/**
+	 * Get metadata entries below a path of the Secret Engine. Entries ending with
+	 * "/" are sub folders, other entries are secrets.
+	 * 
+	 * @param path - folder path relative to the engine, empty for the engine root
+	 * @return List - entries of the folder, null when the folder could not be listed
+	 */
+	public List<String> getSecretMetadata(String host, String port, String scheme, String authToken,
+			String secretEngine, String metadataEndpoint, String path) {
+		LOGGER.info("getSecretMetadata Getting Hashicorp Vault Secret Engine Metadata " + secretEngine + "/" + path);
+		List<String> listResponse = null;
+		try {
+			// Shared template for the cluster
+			VaultTemplate vaultTemplate = vaultTemplateProvider.getVaultTemplate(host, port, scheme, authToken);
+			listResponse = resilientExecutor.call("vault " + host + ":" + port + " list", true,
+					() -> migrationMetrics.record(MigrationMetrics.SYSTEM_VAULT, "list",
+							() -> vaultTemplate.list(secretEngine + "/" + metadataEndpoint + "/" + path)));
+			if (listResponse == null) {
+				listResponse = new ArrayList<String>(0);
+			}
 		} catch (Exception e) {
 			LOGGER.error("getSecretMetadata >>> "+e.getMessage());
 			//e.printStackTrace();
 		}
-		LOGGER.info("getSecretMetadata Available secrets Path ---> " + listResponse);
+		LOGGER.debug("getSecretMetadata Available secrets Path ---> " + listResponse);
 		return listResponse;
 
 	}
@@ -67,14 +102,12 @@ public class HashicorpVaultDAO {
 		LOGGER.info("getSecrets Getting Hashicorp Vault Secret");
 		Map<String,Object> hashiVaultSecrets = new HashMap<String, Object>(1);
 		try {
-			VaultEndpoint vaultEndpoint = new VaultEndpoint();
-			vaultEndpoint.setHost(host);
-			vaultEndpoint.setPort(Integer.parseInt(port));
-			vaultEndpoint.setScheme(scheme);
-			// Authenticate
-			VaultTemplate vaultTemplate = new VaultTemplate(vaultEndpoint, new TokenAuthentication(authToken));
+			// Shared template for the cluster
+			VaultTemplate vaultTemplate = vaultTemplateProvider.getVaultTemplate(host, port, scheme, authToken);
 			// Reading a secret
-			VaultResponse readResponse = vaultTemplate.read(secretEngine + "/data/" + path);
+			VaultResponse readResponse = resilientExecutor.call("vault " + host + ":" + port + " read", true,
+					() -> migrationMetrics.record(MigrationMetrics.SYSTEM_VAULT, "read",
+							() -> vaultTemplate.read(secretEngine + "/data/" + path)));
 			hashiVaultSecrets = readResponse.getData();
 		} catch (Exception e) {
 			LOGGER.error("getSecrets >>> "+e.getMessage());
@@ -83,4 +116,62 @@ public class HashicorpVaultDAO {
 		return hashiVaultSecrets;
 	}
 
+	/**
+	 * Get the KV v2 metadata of a secret (current_version, updated_time, ...)
+	 * without reading the secret value
+	 * 
+	 * @return
+	 */
+	public Map<String,Object> getSecretVersionMetadata(String host, String port, String scheme, String authToken,
+			String secretEngine, String metadataEndpoint, String path) {
+		LOGGER.debug("getSecretVersionMetadata Getting Hashicorp Vault Secret metadata " + path);
+		Map<String,Object> secretMetadata = new HashMap<String, Object>(1);
+		try {
+			// Shared template for the cluster
+			VaultTemplate vaultTemplate = vaultTemplateProvider.getVaultTemplate(host, port, scheme, authToken);
+			VaultResponse readResponse = resilientExecutor.call("vault " + host + ":" + port + " metadata", true,
+					() -> migrationMetrics.record(MigrationMetrics.SYSTEM_VAULT, "metadata",
+							() -> vaultTemplate.read(secretEngine + "/" + metadataEndpoint + "/" + path)));
+			secretMetadata = readResponse.getData();
+		} catch (Exception e) {
+			LOGGER.error("getSecretVersionMetadata >>> "+e.getMessage());
+			//e.printStackTrace();
+		}
+		return secretMetadata;
+	}
+
+	/**
+	 * Size of the KV v2 read response of a secret. The body is counted while it
+	 * streams in and discarded, the secret value is never parsed or kept.
+	 * 
+	 * @return long - response size in bytes, -1 when the secret could not be read
+	 */
+	public long getSecretSize(String host, String port, String scheme, String authToken, String secretEngine,
+			String path) {
+		LOGGER.debug("getSecretSize Sizing Hashicorp Vault Secret " + path);
+		long size = -1;
+		try {
+			// Shared template for the cluster
+			VaultTemplate vaultTemplate = vaultTemplateProvider.getVaultTemplate(host, port, scheme, authToken);
+			Long responseSize = resilientExecutor.call("vault " + host + ":" + port + " size", true,
+					() -> migrationMetrics.record(MigrationMetrics.SYSTEM_VAULT, "size",
+							() -> vaultTemplate.doWithSession(restOperations -> restOperations
+									.execute(secretEngine + "/data/" + path, HttpMethod.GET, null, response -> {
+										long count = 0;
+										byte[] buffer = new byte[8192];
+										try (InputStream body = response.getBody()) {
+											for (int read; (read = body.read(buffer)) != -1;) {
+												count += read;
+											}
+										}
+										return count;
+									}))));
+			size = responseSize == null ? -1 : responseSize;
+		} catch (Exception e) {
+			LOGGER.error("getSecretSize >>> "+e.getMessage());
+			//e.printStackTrace();
+		}
+		return size;
+	}
+
 }
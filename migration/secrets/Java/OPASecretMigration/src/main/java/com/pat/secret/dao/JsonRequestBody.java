@@ -0,0 +1,64 @@
+package com.pat.secret.dao;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pat.secret.utility.Constants;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * JSON request body serialized by a shared writer into one byte array, on
+ * first use, and written from it to the HTTP sink: a single copy into the
+ * pooled segments of the connection. Every attempt of a retried or replayed
+ * request writes the same bytes. The length is known, so the body is not sent
+ * chunked: the separate write of the last chunk stalls on delayed ACKs.
+ *
+ * @author rajeshkumar
+ *
+ */
+public class JsonRequestBody extends RequestBody {
+
+	private static final MediaType JSON_MEDIA_TYPE = MediaType.parse(Constants.JASON_CONTENT_TYPE);
+
+	private final ObjectWriter writer;
+
+	private final Object value;
+
+	// Calls of one request are sequential, no lock needed
+	private byte[] serialized;
+
+	/**
+	 * @param writer - shared writer for the type of the value
+	 * @param value
+	 */
+	public JsonRequestBody(ObjectWriter writer, Object value) {
+		this.writer = writer;
+		this.value = value;
+	}
+
+	@Override
+	public MediaType contentType() {
+		return JSON_MEDIA_TYPE;
+	}
+
+	@Override
+	public long contentLength() throws IOException {
+		return serialized().length;
+	}
+
+	@Override
+	public void writeTo(BufferedSink sink) throws IOException {
+		sink.write(serialized());
+	}
+
+	private byte[] serialized() throws IOException {
+		if (serialized == null) {
+			serialized = writer.writeValueAsBytes(value);
+		}
+		return serialized;
+	}
+
+}
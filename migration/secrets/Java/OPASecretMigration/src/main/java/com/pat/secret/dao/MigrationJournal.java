@@ -0,0 +1,344 @@
+package com.pat.secret.dao;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.Migration;
+import com.pat.secret.vo.Shard;
+
+/**
+ * Append only checkpoint journal of migrated folders and secrets. Every line
+ * holds engine, path and OPA object id. The journal is loaded into an in-memory
+ * index at startup so an interrupted run skips work already done. Writes are
+ * flushed to disk in batches.
+ *
+ * A sharded run writes one journal per shard and also loads the journals of
+ * the other shards, so a secret moved to another shard by a change of the
+ * shard count is not migrated twice.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class MigrationJournal {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(MigrationJournal.class);
+
+	// Path recorded for the folder created for a secret engine
+	private static final String FOLDER_PATH = "";
+
+	private static RegisterProperties regProps;
+
+	private final Map<String, String> index = new ConcurrentHashMap<String, String>(1024);
+
+	// A lock, not a monitor: a virtual thread waiting in force() must not pin its carrier
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	private FileChannel channel;
+
+	private ScheduledExecutorService syncScheduler;
+
+	private int pendingWrites;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		MigrationJournal.regProps = regProps;
+	}
+
+	public MigrationJournal() {
+
+	}
+
+	/**
+	 * Load the existing journal into the index and open it for appending
+	 */
+	@PostConstruct
+	private void postConstruct() {
+		Migration migration = regProps.getMigration();
+		if (migration.getJournalFile() == null || migration.getJournalFile().trim().isEmpty()) {
+			LOGGER.info("postConstruct Migration journal disabled");
+			return;
+		}
+		Shard shard = regProps.getShard();
+		try {
+			Path journalPath = Paths.get(shard.getShardFile(migration.getJournalFile().trim()));
+			if (shard.isSharded()) {
+				loadPeerJournals(Paths.get(migration.getJournalFile().trim()), journalPath);
+			}
+			open(journalPath);
+		} catch (Exception e) {
+			LOGGER.error("postConstruct >>> Unable to open migration journal " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Open a journal file, replaying its complete lines into the index
+	 *
+	 * @param journalPath
+	 * @throws IOException
+	 */
+	public void open(Path journalPath) throws IOException {
+		if (journalPath.getParent() != null) {
+			journalPath.getParent().toFile().mkdirs();
+		}
+		FileChannel journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long validLength = load(journalChannel);
+		// Drop a line torn by a crash so new records start on a clean line
+		if (validLength < journalChannel.size()) {
+			LOGGER.warn("open Truncating incomplete journal record at offset " + validLength);
+			journalChannel.truncate(validLength);
+		}
+		journalChannel.position(validLength);
+		writeLock.lock();
+		try {
+			channel = journalChannel;
+		} finally {
+			writeLock.unlock();
+		}
+		long syncIntervalMillis = Math.max(1, regProps.getMigration().getJournalSyncIntervalMillis());
+		syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "migration-journal-sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		syncScheduler.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis,
+				TimeUnit.MILLISECONDS);
+		LOGGER.info("open Migration journal " + journalPath + " loaded with " + index.size() + " records");
+	}
+
+	/**
+	 * Load, read only, the unsharded journal and the journals of every other
+	 * shard next to it
+	 *
+	 * @param journalPath - unsharded journal
+	 * @param ownPath - journal of this shard
+	 * @throws IOException
+	 */
+	private void loadPeerJournals(Path journalPath, Path ownPath) throws IOException {
+		Path directory = journalPath.toAbsolutePath().getParent();
+		if (directory == null || !directory.toFile().isDirectory()) {
+			return;
+		}
+		// Every index matches the name of journal.shard-*, whatever the shard count of the run writing it
+		String fileName = journalPath.getFileName().toString();
+		String shardPattern = Shard.getShardFile(fileName, 0).replace(".shard-0", ".shard-*");
+		try (DirectoryStream<Path> peers = Files.newDirectoryStream(directory, "{" + fileName + "," + shardPattern + "}")) {
+			for (Path peer : peers) {
+				if (peer.toAbsolutePath().equals(ownPath.toAbsolutePath()) || !peer.toFile().isFile()) {
+					continue;
+				}
+				int loaded = index.size();
+				try (FileChannel peerChannel = FileChannel.open(peer, StandardOpenOption.READ)) {
+					load(peerChannel);
+				}
+				LOGGER.info("loadPeerJournals Loaded " + (index.size() - loaded) + " records of " + peer);
+			}
+		}
+	}
+
+	/**
+	 * Read all complete lines of the journal into the index
+	 *
+	 * @param journalChannel
+	 * @return long - length of the journal up to the last complete line
+	 * @throws IOException
+	 */
+	private long load(FileChannel journalChannel) throws IOException {
+		long validLength = 0;
+		long offset = 0;
+		journalChannel.position(0);
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(Channels.newInputStream(journalChannel), StandardCharsets.UTF_8));
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = reader.read()) != -1) {
+			if (c != '\n') {
+				line.append((char) c);
+				continue;
+			}
+			offset += line.toString().getBytes(StandardCharsets.UTF_8).length + 1;
+			String[] fields = line.toString().split("\t", -1);
+			if (fields.length == 3) {
+				index.put(key(unescape(fields[0]), unescape(fields[1])), unescape(fields[2]));
+			} else {
+				LOGGER.warn("load Ignoring malformed journal record at offset " + validLength);
+			}
+			validLength = offset;
+			line.setLength(0);
+		}
+		return validLength;
+	}
+
+	/**
+	 * @param secretEngine
+	 * @param path
+	 * @return true when the secret was migrated by an earlier run
+	 */
+	public boolean isMigrated(String secretEngine, String path) {
+		return index.containsKey(key(secretEngine, path));
+	}
+
+	/**
+	 * @param secretEngine
+	 * @param path
+	 * @return String - OPA secret id recorded for the path, null when not migrated
+	 */
+	public String getSecretId(String secretEngine, String path) {
+		return index.get(key(secretEngine, path));
+	}
+
+	/**
+	 * @param secretEngine
+	 * @return String - OPA folder id recorded for the secret engine, null when not created
+	 */
+	public String getFolderId(String secretEngine) {
+		return index.get(key(secretEngine, FOLDER_PATH));
+	}
+
+	/**
+	 * Record the folder created for a secret engine
+	 *
+	 * @param secretEngine
+	 * @param folderId
+	 */
+	public void recordFolder(String secretEngine, String folderId) {
+		record(secretEngine, FOLDER_PATH, folderId);
+	}
+
+	/**
+	 * Append a migrated secret to the journal
+	 *
+	 * @param secretEngine
+	 * @param path
+	 * @param secretId
+	 */
+	public void record(String secretEngine, String path, String secretId) {
+		String objectId = secretId == null ? "" : secretId;
+		writeLock.lock();
+		try {
+			// Nothing is checkpointed while the journal is disabled
+			if (channel == null) {
+				return;
+			}
+			index.put(key(secretEngine, path), objectId);
+			String line = escape(secretEngine) + "\t" + escape(path) + "\t" + escape(objectId) + "\n";
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				pendingWrites++;
+				if (pendingWrites >= regProps.getMigration().getJournalSyncBatch()) {
+					force();
+				}
+			} catch (IOException e) {
+				LOGGER.error("record >>> " + e.getMessage());
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Flush pending records to disk
+	 */
+	public void sync() {
+		writeLock.lock();
+		try {
+			if (channel == null || pendingWrites == 0) {
+				return;
+			}
+			try {
+				force();
+			} catch (IOException e) {
+				LOGGER.error("sync >>> " + e.getMessage());
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Must be called while holding writeLock
+	 */
+	private void force() throws IOException {
+		channel.force(false);
+		pendingWrites = 0;
+	}
+
+	/**
+	 * Flush and close the journal
+	 */
+	@PreDestroy
+	public void close() {
+		if (syncScheduler != null) {
+			syncScheduler.shutdownNow();
+		}
+		writeLock.lock();
+		try {
+			if (channel == null) {
+				return;
+			}
+			try {
+				force();
+				channel.close();
+			} catch (IOException e) {
+				LOGGER.error("close >>> " + e.getMessage());
+			}
+			channel = null;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private static String key(String secretEngine, String path) {
+		return secretEngine + '\u0000' + path;
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+	}
+
+	private static String unescape(String value) {
+		StringBuilder unescaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				char next = value.charAt(++i);
+				unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+			} else {
+				unescaped.append(c);
+			}
+		}
+		return unescaped.toString();
+	}
+
+}
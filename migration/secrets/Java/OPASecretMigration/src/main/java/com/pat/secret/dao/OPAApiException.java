@@ -0,0 +1,38 @@
+package com.pat.secret.dao;
+
+/**
+ * Raised when an OPA API call returns an unsuccessful HTTP status
+ * @author rajeshkumar
+ *
+ */
+
+public class OPAApiException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int statusCode;
+
+	private final String responseBody;
+
+	public OPAApiException(String operation, int statusCode, String responseBody) {
+		super(operation + " failed with HTTP status " + statusCode);
+		this.statusCode = statusCode;
+		this.responseBody = responseBody;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public String getResponseBody() {
+		return responseBody;
+	}
+
+	/**
+	 * @return true when OPA rejected the bearer token
+	 */
+	public boolean isUnauthorized() {
+		return statusCode == 401;
+	}
+
+}
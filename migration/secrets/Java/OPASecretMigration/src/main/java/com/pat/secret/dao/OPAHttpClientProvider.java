@@ -0,0 +1,97 @@
+package com.pat.secret.dao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.Oktapam;
+
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Keeps one long lived OkHttpClient per target host so connections and TLS
+ * sessions are reused across API calls. Calls are synchronous, the OkHttp
+ * dispatcher limits only apply to enqueue(): requests in flight are bounded by
+ * the create workers, register.migration.opaConcurrency and the OPA rate limiter.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class OPAHttpClientProvider {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(OPAHttpClientProvider.class);
+
+	private static RegisterProperties regProps;
+
+	private final Map<String, OkHttpClient> clients = new ConcurrentHashMap<String, OkHttpClient>(2);
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		OPAHttpClientProvider.regProps = regProps;
+	}
+
+	public OPAHttpClientProvider() {
+
+	}
+
+	/**
+	 * Get the shared client for the host of the given URL
+	 *
+	 * @param apiEndpointURL
+	 * @return OkHttpClient - client shared by all calls to the same host
+	 */
+	public OkHttpClient getClient(String apiEndpointURL) {
+		HttpUrl url = HttpUrl.get(apiEndpointURL);
+		String hostKey = url.scheme() + "://" + url.host() + ":" + url.port();
+		return clients.computeIfAbsent(hostKey, this::newClient);
+	}
+
+	/**
+	 * Build a client with its own connection pool for a host
+	 *
+	 * @param hostKey
+	 * @return OkHttpClient
+	 */
+	private OkHttpClient newClient(String hostKey) {
+		Oktapam oktapam = regProps.getOktapam();
+		LOGGER.info("newClient Creating HTTP client for " + hostKey + " poolSize=" + oktapam.getConnectionPoolSize()
+				+ " keepAliveSeconds=" + oktapam.getKeepAliveSeconds() + " http2=" + oktapam.isHttp2Enabled());
+		return new OkHttpClient.Builder()
+				.connectionPool(new ConnectionPool(Math.max(1, oktapam.getConnectionPoolSize()),
+						oktapam.getKeepAliveSeconds(), TimeUnit.SECONDS))
+				.protocols(oktapam.isHttp2Enabled() ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+						: Collections.singletonList(Protocol.HTTP_1_1))
+				.connectTimeout(oktapam.getConnectTimeoutSeconds(), TimeUnit.SECONDS)
+				.readTimeout(oktapam.getReadTimeoutSeconds(), TimeUnit.SECONDS)
+				.writeTimeout(oktapam.getWriteTimeoutSeconds(), TimeUnit.SECONDS)
+				.build();
+	}
+
+	/**
+	 * Release pooled connections
+	 */
+	@PreDestroy
+	public void close() {
+		for (Map.Entry<String, OkHttpClient> entry : clients.entrySet()) {
+			LOGGER.debug("close Closing HTTP client for " + entry.getKey());
+			entry.getValue().connectionPool().evictAll();
+		}
+		clients.clear();
+	}
+
+}
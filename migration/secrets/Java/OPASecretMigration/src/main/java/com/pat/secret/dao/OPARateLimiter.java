@@ -0,0 +1,174 @@
+package com.pat.secret.dao;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.Oktapam;
+
+/**
+ * Token bucket shared by every call to OPA. The rate adapts AIMD style: it
+ * grows additively while calls succeed and is cut multiplicatively when OPA
+ * answers 429. A Retry-After pauses all callers until the given time.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class OPARateLimiter {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(OPARateLimiter.class);
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private static RegisterProperties regProps;
+
+	private double minRate;
+	private double maxRate;
+	private double increasePerSecond;
+	private double decreaseFactor;
+
+	// Guarded by this
+	private double rate;
+	private double tokens;
+	private long lastRefillNanos;
+	private long pausedUntilNanos;
+	private long lastDecreaseNanos;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		OPARateLimiter.regProps = regProps;
+	}
+
+	public OPARateLimiter() {
+
+	}
+
+	@PostConstruct
+	private void postConstruct() {
+		Oktapam oktapam = regProps.getOktapam();
+		// The processes of a sharded run share the OPA rate limit evenly
+		double shards = Math.max(1, regProps.getShard().getCount());
+		minRate = Math.max(0.1, oktapam.getRateLimitMinPerSecond() / shards);
+		maxRate = Math.max(minRate, oktapam.getRateLimitMaxPerSecond() / shards);
+		increasePerSecond = Math.max(0, oktapam.getRateLimitIncreasePerSecond() / shards);
+		decreaseFactor = Math.min(1, Math.max(0.1, oktapam.getRateLimitDecreaseFactor()));
+		synchronized (this) {
+			rate = Math.min(maxRate, Math.max(minRate, oktapam.getRateLimitPerSecond() / shards));
+			tokens = 1;
+			lastRefillNanos = System.nanoTime();
+		}
+		LOGGER.info("postConstruct OPA rate limit " + rate + "/s, min " + minRate + "/s, max " + maxRate + "/s");
+	}
+
+	/**
+	 * Take one permit, blocking until the bucket or a Retry-After pause allows
+	 * the call
+	 *
+	 * @throws InterruptedException
+	 */
+	public void acquire() throws InterruptedException {
+		long waitNanos = reserve();
+		if (waitNanos > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	/**
+	 * Take one permit without blocking. The caller must wait the returned delay
+	 * before sending its call, a non-blocking caller schedules it on a timer.
+	 *
+	 * @return long - nanoseconds to wait before the call, 0 or less to call now
+	 */
+	public synchronized long reserve() {
+		long now = System.nanoTime();
+		refill(now);
+		// Reserve the permit, a negative balance is the queue of waiting callers
+		tokens -= 1;
+		long waitNanos = tokens < 0 ? (long) (-tokens / rate * NANOS_PER_SECOND) : 0;
+		return Math.max(waitNanos, pausedUntilNanos - now);
+	}
+
+	/**
+	 * Speed up after a successful call, about increasePerSecond per second of
+	 * calls without throttling
+	 */
+	public synchronized void onSuccess() {
+		if (rate < maxRate) {
+			rate = Math.min(maxRate, rate + increasePerSecond / rate);
+		}
+	}
+
+	/**
+	 * Slow down after OPA answered 429
+	 *
+	 * @param retryAfter - value of the Retry-After header, may be null
+	 * @return long - milliseconds the caller should wait before replaying the call
+	 */
+	public synchronized long onThrottled(String retryAfter) {
+		long now = System.nanoTime();
+		refill(now);
+		// Calls already in flight when the rate was cut report the same 429, cut once per window
+		if (now - lastDecreaseNanos > (long) (NANOS_PER_SECOND / rate)) {
+			rate = Math.max(minRate, rate * decreaseFactor);
+			lastDecreaseNanos = now;
+			LOGGER.warn("onThrottled OPA throttled the migration, rate lowered to " + rate + "/s");
+		}
+		tokens = Math.min(tokens, 0);
+		long retryAfterMillis = parseRetryAfter(retryAfter);
+		if (retryAfterMillis > 0) {
+			pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+		}
+		return Math.max(retryAfterMillis, (long) (1000 / rate));
+	}
+
+	/**
+	 * @return double - current permits per second
+	 */
+	public synchronized double getRate() {
+		return rate;
+	}
+
+	/**
+	 * Must be called while holding the monitor
+	 */
+	private void refill(long now) {
+		double burst = Math.max(1, rate);
+		tokens = Math.min(burst, tokens + (now - lastRefillNanos) * rate / NANOS_PER_SECOND);
+		lastRefillNanos = now;
+	}
+
+	/**
+	 * Parse Retry-After given either in seconds or as an HTTP date
+	 *
+	 * @param retryAfter
+	 * @return long - milliseconds to wait, 0 when absent or unreadable
+	 */
+	private long parseRetryAfter(String retryAfter) {
+		if (retryAfter == null || retryAfter.trim().isEmpty()) {
+			return 0;
+		}
+		try {
+			return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+		} catch (NumberFormatException e) {
+			try {
+				ZonedDateTime retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+				return Math.max(0, Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt).toMillis());
+			} catch (Exception ex) {
+				LOGGER.warn("parseRetryAfter Ignoring unreadable Retry-After " + retryAfter);
+				return 0;
+			}
+		}
+	}
+
+}
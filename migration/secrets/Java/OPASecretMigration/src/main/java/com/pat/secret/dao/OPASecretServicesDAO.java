@@ -1,14 +1,22 @@
 package com.pat.secret.dao;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.pat.secret.utility.Constants;
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.MigrationMetrics;
+import com.pat.secret.utility.RegisterProperties;
 import com.pat.secret.vo.JWKSPublicKey;
 import com.pat.secret.vo.OPAAuthTokenDetails;
+import com.pat.secret.vo.OPAVaultListResponse;
+import com.pat.secret.vo.OPAVaultRequest;
 import com.pat.secret.vo.OPAVaultResponse;
 
 import okhttp3.MediaType;
@@ -16,6 +24,8 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
 
 /**
  * This object connects with Okta vault to create secrets retrieved from Hashicorp vault
@@ -29,13 +39,53 @@ public class OPASecretServicesDAO {
 	// Logger
 	private static final Logger LOGGER = LoggerFactory.getLogger(OPASecretServicesDAO.class);
 
+	// OPA answers 429 when the tenant rate limit is exceeded
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+	private static final String OPERATION_GET_AUTH_TOKEN = "getAuthToken";
+
+	private static OPAHttpClientProvider opaHttpClientProvider;
+
+	private static ResilientExecutor resilientExecutor;
+
+	private static OPARateLimiter opaRateLimiter;
+
+	private static MigrationMetrics migrationMetrics;
+
+	private static RegisterProperties regProps;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		OPASecretServicesDAO.regProps = regProps;
+	}
+
+	@Autowired
+	private void setResilientExecutor(ResilientExecutor resilientExecutor) {
+		OPASecretServicesDAO.resilientExecutor = resilientExecutor;
+	}
+
+	@Autowired
+	private void setOPARateLimiter(OPARateLimiter opaRateLimiter) {
+		OPASecretServicesDAO.opaRateLimiter = opaRateLimiter;
+	}
+
+	@Autowired
+	private void setMigrationMetrics(MigrationMetrics migrationMetrics) {
+		OPASecretServicesDAO.migrationMetrics = migrationMetrics;
+	}
+
+	@Autowired
+	private void setOPAHttpClientProvider(OPAHttpClientProvider opaHttpClientProvider) {
+		OPASecretServicesDAO.opaHttpClientProvider = opaHttpClientProvider;
+	}
+
 	public OPASecretServicesDAO() {
 
 	}
 
 	/**
 	 * Fetch Auth Token
-	 * 
+	 *
 	 * @param apiEndpointURL
 	 * @param requestBody
 	 * @return Authorization Token for API Use
@@ -43,77 +93,124 @@ public class OPASecretServicesDAO {
 	public String getUserAuthToken(String apiEndpointURL, String requestBody) {
 		LOGGER.info("getUserAuthToken Start Auth token retrieval process from Okta");
 		String bearerToken = "";
+		OPAAuthTokenDetails opaAuthTokenDetails = getAuthTokenDetails(apiEndpointURL, requestBody);
+		if (opaAuthTokenDetails != null) {
+			bearerToken = opaAuthTokenDetails.getBearer_token();
+		}
+		LOGGER.debug("getUserAuthToken bearerToken ===> " + bearerToken);
+		return bearerToken;
+	}
+
+	/**
+	 * Fetch Auth Token with its expiry details
+	 *
+	 * @param apiEndpointURL
+	 * @param requestBody
+	 * @return OPAAuthTokenDetails - token details, null when the token could not be retrieved
+	 */
+	public OPAAuthTokenDetails getAuthTokenDetails(String apiEndpointURL, String requestBody) {
+		LOGGER.info("getAuthTokenDetails Start Auth token retrieval process from Okta");
 		OPAAuthTokenDetails opaAuthTokenDetails = null;
 		try {
-			String responseBody = getAuthToken(apiEndpointURL, requestBody);
-			LOGGER.debug("getUserAuthToken responseBody =====> " + responseBody);
-			ObjectMapper mapper = new ObjectMapper();
-			opaAuthTokenDetails = mapper.readValue(responseBody, OPAAuthTokenDetails.class);			
-			bearerToken = opaAuthTokenDetails.getBearer_token();
+			opaAuthTokenDetails = getAuthToken(apiEndpointURL, requestBody);
+			LOGGER.debug("getAuthTokenDetails expires_at ===> " + opaAuthTokenDetails.getExpires_at());
 		} catch (Exception e) {
-			LOGGER.error("getUserAuthToken >>> "+ e.getMessage());
+			LOGGER.error("getAuthTokenDetails >>> "+ e.getMessage());
 			//e.printStackTrace();
 		}
-		LOGGER.debug("getUserAuthToken bearerToken ===> " + bearerToken);
-		return bearerToken;
+		return opaAuthTokenDetails;
 	}
 
 	/**
 	 * Get JWKS Public Key
-	 * 
+	 *
 	 * @param apiEndpointURL
 	 * @param requestBody
 	 * @return JWKS Public Key
 	 */
 	public String getVaultPublicKey(String apiEndpointURL, String authToken) {
 		LOGGER.info("getVaultPublicKey Get Vault Public Key from Okta");
-		OPAAuthTokenDetails opaAuthTokenDetails = null;
 		JWKSPublicKey jwksPublicKey = null;
 		String jwksPublicKeyJson = "";
-		List<JWKSPublicKey> publicKeys = new ArrayList<JWKSPublicKey>(2);
 		try {
-			// Response from OktaPA after JWKS API endpoint call
-			String responseBody = getVaultJWKS(apiEndpointURL, authToken);
-			LOGGER.debug("getVaultPublicKey responseBody ===========> " + responseBody);
-			// Mapping Response to POJO
-			ObjectMapper mapper = new ObjectMapper();
-			opaAuthTokenDetails = mapper.readValue(responseBody, OPAAuthTokenDetails.class);
-			// Retreiving List from Object
-			publicKeys = opaAuthTokenDetails.getVaultPublicKey();
-			// Getting first key from the list. There is only one Key but response is always
-			// in List format
+			List<JWKSPublicKey> publicKeys = getVaultPublicKeys(apiEndpointURL, authToken);
+			// Getting first key from the list, the JWKS set is ordered with the active key first
 			jwksPublicKey = publicKeys.get(0);
 			LOGGER.debug("getVaultPublicKey jwksPublicKey kid ======> " + jwksPublicKey.getKid());
 			// Converting JWKSPublicKey in Stringified Json format
-			ObjectMapper Obj = new ObjectMapper();
-			jwksPublicKeyJson = Obj.writeValueAsString(jwksPublicKey);
+			jwksPublicKeyJson = JsonCodec.JWKS_PUBLIC_KEY_WRITER.writeValueAsString(jwksPublicKey);
 			LOGGER.debug("getVaultPublicKey jwksPublicKeyJson ========> " + jwksPublicKeyJson);
+		} catch (OPAApiException e) {
+			throw e;
 		} catch (Exception e) {
 			LOGGER.error("getVaultPublicKey >>> "+ e.getMessage());
 			// e.printStackTrace();
 		}
-		// If Size of Keys are coming more than Alarm!
-		LOGGER.debug("getVaultPublicKey jwksPublicKey size ===> " + opaAuthTokenDetails.getVaultPublicKey().size());
 		return jwksPublicKeyJson;
 	}
 
+	/**
+	 * Get every public key of the OPA vault JWKS set
+	 *
+	 * @param apiEndpointURL
+	 * @param authToken
+	 * @return List of JWKS Public Keys, empty when the keys could not be retrieved
+	 */
+	public List<JWKSPublicKey> getVaultPublicKeys(String apiEndpointURL, String authToken) {
+		LOGGER.info("getVaultPublicKeys Get Vault Public Keys from Okta");
+		OPAAuthTokenDetails opaAuthTokenDetails = null;
+		List<JWKSPublicKey> publicKeys = new ArrayList<JWKSPublicKey>(2);
+		try {
+			// Response from OktaPA after JWKS API endpoint call, mapped to POJO
+			opaAuthTokenDetails = getVaultJWKS(apiEndpointURL, authToken);
+			// Retreiving List from Object
+			if (opaAuthTokenDetails.getVaultPublicKey() != null) {
+				publicKeys = opaAuthTokenDetails.getVaultPublicKey();
+			}
+			LOGGER.debug("getVaultPublicKeys jwksPublicKey size ===> " + publicKeys.size());
+		} catch (OPAApiException e) {
+			LOGGER.error("getVaultPublicKeys >>> "+ e.getMessage());
+			throw e;
+		} catch (Exception e) {
+			LOGGER.error("getVaultPublicKeys >>> "+ e.getMessage());
+			// e.printStackTrace();
+		}
+		return publicKeys;
+	}
+
 	/**
 	 * Create secret in Okta Vault
-	 * 
+	 *
 	 * @param opaPASecretVault
 	 * @param apiEndpoint
 	 * @param authToken
 	 * @return Response from Okta Vault after Secret Creation
+	 * @throws OPAApiException when OPA answers with an unsuccessful status
 	 */
-	public OPAVaultResponse createOPASecret(String opaPASecretVault, String apiEndpoint, String authToken) {
+	public OPAVaultResponse createOPASecret(OPAVaultRequest opaPASecretVault, String apiEndpoint, String authToken) {
+		return createOPASecret(new JsonRequestBody(JsonCodec.OPA_VAULT_REQUEST_WRITER, opaPASecretVault), apiEndpoint,
+				authToken);
+	}
+
+	/**
+	 * Create secret in Okta Vault from an OPAVaultRequest already serialized,
+	 * e.g. read from the staging file
+	 *
+	 * @param body - OPAVaultRequest JSON
+	 * @param apiEndpoint
+	 * @param authToken
+	 * @return Response from Okta Vault after Secret Creation
+	 * @throws OPAApiException when OPA answers with an unsuccessful status
+	 */
+	public OPAVaultResponse createOPASecret(RequestBody body, String apiEndpoint, String authToken) {
 		LOGGER.info("createOPASecret Start Create Secret process");
 		OPAVaultResponse opaVaultResponse = null;
 		try {
-			String responseBody = createSecret(opaPASecretVault, apiEndpoint, authToken);
-			LOGGER.debug("createOPASecret responseBody =============> " + responseBody);
-			ObjectMapper mapper = new ObjectMapper();
-			opaVaultResponse = mapper.readValue(responseBody, OPAVaultResponse.class);
+			opaVaultResponse = createSecret(body, apiEndpoint, authToken);
 			LOGGER.debug("createOPASecret opaSecretVaultResponse ======== " + opaVaultResponse.toString());
+		} catch (OPAApiException e) {
+			LOGGER.error("createOPASecret >>> "+ e.getMessage());
+			throw e;
 		} catch (Exception e) {
 			LOGGER.error("createOPASecret >>> "+ e.getMessage());
 			// e.printStackTrace();
@@ -121,25 +218,70 @@ public class OPASecretServicesDAO {
 		return opaVaultResponse;
 
 	}
-	
-	
+
+
+	/**
+	 * Update an existing secret in Okta Vault
+	 *
+	 * @param opaPASecretVault
+	 * @param apiEndpoint - endpoint of the secret to update
+	 * @param authToken
+	 * @return Response from Okta Vault after Secret Update
+	 * @throws OPAApiException when OPA answers with an unsuccessful status
+	 */
+	public OPAVaultResponse updateOPASecret(OPAVaultRequest opaPASecretVault, String apiEndpoint, String authToken) {
+		return updateOPASecret(new JsonRequestBody(JsonCodec.OPA_VAULT_REQUEST_WRITER, opaPASecretVault), apiEndpoint,
+				authToken);
+	}
+
+	/**
+	 * Update an existing secret in Okta Vault from an OPAVaultRequest already
+	 * serialized, e.g. read from the staging file
+	 *
+	 * @param body - OPAVaultRequest JSON
+	 * @param apiEndpoint - endpoint of the secret to update
+	 * @param authToken
+	 * @return Response from Okta Vault after Secret Update
+	 * @throws OPAApiException when OPA answers with an unsuccessful status
+	 */
+	public OPAVaultResponse updateOPASecret(RequestBody body, String apiEndpoint, String authToken) {
+		LOGGER.info("updateOPASecret Start Update Secret process");
+		OPAVaultResponse opaVaultResponse = null;
+		try {
+			opaVaultResponse = updateSecret(body, apiEndpoint, authToken);
+			if (opaVaultResponse == null) {
+				// OPA may answer 204 without a body
+				opaVaultResponse = new OPAVaultResponse();
+			}
+		} catch (OPAApiException e) {
+			LOGGER.error("updateOPASecret >>> "+ e.getMessage());
+			throw e;
+		} catch (Exception e) {
+			LOGGER.error("updateOPASecret >>> "+ e.getMessage());
+			// e.printStackTrace();
+		}
+		return opaVaultResponse;
+	}
+
 	/**
 	 * Create secret folder in Okta Vault
-	 * 
+	 *
 	 * @param opaPASecretVault
 	 * @param apiEndpoint
 	 * @param authToken
 	 * @return Response from Okta Vault after Secret Creation
+	 * @throws OPAApiException when OPA answers with an unsuccessful status
 	 */
-	public OPAVaultResponse createOPASecretFolder(String opaPASecretFolder, String apiEndpoint, String authToken) {
+	public OPAVaultResponse createOPASecretFolder(OPAVaultRequest opaPASecretFolder, String apiEndpoint,
+			String authToken) {
 		LOGGER.info("createOPASecretFolder Start Create Secret Folder process");
 		OPAVaultResponse opaVaultResponse = null;
 		try {
-			String responseBody = createSecretFolder(opaPASecretFolder, apiEndpoint, authToken);
-			LOGGER.debug("createOPASecretFolder responseBody =============> " + responseBody);
-			ObjectMapper mapper = new ObjectMapper();
-			opaVaultResponse = mapper.readValue(responseBody, OPAVaultResponse.class);
+			opaVaultResponse = createSecretFolder(opaPASecretFolder, apiEndpoint, authToken);
 			LOGGER.debug("createOPASecretFolder opaSecretVaultResponse ======== " + opaVaultResponse.toString());
+		} catch (OPAApiException e) {
+			LOGGER.error("createOPASecretFolder >>> "+ e.getMessage());
+			throw e;
 		} catch (Exception e) {
 			LOGGER.error("createOPASecretFolder >>> "+ e.getMessage());
 			// e.printStackTrace();
@@ -148,93 +290,110 @@ public class OPASecretServicesDAO {
 
 	}
 
+	/**
+	 * List every item of a secret folder, following OPA pagination
+	 *
+	 * @param apiEndpoint
+	 * @param authToken
+	 * @return List of folder items (secrets and sub folders)
+	 * @throws OPAApiException when OPA answers with an unsuccessful status
+	 * @throws IllegalStateException when a page cannot be read, a partial list is
+	 *                               never returned as the full one
+	 */
+	public List<OPAVaultResponse> listOPASecretFolderItems(String apiEndpoint, String authToken) {
+		LOGGER.info("listOPASecretFolderItems Start List Secret Folder Items process");
+		List<OPAVaultResponse> folderItems = new ArrayList<OPAVaultResponse>();
+		String pageURL = apiEndpoint;
+		try {
+			while (pageURL != null) {
+				Request request = new Request.Builder().url(pageURL).method("GET", null)
+						.addHeader("Accept", Constants.JASON_CONTENT_TYPE)
+						.addHeader("Authorization", "Bearer " + authToken).build();
+				String[] nextPageURL = new String[1];
+				OPAVaultListResponse page = execute("listSecretFolderItems", request,
+						JsonCodec.OPA_VAULT_LIST_RESPONSE_READER, nextPageURL);
+				if (page != null && page.getItems() != null) {
+					folderItems.addAll(page.getItems());
+				}
+				pageURL = nextPageURL[0];
+			}
+		} catch (OPAApiException e) {
+			LOGGER.error("listOPASecretFolderItems >>> "+ e.getMessage());
+			throw e;
+		} catch (Exception e) {
+			LOGGER.error("listOPASecretFolderItems >>> "+ e.getMessage());
+			throw new IllegalStateException("Unable to list " + pageURL + " after " + folderItems.size() + " items", e);
+		}
+		LOGGER.debug("listOPASecretFolderItems items size ===> " + folderItems.size());
+		return folderItems;
+	}
+
 	/**
 	 * Get Authorization token to use for other APIs
-	 * 
+	 *
 	 * @param apiEndpointURL
 	 * @param requestBody
-	 * @return String - ResponseBody
+	 * @return OPAAuthTokenDetails - parsed response
 	 */
-	private String getAuthToken(String apiEndpointURL, String requestBody) {
+	private OPAAuthTokenDetails getAuthToken(String apiEndpointURL, String requestBody) throws IOException {
 		LOGGER.info("getAuthToken Fetch auth token for API use");
-		Response response = null;
-		String responseBody = "";
-
-		try {
-			OkHttpClient client = new OkHttpClient().newBuilder().build();
-			MediaType mediaType = MediaType.parse(Constants.JASON_CONTENT_TYPE);
-			RequestBody body = RequestBody.create(mediaType, requestBody);
-			Request request = new Request.Builder().url(apiEndpointURL).method("POST", body)
-					.addHeader("Content-Type", Constants.JASON_CONTENT_TYPE).build();
-			response = client.newCall(request).execute();
-			responseBody = response.body().string().toString().trim();
-		} catch (Exception e) {
-			LOGGER.error("getAuthToken >>> "+ e.getMessage());
-			//e.printStackTrace();
-		}
-		LOGGER.info("getAuthToken response code ========> " + response.code());
-		LOGGER.debug("getAuthToken responseBody  ========> " + responseBody);
-		return responseBody;
+		MediaType mediaType = MediaType.parse(Constants.JASON_CONTENT_TYPE);
+		RequestBody body = RequestBody.create(mediaType, requestBody);
+		Request request = new Request.Builder().url(apiEndpointURL).method("POST", body)
+				.addHeader("Content-Type", Constants.JASON_CONTENT_TYPE).build();
+		return execute(OPERATION_GET_AUTH_TOKEN, request, JsonCodec.OPA_AUTH_TOKEN_READER, null);
 	}
 
 	/**
 	 * Get JWK Public Key from Okta
-	 * 
+	 *
 	 * @param apiEndpointURL
 	 * @param requestBody
-	 * @return String - Response from Okta
+	 * @return OPAAuthTokenDetails - parsed response from Okta
 	 */
-	private String getVaultJWKS(String apiEndpointURL, String authToken) {
+	private OPAAuthTokenDetails getVaultJWKS(String apiEndpointURL, String authToken) throws IOException {
 		LOGGER.info("getVaultJWKS Getting public Key ");
-		Response response = null;
-		String responseBody = "";
-		try {
-			OkHttpClient client = new OkHttpClient().newBuilder().build();
-			Request request = new Request.Builder().url(apiEndpointURL).method("GET", null)
-					.addHeader("Accept", Constants.JASON_CONTENT_TYPE)
-					.addHeader("Content-Type", Constants.JASON_CONTENT_TYPE)
-					.addHeader("Authorization", "Bearer " + authToken).build();
-			response = client.newCall(request).execute();
-			responseBody = response.body().string().toString().trim();
-		} catch (Exception e) {
-			LOGGER.error("getVaultJWKS >>> "+ e.getMessage());
-			//e.printStackTrace();
-		}
-		LOGGER.info("getVaultJWKS response code ==========> " + response.code());
-		LOGGER.debug("getVaultJWKS responseBody  ========> " + responseBody);
-		return responseBody;
+		Request request = new Request.Builder().url(apiEndpointURL).method("GET", null)
+				.addHeader("Accept", Constants.JASON_CONTENT_TYPE)
+				.addHeader("Content-Type", Constants.JASON_CONTENT_TYPE)
+				.addHeader("Authorization", "Bearer " + authToken).build();
+		return execute("getVaultJWKS", request, JsonCodec.OPA_AUTH_TOKEN_READER, null);
 	}
 
 	/**
 	 * Create Secret in Okta Vault
-	 * 
-	 * @param opaPASecretVault
+	 *
+	 * @param body - OPAVaultRequest JSON
 	 * @param apiEndpoint
 	 * @param authToken
-	 * @return String - ResponseBody
+	 * @return OPAVaultResponse - parsed response, null when OPA answered without a body
 	 */
-	private String createSecret(String opaPASecretVault, String apiEndpoint, String authToken) {
+	private OPAVaultResponse createSecret(RequestBody body, String apiEndpoint, String authToken) throws IOException {
 		LOGGER.info("createSecret Creating a Secret in Okta PAM Vault.");
-		Response response = null;
-		String responseBody = "";
-		try {
-			OkHttpClient client = new OkHttpClient().newBuilder().build();
-			MediaType mediaType = MediaType.parse(Constants.JASON_CONTENT_TYPE);
-			RequestBody body = RequestBody.create(mediaType, opaPASecretVault);
-			Request request = new Request.Builder().url(apiEndpoint).method("POST", body)
-					.addHeader("Content-Type", Constants.JASON_CONTENT_TYPE)
-					.addHeader("Accept", Constants.JASON_CONTENT_TYPE)
-					.addHeader("Authorization", "Bearer " + authToken)
-					.build();
-			response = client.newCall(request).execute();
-			responseBody = response.body().string().toString().trim();
-		} catch (Exception e) {
-			LOGGER.error("createSecret >>> "+ e.getMessage());
-			//e.printStackTrace();
-		}
-		LOGGER.info("createSecret response code ========> " + response.code());
-		LOGGER.debug("createSecret responseBody  ========> " + responseBody);
-		return responseBody;
+		Request request = new Request.Builder().url(apiEndpoint).method("POST", body)
+				.addHeader("Content-Type", Constants.JASON_CONTENT_TYPE)
+				.addHeader("Accept", Constants.JASON_CONTENT_TYPE)
+				.addHeader("Authorization", "Bearer " + authToken)
+				.build();
+		return execute("createSecret", request, JsonCodec.OPA_VAULT_RESPONSE_READER, null);
+	}
+
+	/**
+	 * Update Secret in Okta Vault
+	 *
+	 * @param body - OPAVaultRequest JSON
+	 * @param apiEndpoint
+	 * @param authToken
+	 * @return OPAVaultResponse - parsed response, null when OPA answered without a body
+	 */
+	private OPAVaultResponse updateSecret(RequestBody body, String apiEndpoint, String authToken) throws IOException {
+		LOGGER.info("updateSecret Updating a Secret in Okta PAM Vault.");
+		Request request = new Request.Builder().url(apiEndpoint).method("PUT", body)
+				.addHeader("Content-Type", Constants.JASON_CONTENT_TYPE)
+				.addHeader("Accept", Constants.JASON_CONTENT_TYPE)
+				.addHeader("Authorization", "Bearer " + authToken)
+				.build();
+		return execute("updateSecret", request, JsonCodec.OPA_VAULT_RESPONSE_READER, null);
 	}
 
 	/**
@@ -242,30 +401,147 @@ public class OPASecretServicesDAO {
 	 * @param opaPASecretVault
 	 * @param apiEndpoint
 	 * @param authToken
+	 * @return OPAVaultResponse - parsed response
 	 */
-	private String createSecretFolder(String opaPASecretVault, String apiEndpoint, String authToken) {
+	private OPAVaultResponse createSecretFolder(OPAVaultRequest opaPASecretVault, String apiEndpoint,
+			String authToken) throws IOException {
 		LOGGER.info("createSecretFolder Creating a Secret folder in Okta PAM Vault.");
-		Response response = null;
-		String responseBody = "";
+		RequestBody body = new JsonRequestBody(JsonCodec.OPA_VAULT_REQUEST_WRITER, opaPASecretVault);
+		Request request = new Request.Builder().url(apiEndpoint)
+				.method("POST", body)
+				.addHeader("Content-Type", Constants.JASON_CONTENT_TYPE)
+				.addHeader("Accept", Constants.JASON_CONTENT_TYPE)
+				.addHeader("Authorization", "Bearer " + authToken)
+				.build();
+		return execute("createSecretFolder", request, JsonCodec.OPA_VAULT_RESPONSE_READER, null);
+	}
+
+	/**
+	 * Execute a request on the shared client of the target host
+	 *
+	 * @param operation
+	 * @param request
+	 * @param reader - shared reader parsing the response body
+	 * @param nextPageURL - receives the rel="next" link of a paginated response, may be null
+	 * @return T - parsed response, null when OPA answered without a body
+	 * @throws OPAApiException when OPA answers with an unsuccessful status
+	 */
+	private <T> T execute(String operation, Request request, ObjectReader reader, String[] nextPageURL)
+			throws IOException {
+		// A service token request has no side effect, other POSTs create objects
+		boolean idempotent = !"POST".equals(request.method()) || OPERATION_GET_AUTH_TOKEN.equals(operation);
 		try {
-			OkHttpClient client = new OkHttpClient().newBuilder().build();
-			MediaType mediaType = MediaType.parse(Constants.JASON_CONTENT_TYPE);
-			RequestBody body = RequestBody.create(mediaType,opaPASecretVault);
-			Request request = new Request.Builder().url(apiEndpoint)
-					.method("POST", body)
-					.addHeader("Content-Type", Constants.JASON_CONTENT_TYPE)
-					.addHeader("Accept", Constants.JASON_CONTENT_TYPE)
-					.addHeader("Authorization", "Bearer " + authToken)
-					.build();
-			response = client.newCall(request).execute();
-			responseBody = response.body().string().toString().trim();
+			return resilientExecutor.call("opa " + request.url().host() + " " + operation, idempotent,
+					() -> executeOnce(operation, request, reader, nextPageURL));
+		} catch (IOException | RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOGGER.error("createSecretFolder >>> "+ e.getMessage());
-			//e.printStackTrace();
+			throw new IOException(operation + " failed >>> " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Send a request once, replaying it while OPA throttles it. A successful
+	 * response is parsed straight from the body stream.
+	 *
+	 * @param operation
+	 * @param request
+	 * @param reader - shared reader parsing the response body
+	 * @param nextPageURL - receives the rel="next" link of a paginated response, may be null
+	 * @return T - parsed response, null when OPA answered without a body
+	 * @throws OPAApiException when OPA answers with an unsuccessful status
+	 */
+	private <T> T executeOnce(String operation, Request request, ObjectReader reader, String[] nextPageURL)
+			throws IOException {
+		OkHttpClient client = opaHttpClientProvider.getClient(request.url().toString());
+		int maxThrottleRetries = Math.max(0, regProps.getOktapam().getMaxThrottleRetries());
+		for (int attempt = 0;; attempt++) {
+			acquirePermit(operation);
+			long startNanos = migrationMetrics.start(MigrationMetrics.SYSTEM_OPA, operation);
+			String status = MigrationMetrics.STATUS_OK;
+			try (Response response = client.newCall(request).execute()) {
+				status = String.valueOf(response.code());
+				LOGGER.info(operation + " response code ========> " + response.code());
+				if (response.code() == HTTP_TOO_MANY_REQUESTS) {
+					long waitMillis = opaRateLimiter.onThrottled(response.header("Retry-After"));
+					if (attempt < maxThrottleRetries) {
+						LOGGER.warn(operation + " throttled by OPA, replaying in " + waitMillis + " ms");
+						continue;
+					}
+				}
+				if (!response.isSuccessful()) {
+					String responseBody = response.body().string().trim();
+					LOGGER.debug(operation + " responseBody  ========> " + responseBody);
+					throw new OPAApiException(operation, response.code(), responseBody);
+				}
+				T parsed = readBody(response.body(), reader);
+				LOGGER.debug(operation + " response  ========> " + parsed);
+				opaRateLimiter.onSuccess();
+				if (nextPageURL != null) {
+					nextPageURL[0] = getNextPageURL(response.header("Link"));
+				}
+				return parsed;
+			} catch (IOException e) {
+				status = e.getClass().getSimpleName();
+				throw e;
+			} finally {
+				migrationMetrics.stop(MigrationMetrics.SYSTEM_OPA, operation, startNanos, status);
+			}
+		}
+	}
+
+	/**
+	 * Parse a response body from its stream
+	 *
+	 * @param body
+	 * @param reader
+	 * @return T - parsed body, null when the body is empty
+	 */
+	private <T> T readBody(ResponseBody body, ObjectReader reader) throws IOException {
+		if (body == null) {
+			return null;
+		}
+		BufferedSource source = body.source();
+		if (source.exhausted()) {
+			return null;
+		}
+		return reader.readValue(source.inputStream());
+	}
+
+	/**
+	 * Wait for the shared OPA rate limiter
+	 *
+	 * @param operation
+	 * @throws IOException when interrupted while waiting
+	 */
+	private void acquirePermit(String operation) throws IOException {
+		try {
+			opaRateLimiter.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(operation + " interrupted while waiting for the OPA rate limiter");
+		}
+	}
+
+	/**
+	 * Extract the rel="next" URL of a Link header
+	 *
+	 * @param linkHeader
+	 * @return String - next page URL, null on the last page
+	 */
+	private String getNextPageURL(String linkHeader) {
+		if (linkHeader == null) {
+			return null;
+		}
+		for (String link : linkHeader.split(",")) {
+			String[] parts = link.split(";");
+			for (int i = 1; i < parts.length; i++) {
+				if (parts[i].trim().replace(" ", "").equalsIgnoreCase("rel=\"next\"")) {
+					return parts[0].trim().replaceAll("^<|>$", "");
+				}
+			}
 		}
-		LOGGER.info("createSecretFolder response code ========> " + response.code());
-		LOGGER.debug("createSecretFolder responseBody  ========> " + responseBody);
-		return responseBody;
+		return null;
 	}
 
 }
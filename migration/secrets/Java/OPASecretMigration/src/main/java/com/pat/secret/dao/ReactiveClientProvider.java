@@ -0,0 +1,210 @@
+package com.pat.secret.dao;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.client.VaultEndpoint;
+import org.springframework.vault.core.ReactiveVaultTemplate;
+import org.springframework.vault.support.VaultToken;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.Hashicorp;
+import com.pat.secret.vo.Oktapam;
+
+import io.netty.channel.ChannelOption;
+import okhttp3.HttpUrl;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Non-blocking HTTP clients of the reactive execution. Every Hashicorp vault
+ * cluster and the OPA host get their own connection pool, and all of them run
+ * on one shared set of register.migration.eventLoopThreads event loop threads.
+ * Callers waiting for a pooled connection are queued without holding a thread.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class ReactiveClientProvider {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveClientProvider.class);
+
+	private static RegisterProperties regProps;
+
+	private static VaultTemplateProvider vaultTemplateProvider;
+
+	private final Object loopLock = new Object();
+
+	// Guarded by loopLock
+	private LoopResources loopResources;
+
+	private final Map<String, ConnectionProvider> connectionProviders = new ConcurrentHashMap<String, ConnectionProvider>(2);
+
+	private final Map<String, ReactiveVaultTemplate> vaultTemplates = new ConcurrentHashMap<String, ReactiveVaultTemplate>(2);
+
+	private final Map<String, WebClient> webClients = new ConcurrentHashMap<String, WebClient>(2);
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		ReactiveClientProvider.regProps = regProps;
+	}
+
+	@Autowired
+	private void setVaultTemplateProvider(VaultTemplateProvider vaultTemplateProvider) {
+		ReactiveClientProvider.vaultTemplateProvider = vaultTemplateProvider;
+	}
+
+	public ReactiveClientProvider() {
+
+	}
+
+	/**
+	 * Get the shared ReactiveVaultTemplate for a cluster and token
+	 *
+	 * @param host
+	 * @param port
+	 * @param scheme
+	 * @param authToken
+	 * @return ReactiveVaultTemplate - thread safe template shared by all callers
+	 */
+	public ReactiveVaultTemplate getVaultTemplate(String host, String port, String scheme, String authToken) {
+		final String clusterURL = scheme + "://" + host + ":" + port;
+		// The token is part of the key so different credentials never share a session
+		return vaultTemplates.computeIfAbsent(clusterURL + "#" + authToken,
+				key -> newVaultTemplate(clusterURL, host, port, scheme, authToken));
+	}
+
+	/**
+	 * Get the shared WebClient for the OPA host of the given URL
+	 *
+	 * @param apiEndpointURL
+	 * @return WebClient - client shared by all calls to the same host
+	 */
+	public WebClient getWebClient(String apiEndpointURL) {
+		HttpUrl url = HttpUrl.get(apiEndpointURL);
+		String hostKey = url.scheme() + "://" + url.host() + ":" + url.port();
+		return webClients.computeIfAbsent(hostKey, this::newWebClient);
+	}
+
+	/**
+	 * Build a ReactiveVaultTemplate on a pool sized by the cluster settings
+	 *
+	 * @return ReactiveVaultTemplate
+	 */
+	private ReactiveVaultTemplate newVaultTemplate(String clusterURL, String host, String port, String scheme,
+			String authToken) {
+		Hashicorp hashicorp = vaultTemplateProvider.getCluster(host, port, scheme);
+		LOGGER.info("newVaultTemplate Creating reactive Vault template for " + clusterURL + " maxConnectionsPerRoute="
+				+ hashicorp.getMaxConnectionsPerRoute());
+		VaultEndpoint vaultEndpoint = new VaultEndpoint();
+		vaultEndpoint.setHost(host);
+		vaultEndpoint.setPort(Integer.parseInt(port));
+		vaultEndpoint.setScheme(scheme);
+		ConnectionProvider connectionProvider = newConnectionProvider("vault-" + host + "-" + port,
+				hashicorp.getMaxConnectionsPerRoute(), hashicorp.getReadTimeoutSeconds(), 0);
+		HttpClient httpClient = newHttpClient(connectionProvider, hashicorp.getConnectTimeoutSeconds(),
+				hashicorp.getReadTimeoutSeconds());
+		final VaultToken vaultToken = VaultToken.of(authToken);
+		return new ReactiveVaultTemplate(vaultEndpoint, new ReactorClientHttpConnector(httpClient),
+				() -> Mono.just(vaultToken));
+	}
+
+	/**
+	 * Build a WebClient for an OPA host, at most opaConcurrency calls use a
+	 * connection at once
+	 *
+	 * @param hostKey
+	 * @return WebClient
+	 */
+	private WebClient newWebClient(String hostKey) {
+		Oktapam oktapam = regProps.getOktapam();
+		int maxConnections = regProps.getMigration().getOpaConcurrency();
+		LOGGER.info("newWebClient Creating reactive HTTP client for " + hostKey + " maxConnections=" + maxConnections
+				+ " keepAliveSeconds=" + oktapam.getKeepAliveSeconds());
+		ConnectionProvider connectionProvider = newConnectionProvider("opa-" + hostKey.replaceAll("[^A-Za-z0-9.-]", ""),
+				maxConnections, oktapam.getReadTimeoutSeconds(), oktapam.getKeepAliveSeconds());
+		HttpClient httpClient = newHttpClient(connectionProvider, oktapam.getConnectTimeoutSeconds(),
+				oktapam.getReadTimeoutSeconds());
+		return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+	}
+
+	/**
+	 * Connection pool with an unbounded queue of pending callers, the reactive
+	 * flow bounds the calls it has in flight
+	 *
+	 * @param name
+	 * @param maxConnections
+	 * @param pendingAcquireTimeoutSeconds - time a caller may wait for a connection
+	 * @param maxIdleSeconds - 0 keeps idle connections until the server closes them
+	 * @return ConnectionProvider
+	 */
+	private ConnectionProvider newConnectionProvider(String name, int maxConnections,
+			int pendingAcquireTimeoutSeconds, int maxIdleSeconds) {
+		ConnectionProvider.Builder builder = ConnectionProvider.builder(name)
+				.maxConnections(Math.max(1, maxConnections))
+				.pendingAcquireMaxCount(-1)
+				.pendingAcquireTimeout(Duration.ofSeconds(Math.max(1, pendingAcquireTimeoutSeconds)));
+		if (maxIdleSeconds > 0) {
+			builder.maxIdleTime(Duration.ofSeconds(maxIdleSeconds));
+		}
+		ConnectionProvider connectionProvider = builder.build();
+		connectionProviders.put(name, connectionProvider);
+		return connectionProvider;
+	}
+
+	private HttpClient newHttpClient(ConnectionProvider connectionProvider, int connectTimeoutSeconds,
+			int readTimeoutSeconds) {
+		return HttpClient.create(connectionProvider).runOn(getLoopResources())
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutSeconds * 1000)
+				.responseTimeout(Duration.ofSeconds(readTimeoutSeconds));
+	}
+
+	/**
+	 * @return LoopResources - event loop threads shared by every reactive client
+	 */
+	private LoopResources getLoopResources() {
+		synchronized (loopLock) {
+			if (loopResources == null) {
+				int threads = regProps.getMigration().getEventLoopThreads();
+				threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+				LOGGER.info("getLoopResources Starting " + threads + " event loop threads");
+				loopResources = LoopResources.create("migration-loop", threads, true);
+			}
+			return loopResources;
+		}
+	}
+
+	/**
+	 * Close the connection pools and stop the event loop threads
+	 */
+	@PreDestroy
+	public void close() {
+		webClients.clear();
+		vaultTemplates.clear();
+		for (Map.Entry<String, ConnectionProvider> entry : connectionProviders.entrySet()) {
+			LOGGER.debug("close Closing connection pool " + entry.getKey());
+			entry.getValue().dispose();
+		}
+		connectionProviders.clear();
+		synchronized (loopLock) {
+			if (loopResources != null) {
+				loopResources.dispose();
+				loopResources = null;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package com.pat.secret.dao;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.core.ReactiveVaultTemplate;
+import org.springframework.vault.support.VaultResponse;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.pat.secret.utility.MigrationMetrics;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of HashicorpVaultDAO, used by the reactive
+ * execution. Calls return at once and complete on the event loop threads.
+ * Failures are logged and end the call empty, like the blocking DAO returns an
+ * empty result.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class ReactiveHashicorpVaultDAO {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveHashicorpVaultDAO.class);
+
+	private static ReactiveClientProvider reactiveClientProvider;
+
+	private static ResilientExecutor resilientExecutor;
+
+	private static MigrationMetrics migrationMetrics;
+
+	@Autowired
+	private void setReactiveClientProvider(ReactiveClientProvider reactiveClientProvider) {
+		ReactiveHashicorpVaultDAO.reactiveClientProvider = reactiveClientProvider;
+	}
+
+	@Autowired
+	private void setResilientExecutor(ResilientExecutor resilientExecutor) {
+		ReactiveHashicorpVaultDAO.resilientExecutor = resilientExecutor;
+	}
+
+	@Autowired
+	private void setMigrationMetrics(MigrationMetrics migrationMetrics) {
+		ReactiveHashicorpVaultDAO.migrationMetrics = migrationMetrics;
+	}
+
+	public ReactiveHashicorpVaultDAO() {
+
+	}
+
+	/**
+	 * Get metadata entries below a path of the Secret Engine. Entries ending with
+	 * "/" are sub folders, other entries are secrets.
+	 * 
+	 * @param path - folder path relative to the engine, empty for the engine root
+	 * @return Flux of entries, empty for an empty folder, failing when the folder
+	 *         could not be listed
+	 */
+	@SuppressWarnings("unchecked")
+	public Flux<String> getSecretMetadata(String host, String port, String scheme, String authToken,
+			String secretEngine, String metadataEndpoint, String path) {
+		LOGGER.info("getSecretMetadata Getting Hashicorp Vault Secret Engine Metadata " + secretEngine + "/" + path);
+		String listPath = secretEngine + "/" + metadataEndpoint + "/" + path + "?list=true";
+		return call(host, port, scheme, authToken, "list", listPath)
+				// Vault answers 404 to a list of an empty engine or folder, VaultTemplate.list returns an empty list
+				.onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty())
+				.flatMapIterable(response -> {
+					Object keys = response.getData() == null ? null : response.getData().get("keys");
+					return keys instanceof List ? (List<String>) keys : Collections.<String>emptyList();
+				}).doOnError(e -> LOGGER.error("getSecretMetadata >>> " + e.getMessage()));
+	}
+
+	/**
+	 * Read the data and version metadata of a secret
+	 * 
+	 * @return Mono of the KV v2 response data, empty when the secret could not be read
+	 */
+	public Mono<Map<String, Object>> getSecrets(String host, String port, String scheme, String authToken,
+			String secretEngine, String path) {
+		LOGGER.info("getSecrets Getting Hashicorp Vault Secret");
+		return call(host, port, scheme, authToken, "read", secretEngine + "/data/" + path)
+				.flatMap(response -> Mono.justOrEmpty(response.getData())).onErrorResume(e -> {
+					LOGGER.error("getSecrets >>> " + e.getMessage());
+					return Mono.empty();
+				});
+	}
+
+	/**
+	 * Get the KV v2 metadata of a secret (current_version, updated_time, ...)
+	 * without reading the secret value
+	 * 
+	 * @return Mono of the metadata, empty when it could not be read
+	 */
+	public Mono<Map<String, Object>> getSecretVersionMetadata(String host, String port, String scheme,
+			String authToken, String secretEngine, String metadataEndpoint, String path) {
+		LOGGER.debug("getSecretVersionMetadata Getting Hashicorp Vault Secret metadata " + path);
+		return call(host, port, scheme, authToken, "metadata", secretEngine + "/" + metadataEndpoint + "/" + path)
+				.flatMap(response -> Mono.justOrEmpty(response.getData())).onErrorResume(e -> {
+					LOGGER.error("getSecretVersionMetadata >>> " + e.getMessage());
+					return Mono.empty();
+				});
+	}
+
+	/**
+	 * GET a Vault path with retries and metrics. The request goes through the
+	 * session client of the template so an HTTP error keeps its status code for
+	 * the retry decision.
+	 * 
+	 * @param operation
+	 * @param path
+	 * @return Mono of the Vault response
+	 */
+	private Mono<VaultResponse> call(String host, String port, String scheme, String authToken, String operation,
+			String path) {
+		// Shared template for the cluster
+		ReactiveVaultTemplate vaultTemplate = reactiveClientProvider.getVaultTemplate(host, port, scheme, authToken);
+		return resilientExecutor.callAsync("vault " + host + ":" + port + " " + operation, true,
+				() -> migrationMetrics.recordAsync(MigrationMetrics.SYSTEM_VAULT, operation,
+						() -> vaultTemplate.doWithSession(
+								webClient -> webClient.get().uri(path).retrieve().bodyToMono(VaultResponse.class))));
+	}
+
+}
@@ -0,0 +1,204 @@
+package com.pat.secret.dao;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.pat.secret.utility.Constants;
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.MigrationMetrics;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.OPAVaultRequest;
+import com.pat.secret.vo.OPAVaultResponse;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of OPASecretServicesDAO for the secret calls of the
+ * reactive execution. The shared OPA rate limiter and the throttling replays
+ * wait on the Reactor timer instead of a sleeping thread.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class ReactiveOPASecretServicesDAO {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveOPASecretServicesDAO.class);
+
+	// OPA answers 429 when the tenant rate limit is exceeded
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+	// Emitted by an attempt OPA throttled, the call is sent again
+	private static final Object REPLAY = new Object();
+
+	private static ReactiveClientProvider reactiveClientProvider;
+
+	private static ResilientExecutor resilientExecutor;
+
+	private static OPARateLimiter opaRateLimiter;
+
+	private static MigrationMetrics migrationMetrics;
+
+	private static RegisterProperties regProps;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		ReactiveOPASecretServicesDAO.regProps = regProps;
+	}
+
+	@Autowired
+	private void setReactiveClientProvider(ReactiveClientProvider reactiveClientProvider) {
+		ReactiveOPASecretServicesDAO.reactiveClientProvider = reactiveClientProvider;
+	}
+
+	@Autowired
+	private void setResilientExecutor(ResilientExecutor resilientExecutor) {
+		ReactiveOPASecretServicesDAO.resilientExecutor = resilientExecutor;
+	}
+
+	@Autowired
+	private void setOPARateLimiter(OPARateLimiter opaRateLimiter) {
+		ReactiveOPASecretServicesDAO.opaRateLimiter = opaRateLimiter;
+	}
+
+	@Autowired
+	private void setMigrationMetrics(MigrationMetrics migrationMetrics) {
+		ReactiveOPASecretServicesDAO.migrationMetrics = migrationMetrics;
+	}
+
+	public ReactiveOPASecretServicesDAO() {
+
+	}
+
+	/**
+	 * Create secret in Okta Vault
+	 *
+	 * @param opaPASecretVault
+	 * @param apiEndpoint
+	 * @param authToken
+	 * @return Mono of the response from Okta Vault, empty when OPA answered without a body
+	 * @throws OPAApiException (signalled) when OPA answers with an unsuccessful status
+	 */
+	public Mono<OPAVaultResponse> createOPASecret(OPAVaultRequest opaPASecretVault, String apiEndpoint,
+			String authToken) {
+		LOGGER.info("createOPASecret Start Create Secret process");
+		Mono<OPAVaultResponse> opaVaultResponse = execute("createSecret", HttpMethod.POST, apiEndpoint, authToken,
+				opaPASecretVault, JsonCodec.OPA_VAULT_RESPONSE_READER);
+		return opaVaultResponse.doOnError(e -> LOGGER.error("createOPASecret >>> " + e.getMessage()));
+	}
+
+	/**
+	 * Update an existing secret in Okta Vault
+	 *
+	 * @param opaPASecretVault
+	 * @param apiEndpoint - endpoint of the secret to update
+	 * @param authToken
+	 * @return Mono of the response from Okta Vault
+	 * @throws OPAApiException (signalled) when OPA answers with an unsuccessful status
+	 */
+	public Mono<OPAVaultResponse> updateOPASecret(OPAVaultRequest opaPASecretVault, String apiEndpoint,
+			String authToken) {
+		LOGGER.info("updateOPASecret Start Update Secret process");
+		Mono<OPAVaultResponse> opaVaultResponse = execute("updateSecret", HttpMethod.PUT, apiEndpoint, authToken,
+				opaPASecretVault, JsonCodec.OPA_VAULT_RESPONSE_READER);
+		// OPA may answer 204 without a body
+		return opaVaultResponse.switchIfEmpty(Mono.fromSupplier(OPAVaultResponse::new))
+				.doOnError(e -> LOGGER.error("updateOPASecret >>> " + e.getMessage()));
+	}
+
+	/**
+	 * Send a JSON request with retries. The body is serialized once and shared
+	 * by every attempt.
+	 *
+	 * @param operation
+	 * @param method
+	 * @param apiEndpoint
+	 * @param authToken
+	 * @param value - request body
+	 * @param reader - shared reader parsing the response body
+	 * @return Mono of the parsed response, empty when OPA answered without a body
+	 */
+	private <T> Mono<T> execute(String operation, HttpMethod method, String apiEndpoint, String authToken,
+			Object value, ObjectReader reader) {
+		return Mono.fromCallable(() -> JsonCodec.OPA_VAULT_REQUEST_WRITER.writeValueAsBytes(value)).flatMap(body -> {
+			// A POST creates an object in OPA
+			boolean idempotent = method != HttpMethod.POST;
+			return resilientExecutor.callAsync("opa " + URI.create(apiEndpoint).getHost() + " " + operation,
+					idempotent, () -> executeOnce(operation, method, apiEndpoint, authToken, body, reader, 0));
+		});
+	}
+
+	/**
+	 * Send a request once it is allowed by the shared rate limiter, replaying it
+	 * while OPA throttles it
+	 *
+	 * @param attempt - number of throttled replays so far
+	 * @return Mono of the parsed response, empty when OPA answered without a body
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Mono<T> executeOnce(String operation, HttpMethod method, String apiEndpoint, String authToken,
+			byte[] body, ObjectReader reader, int attempt) {
+		return Mono.defer(() -> {
+			Mono<Object> send = migrationMetrics.recordAsync(MigrationMetrics.SYSTEM_OPA, operation,
+					() -> reactiveClientProvider.getWebClient(apiEndpoint).method(method).uri(apiEndpoint)
+							.header("Content-Type", Constants.JASON_CONTENT_TYPE)
+							.header("Accept", Constants.JASON_CONTENT_TYPE)
+							.header("Authorization", "Bearer " + authToken).bodyValue(body)
+							.exchangeToMono(response -> readResponse(operation, response, reader, attempt)));
+			long waitNanos = opaRateLimiter.reserve();
+			return waitNanos > 0 ? Mono.delay(Duration.ofNanos(waitNanos)).then(send) : send;
+		}).flatMap(result -> result == REPLAY
+				? executeOnce(operation, method, apiEndpoint, authToken, body, reader, attempt + 1)
+				: Mono.just((T) result));
+	}
+
+	/**
+	 * Map a response to its parsed body, REPLAY for a throttled call with
+	 * replays left, or an OPAApiException
+	 */
+	private Mono<Object> readResponse(String operation, ClientResponse response, ObjectReader reader, int attempt) {
+		int statusCode = response.rawStatusCode();
+		LOGGER.info(operation + " response code ========> " + statusCode);
+		if (statusCode == HTTP_TOO_MANY_REQUESTS) {
+			long waitMillis = opaRateLimiter.onThrottled(response.headers().asHttpHeaders().getFirst("Retry-After"));
+			if (attempt < Math.max(0, regProps.getOktapam().getMaxThrottleRetries())) {
+				LOGGER.warn(operation + " throttled by OPA, replaying in " + waitMillis + " ms");
+				// The rate limiter holds the replay back until the Retry-After pause ends
+				return response.releaseBody().thenReturn(REPLAY);
+			}
+		}
+		if (statusCode < 200 || statusCode >= 300) {
+			return response.bodyToMono(String.class).defaultIfEmpty("").flatMap(responseBody -> {
+				LOGGER.debug(operation + " responseBody  ========> " + responseBody);
+				return Mono.error(new OPAApiException(operation, statusCode, responseBody.trim()));
+			});
+		}
+		// Parse straight from the pooled buffers of the body
+		return DataBufferUtils.join(response.body(BodyExtractors.toDataBuffers())).flatMap(buffer -> {
+			try {
+				if (buffer.readableByteCount() == 0) {
+					return Mono.empty();
+				}
+				Object parsed = reader.readValue(buffer.asInputStream());
+				LOGGER.debug(operation + " response  ========> " + parsed);
+				return Mono.just(parsed);
+			} catch (Exception e) {
+				return Mono.error(e);
+			} finally {
+				DataBufferUtils.release(buffer);
+			}
+		}).doOnSuccess(parsed -> opaRateLimiter.onSuccess());
+	}
+
+}
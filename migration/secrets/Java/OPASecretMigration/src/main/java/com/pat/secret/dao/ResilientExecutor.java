@@ -0,0 +1,363 @@
+package com.pat.secret.dao;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.Resilience;
+
+import io.netty.handler.timeout.TimeoutException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs Vault and OPA calls with retries and circuit breaking. Transient
+ * failures are retried with decorrelated jitter backoff, within a retry budget
+ * shared by all calls. Calls with side effects are only retried when the
+ * request provably did not reach the server. Every endpoint has its own
+ * circuit breaker that fails fast after repeated failures.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class ResilientExecutor {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResilientExecutor.class);
+
+	private static RegisterProperties regProps;
+
+	private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private final Object budgetLock = new Object();
+
+	// Guarded by budgetLock
+	private double retryBalance = -1;
+	private long lastBudgetRefillNanos = System.nanoTime();
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		ResilientExecutor.regProps = regProps;
+	}
+
+	public ResilientExecutor() {
+
+	}
+
+	/**
+	 * Run a call, retrying transient failures
+	 *
+	 * @param endpoint - circuit breaker key, e.g. host and operation
+	 * @param idempotent - true when replaying the call has no extra side effect
+	 * @param call
+	 * @return T - result of the first successful attempt
+	 * @throws Exception - failure of the last attempt
+	 */
+	public <T> T call(String endpoint, boolean idempotent, Callable<T> call) throws Exception {
+		Resilience resilience = regProps.getResilience();
+		CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(endpoint, CircuitBreaker::new);
+		long delayMillis = Math.max(1, resilience.getBaseDelayMillis());
+		depositRetryBudget(resilience);
+		for (int attempt = 1;; attempt++) {
+			long probe = CircuitBreaker.NO_PROBE;
+			try {
+				probe = circuitBreaker.beforeCall();
+				T result = call.call();
+				circuitBreaker.onSuccess();
+				return result;
+			} catch (Exception e) {
+				delayMillis = retryDelayMillis(endpoint, circuitBreaker, idempotent, e, attempt, delayMillis);
+				if (delayMillis < 0) {
+					throw e;
+				}
+			} finally {
+				// An Error records no outcome, the probe is released so the circuit can close
+				circuitBreaker.onAbandoned(probe);
+			}
+			TimeUnit.MILLISECONDS.sleep(delayMillis);
+		}
+	}
+
+	/**
+	 * Non-blocking variant of call for Reactor flows. The retry delays run on
+	 * the Reactor timer, no thread waits for them.
+	 *
+	 * @param endpoint - circuit breaker key, e.g. host and operation
+	 * @param idempotent - true when replaying the call has no extra side effect
+	 * @param call - supplies the Mono of one attempt, subscribed again for every retry
+	 * @return Mono - result of the first successful attempt, or the failure of the last one
+	 */
+	public <T> Mono<T> callAsync(String endpoint, boolean idempotent, Supplier<Mono<T>> call) {
+		return Mono.defer(() -> {
+			Resilience resilience = regProps.getResilience();
+			CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(endpoint, CircuitBreaker::new);
+			depositRetryBudget(resilience);
+			return attemptAsync(endpoint, circuitBreaker, idempotent, call, 1,
+					Math.max(1, resilience.getBaseDelayMillis()));
+		});
+	}
+
+	private <T> Mono<T> attemptAsync(String endpoint, CircuitBreaker circuitBreaker, boolean idempotent,
+			Supplier<Mono<T>> call, int attempt, long previousDelayMillis) {
+		return Mono.defer(() -> {
+			long probe = circuitBreaker.beforeCall();
+			Mono<T> attempted = call.get().doOnSuccess(result -> circuitBreaker.onSuccess());
+			// A cancelled probe, or one failing with an Error, records no outcome and is released here
+			return probe == CircuitBreaker.NO_PROBE ? attempted
+					: attempted.doFinally(signal -> circuitBreaker.onAbandoned(probe));
+		}).onErrorResume(e -> {
+			long delayMillis = retryDelayMillis(endpoint, circuitBreaker, idempotent, e, attempt, previousDelayMillis);
+			if (delayMillis < 0) {
+				return Mono.error(e);
+			}
+			return Mono.delay(Duration.ofMillis(delayMillis)).then(
+					attemptAsync(endpoint, circuitBreaker, idempotent, call, attempt + 1, delayMillis));
+		});
+	}
+
+	/**
+	 * Decide if a failed attempt is retried and how long to wait before it
+	 *
+	 * @param endpoint
+	 * @param circuitBreaker
+	 * @param idempotent
+	 * @param e - failure of the attempt
+	 * @param attempt - number of the failed attempt, starting at 1
+	 * @param delayMillis - delay before the failed attempt, the base delay for the first one
+	 * @return long - milliseconds to wait before the next attempt, -1 to give up
+	 */
+	private long retryDelayMillis(String endpoint, CircuitBreaker circuitBreaker, boolean idempotent, Throwable e,
+			int attempt, long delayMillis) {
+		Resilience resilience = regProps.getResilience();
+		int maxAttempts = Math.max(1, resilience.getMaxAttempts());
+		long baseDelayMillis = Math.max(1, resilience.getBaseDelayMillis());
+		long maxDelayMillis = Math.max(baseDelayMillis, resilience.getMaxDelayMillis());
+		if (e instanceof CircuitOpenException) {
+			if (attempt >= maxAttempts) {
+				return -1;
+			}
+			// Wait for the half open probe, nothing was sent so the retry budget is not used
+			delayMillis = Math.min(maxDelayMillis,
+					Math.max(delayMillis, ((CircuitOpenException) e).getRemainingMillis()));
+			LOGGER.debug("call " + endpoint + " circuit open, waiting " + delayMillis + " ms");
+			return delayMillis;
+		}
+		boolean transientFailure = isTransient(e);
+		if (transientFailure) {
+			circuitBreaker.onFailure();
+		} else {
+			// The endpoint answered, it is healthy even if it refused the call
+			circuitBreaker.onSuccess();
+		}
+		boolean replayable = idempotent || !isSent(e);
+		if (!transientFailure || !replayable || attempt >= maxAttempts || !withdrawRetryBudget(resilience)) {
+			return -1;
+		}
+		// Decorrelated jitter: random between the base delay and three times the previous delay
+		delayMillis = Math.min(maxDelayMillis,
+				ThreadLocalRandom.current().nextLong(baseDelayMillis, delayMillis * 3 + 1));
+		LOGGER.warn("call " + endpoint + " attempt " + attempt + " failed, retrying in " + delayMillis + " ms >>> "
+				+ e.getMessage());
+		return delayMillis;
+	}
+
+	/**
+	 * Check if a failure is worth retrying: network errors, timeouts and
+	 * gateway or availability errors
+	 *
+	 * @param e
+	 * @return true when the failure is transient
+	 */
+	private boolean isTransient(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof OPAApiException) {
+				return isTransientStatus(((OPAApiException) cause).getStatusCode());
+			}
+			if (cause instanceof HttpStatusCodeException) {
+				return isTransientStatus(((HttpStatusCodeException) cause).getRawStatusCode());
+			}
+			if (cause instanceof WebClientResponseException) {
+				return isTransientStatus(((WebClientResponseException) cause).getRawStatusCode());
+			}
+			if (cause instanceof TimeoutException) {
+				// Reactor Netty connect, read and response timeouts
+				return true;
+			}
+			if (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)) {
+				// Interrupted by shutdown, not by the network
+				return false;
+			}
+			if (cause instanceof IOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isTransientStatus(int statusCode) {
+		return statusCode == 408 || statusCode == 500 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+	}
+
+	/**
+	 * Check if a failed request may have been processed by the server. Only
+	 * connection failures and 503 guarantee it was not.
+	 *
+	 * @param e
+	 * @return true when the request may have reached the server
+	 */
+	private boolean isSent(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConnectException || cause instanceof UnknownHostException
+					|| cause instanceof NoRouteToHostException) {
+				return false;
+			}
+			if (cause instanceof OPAApiException) {
+				return ((OPAApiException) cause).getStatusCode() != 503;
+			}
+			if (cause instanceof HttpStatusCodeException) {
+				return ((HttpStatusCodeException) cause).getRawStatusCode() != 503;
+			}
+			if (cause instanceof WebClientResponseException) {
+				return ((WebClientResponseException) cause).getRawStatusCode() != 503;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Every call earns retryBudgetPercent of a retry, and a minimum number of
+	 * retries per second is always available
+	 */
+	private void depositRetryBudget(Resilience resilience) {
+		synchronized (budgetLock) {
+			refillRetryBudget(resilience);
+			retryBalance = Math.min(retryBudgetCapacity(resilience),
+					retryBalance + Math.max(0, resilience.getRetryBudgetPercent()) / 100.0);
+		}
+	}
+
+	/**
+	 * @return true when a retry is allowed by the budget
+	 */
+	private boolean withdrawRetryBudget(Resilience resilience) {
+		synchronized (budgetLock) {
+			refillRetryBudget(resilience);
+			if (retryBalance < 1) {
+				LOGGER.warn("withdrawRetryBudget Retry budget exhausted, failing without retry");
+				return false;
+			}
+			retryBalance -= 1;
+			return true;
+		}
+	}
+
+	/**
+	 * Must be called while holding budgetLock
+	 */
+	private void refillRetryBudget(Resilience resilience) {
+		long now = System.nanoTime();
+		double capacity = retryBudgetCapacity(resilience);
+		if (retryBalance < 0) {
+			retryBalance = capacity;
+		} else {
+			retryBalance = Math.min(capacity, retryBalance
+					+ (now - lastBudgetRefillNanos) * Math.max(0, resilience.getRetryBudgetMinPerSecond()) / 1e9);
+		}
+		lastBudgetRefillNanos = now;
+	}
+
+	private double retryBudgetCapacity(Resilience resilience) {
+		// Ten seconds worth of minimum retries
+		return Math.max(1, resilience.getRetryBudgetMinPerSecond() * 10);
+	}
+
+	/**
+	 * Consecutive failure circuit breaker. Once open it rejects calls until the
+	 * open period ends, then lets one probe call through (half open).
+	 */
+	private static class CircuitBreaker {
+
+		private static final long NO_PROBE = 0;
+
+		private final String endpoint;
+		private int consecutiveFailures;
+		private long openUntilMillis;
+		private boolean probeInFlight;
+		// Number of the probe in flight, a later probe is not released by an earlier one
+		private long probeCount;
+
+		private CircuitBreaker(String endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		/**
+		 * @return long - number of the probe when this call is the half open probe, NO_PROBE otherwise
+		 */
+		private synchronized long beforeCall() {
+			if (openUntilMillis == 0) {
+				return NO_PROBE;
+			}
+			long now = System.currentTimeMillis();
+			if (now < openUntilMillis || probeInFlight) {
+				throw new CircuitOpenException(endpoint, Math.max(1, openUntilMillis - now));
+			}
+			probeInFlight = true;
+			LOGGER.info("beforeCall Circuit half open for " + endpoint + ", sending probe call");
+			return ++probeCount;
+		}
+
+		/**
+		 * A call ended. When it was the probe and neither onSuccess nor onFailure
+		 * recorded its outcome, it was cancelled or failed with an Error, the next
+		 * call becomes the probe.
+		 *
+		 * @param probe - number returned by beforeCall
+		 */
+		private synchronized void onAbandoned(long probe) {
+			if (probe != NO_PROBE && probeInFlight && probe == probeCount) {
+				probeInFlight = false;
+				LOGGER.warn("onAbandoned Probe call for " + endpoint + " ended without outcome, releasing it");
+			}
+		}
+
+		private synchronized void onSuccess() {
+			if (openUntilMillis != 0) {
+				LOGGER.info("onSuccess Circuit closed for " + endpoint);
+			}
+			consecutiveFailures = 0;
+			openUntilMillis = 0;
+			probeInFlight = false;
+		}
+
+		private synchronized void onFailure() {
+			consecutiveFailures++;
+			Resilience resilience = regProps.getResilience();
+			if (probeInFlight || consecutiveFailures >= Math.max(1, resilience.getCircuitFailureThreshold())) {
+				openUntilMillis = System.currentTimeMillis()
+						+ TimeUnit.SECONDS.toMillis(Math.max(1, resilience.getCircuitOpenSeconds()));
+				probeInFlight = false;
+				LOGGER.warn("onFailure Circuit open for " + endpoint + " after " + consecutiveFailures
+						+ " consecutive failures");
+			}
+		}
+	}
+
+}
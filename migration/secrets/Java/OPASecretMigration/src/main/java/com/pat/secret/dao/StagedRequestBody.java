@@ -0,0 +1,53 @@
+package com.pat.secret.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.pat.secret.utility.Constants;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Request body streamed from a slice of the memory-mapped staging file. The
+ * sink copies the slice into its pooled okio segments, no byte array of the
+ * whole body is allocated per request. Every attempt of a retried request
+ * writes the same slice again.
+ *
+ * @author rajeshkumar
+ *
+ */
+public class StagedRequestBody extends RequestBody {
+
+	private static final MediaType JSON_MEDIA_TYPE = MediaType.parse(Constants.JASON_CONTENT_TYPE);
+
+	private final ByteBuffer body;
+
+	/**
+	 * @param body - serialized OPAVaultRequest, read from position to limit
+	 */
+	public StagedRequestBody(ByteBuffer body) {
+		this.body = body;
+	}
+
+	@Override
+	public MediaType contentType() {
+		return JSON_MEDIA_TYPE;
+	}
+
+	@Override
+	public long contentLength() {
+		return body.remaining();
+	}
+
+	@Override
+	public void writeTo(BufferedSink sink) throws IOException {
+		ByteBuffer attempt = body.duplicate();
+		while (attempt.hasRemaining()) {
+			sink.write(attempt);
+		}
+		sink.emitCompleteSegments();
+	}
+
+}
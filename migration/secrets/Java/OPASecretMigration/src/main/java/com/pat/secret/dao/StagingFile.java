@@ -0,0 +1,261 @@
+package com.pat.secret.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.OPAVaultRequest;
+import com.pat.secret.vo.StagedSecret;
+
+/**
+ * Length prefixed staging file of encrypted secrets. Every record is the frame
+ * length, the header length, the StagedSecret header and the ready to send
+ * OPAVaultRequest body. An extract run appends records, a load run reads them
+ * from a memory-mapped file and streams each body from its mapped slice to the
+ * HTTP client. The offset loaded so far is kept next to the file.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class StagingFile {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(StagingFile.class);
+
+	// Frame length and header length
+	private static final int LENGTH_BYTES = 4;
+
+	private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+	// Bytes mapped at once by read, package visible so tests can cross windows with small files
+	long windowSize = WINDOW_SIZE;
+
+	private static RegisterProperties regProps;
+
+	private final Object writeLock = new Object();
+
+	private FileChannel channel;
+
+	private int pendingWrites;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		StagingFile.regProps = regProps;
+	}
+
+	public StagingFile() {
+
+	}
+
+	/**
+	 * @return Path - staging file of this run, one per shard
+	 */
+	public Path getPath() {
+		return Paths.get(regProps.getShard().getShardFile(regProps.getStaging().getFile().trim()));
+	}
+
+	/**
+	 * @return Path - file holding the offset loaded so far
+	 */
+	public Path getOffsetPath() {
+		Path path = getPath();
+		return path.resolveSibling(path.getFileName() + ".offset");
+	}
+
+	/**
+	 * Start an empty staging file, replacing the file and offset of an earlier
+	 * extract
+	 *
+	 * @throws IOException
+	 */
+	public void create() throws IOException {
+		Path path = getPath();
+		if (path.toAbsolutePath().getParent() != null) {
+			path.toAbsolutePath().getParent().toFile().mkdirs();
+		}
+		FileChannel stagingChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		Files.deleteIfExists(getOffsetPath());
+		synchronized (writeLock) {
+			channel = stagingChannel;
+			pendingWrites = 0;
+		}
+		LOGGER.info("create Staging encrypted secrets to " + path);
+	}
+
+	/**
+	 * Append an encrypted secret
+	 *
+	 * @param stagedSecret - header
+	 * @param opaVaultRequest - body sent to OPA by the load
+	 * @throws IOException
+	 */
+	public void append(StagedSecret stagedSecret, OPAVaultRequest opaVaultRequest) throws IOException {
+		// Serialized outside the lock, the writers only wait for the file
+		byte[] header = JsonCodec.STAGED_SECRET_WRITER.writeValueAsBytes(stagedSecret);
+		byte[] body = JsonCodec.OPA_VAULT_REQUEST_WRITER.writeValueAsBytes(opaVaultRequest);
+		ByteBuffer frame = ByteBuffer.allocate(2 * LENGTH_BYTES + header.length + body.length);
+		frame.putInt(LENGTH_BYTES + header.length + body.length).putInt(header.length).put(header).put(body);
+		frame.flip();
+		synchronized (writeLock) {
+			if (channel == null) {
+				throw new IOException("Staging file is not open");
+			}
+			while (frame.hasRemaining()) {
+				channel.write(frame);
+			}
+			if (++pendingWrites >= regProps.getStaging().getSyncBatch()) {
+				channel.force(false);
+				pendingWrites = 0;
+			}
+		}
+	}
+
+	/**
+	 * Flush and close the staging file of an extract
+	 */
+	@PreDestroy
+	public void close() {
+		synchronized (writeLock) {
+			if (channel == null) {
+				return;
+			}
+			try {
+				channel.force(false);
+				channel.close();
+			} catch (IOException e) {
+				LOGGER.error("close >>> " + e.getMessage());
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Hand every complete record from the given offset to the consumer, in file
+	 * order. The body is a read only slice of the mapped file.
+	 *
+	 * @param fromOffset - offset of the first record to read
+	 * @param consumer
+	 * @return long - offset after the last complete record
+	 * @throws IOException when a record is corrupt
+	 * @throws InterruptedException
+	 */
+	public long read(long fromOffset, StagedRecordConsumer consumer) throws IOException, InterruptedException {
+		Path path = getPath();
+		try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = readChannel.size();
+			long offset = fromOffset;
+			MappedByteBuffer window = null;
+			long windowOffset = 0;
+			while (offset + LENGTH_BYTES <= size) {
+				if (window == null || offset + LENGTH_BYTES > windowOffset + window.limit()) {
+					window = readChannel.map(FileChannel.MapMode.READ_ONLY, offset,
+							Math.min(windowSize, size - offset));
+					windowOffset = offset;
+				}
+				int position = (int) (offset - windowOffset);
+				int frameLength = window.getInt(position);
+				if (frameLength < LENGTH_BYTES) {
+					throw new IOException("Corrupt staging record at offset " + offset + " of " + path);
+				}
+				long nextOffset = offset + LENGTH_BYTES + frameLength;
+				if (nextOffset > size) {
+					// Torn by an interrupted extract
+					LOGGER.warn("read Ignoring incomplete staging record at offset " + offset + " of " + path);
+					return offset;
+				}
+				if (nextOffset > windowOffset + window.limit()) {
+					// Map again from this record, a record never spans two windows
+					window = readChannel.map(FileChannel.MapMode.READ_ONLY, offset,
+							Math.max(Math.min(windowSize, size - offset), nextOffset - offset));
+					windowOffset = offset;
+					position = 0;
+				}
+				int headerLength = window.getInt(position + LENGTH_BYTES);
+				if (headerLength < 0 || headerLength > frameLength - LENGTH_BYTES) {
+					throw new IOException("Corrupt staging record at offset " + offset + " of " + path);
+				}
+				byte[] header = new byte[headerLength];
+				ByteBuffer record = window.duplicate();
+				record.position(position + 2 * LENGTH_BYTES);
+				record.get(header);
+				record.limit(position + LENGTH_BYTES + frameLength);
+				consumer.accept(offset, nextOffset, JsonCodec.STAGED_SECRET_READER.readValue(header), record.slice());
+				offset = nextOffset;
+			}
+			return offset;
+		}
+	}
+
+	/**
+	 * @return long - offset loaded by an earlier load, 0 when none
+	 */
+	public long readOffset() {
+		Path offsetPath = getOffsetPath();
+		if (!offsetPath.toFile().isFile()) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(new String(Files.readAllBytes(offsetPath), StandardCharsets.UTF_8).trim());
+		} catch (Exception e) {
+			LOGGER.error("readOffset >>> Ignoring unreadable offset " + offsetPath + " " + e.getMessage());
+			// e.printStackTrace();
+			return 0;
+		}
+	}
+
+	/**
+	 * Save the offset loaded so far. The file is replaced atomically so a crash
+	 * never leaves a truncated offset behind.
+	 *
+	 * @param offset
+	 */
+	public void saveOffset(long offset) {
+		Path offsetPath = getOffsetPath();
+		try {
+			File parent = offsetPath.toAbsolutePath().getParent().toFile();
+			parent.mkdirs();
+			Path tempFile = File.createTempFile("staging-offset", ".tmp", parent).toPath();
+			Files.write(tempFile, Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+			Files.move(tempFile, offsetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (Exception e) {
+			LOGGER.error("saveOffset >>> Unable to save staging offset " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Takes the records read from the staging file
+	 */
+	public interface StagedRecordConsumer {
+
+		/**
+		 * @param offset - offset of the record
+		 * @param nextOffset - offset of the record after it
+		 * @param stagedSecret - header
+		 * @param body - OPAVaultRequest JSON, a slice of the mapped file
+		 * @throws InterruptedException
+		 */
+		void accept(long offset, long nextOffset, StagedSecret stagedSecret, ByteBuffer body)
+				throws InterruptedException;
+	}
+
+}
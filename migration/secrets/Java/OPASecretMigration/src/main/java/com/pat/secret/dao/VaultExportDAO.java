@@ -0,0 +1,63 @@
+package com.pat.secret.dao;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.MappedFileInputStream;
+import com.pat.secret.vo.ExportedSecret;
+
+/**
+ * Reads the secrets of a Hashicorp KV export, a JSON array or JSON lines of
+ * ExportedSecret records. The memory-mapped file is parsed as a stream, one
+ * record at a time, so memory stays flat whatever the size of the export.
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class VaultExportDAO {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(VaultExportDAO.class);
+
+	public VaultExportDAO() {
+
+	}
+
+	/**
+	 * Hand every record of the export to the consumer, in file order. The
+	 * consumer may block, parsing then pauses until it returns.
+	 *
+	 * @param exportFile
+	 * @param consumer
+	 * @return long - records read
+	 * @throws IOException when the file cannot be read or is not valid JSON
+	 */
+	public long readSecrets(Path exportFile, Consumer<ExportedSecret> consumer) throws IOException {
+		LOGGER.info("readSecrets Start reading Hashicorp export " + exportFile);
+		long records = 0;
+		try (MappedFileInputStream input = new MappedFileInputStream(exportFile);
+				// A root level array is unwrapped, JSON lines are read value after value
+				MappingIterator<ExportedSecret> iterator = JsonCodec.EXPORTED_SECRET_READER.readValues(input)) {
+			try {
+				while (iterator.hasNextValue()) {
+					consumer.accept(iterator.nextValue());
+					records++;
+				}
+			} catch (IOException e) {
+				throw new IOException("Invalid export record " + (records + 1) + " near byte " + input.getPosition()
+						+ " of " + exportFile + ": " + e.getMessage(), e);
+			}
+			LOGGER.info("readSecrets Read " + records + " records, " + input.getSize() + " bytes of " + exportFile);
+		}
+		return records;
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.pat.secret.dao;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.authentication.SimpleSessionManager;
+import org.springframework.vault.authentication.TokenAuthentication;
+import org.springframework.vault.client.VaultEndpoint;
+import org.springframework.vault.core.VaultTemplate;
+
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.Hashicorp;
+
+/**
+ * Keeps one long lived VaultTemplate per Hashicorp vault cluster backed by a
+ * pooled HTTP client, so concurrent readers reuse keep-alive connections
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class VaultTemplateProvider {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(VaultTemplateProvider.class);
+
+	private static RegisterProperties regProps;
+
+	private final Map<String, PooledVaultTemplate> templates = new ConcurrentHashMap<String, PooledVaultTemplate>(2);
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		VaultTemplateProvider.regProps = regProps;
+	}
+
+	public VaultTemplateProvider() {
+
+	}
+
+	/**
+	 * Get the shared VaultTemplate for a cluster and token
+	 *
+	 * @param host
+	 * @param port
+	 * @param scheme
+	 * @param authToken
+	 * @return VaultTemplate - thread safe template shared by all callers
+	 */
+	public VaultTemplate getVaultTemplate(String host, String port, String scheme, String authToken) {
+		final String clusterURL = scheme + "://" + host + ":" + port;
+		// The token is part of the key so different credentials never share a session
+		return templates.computeIfAbsent(clusterURL + "#" + authToken,
+				key -> newVaultTemplate(clusterURL, host, port, scheme, authToken)).vaultTemplate;
+	}
+
+	/**
+	 * Build a VaultTemplate with a pooled request factory
+	 *
+	 * @return PooledVaultTemplate
+	 */
+	private PooledVaultTemplate newVaultTemplate(String clusterURL, String host, String port, String scheme,
+			String authToken) {
+		Hashicorp hashicorp = getCluster(host, port, scheme);
+		LOGGER.info("newVaultTemplate Creating Vault template for " + clusterURL + " maxConnectionsPerRoute="
+				+ hashicorp.getMaxConnectionsPerRoute() + " maxConnectionsTotal=" + hashicorp.getMaxConnectionsTotal());
+		VaultEndpoint vaultEndpoint = new VaultEndpoint();
+		vaultEndpoint.setHost(host);
+		vaultEndpoint.setPort(Integer.parseInt(port));
+		vaultEndpoint.setScheme(scheme);
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setDefaultMaxPerRoute(Math.max(1, hashicorp.getMaxConnectionsPerRoute()));
+		connectionManager.setMaxTotal(Math.max(hashicorp.getMaxConnectionsPerRoute(), hashicorp.getMaxConnectionsTotal()));
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(hashicorp.getConnectTimeoutSeconds() * 1000)
+				.setSocketTimeout(hashicorp.getReadTimeoutSeconds() * 1000)
+				.setConnectionRequestTimeout(hashicorp.getReadTimeoutSeconds() * 1000)
+				.build();
+		CloseableHttpClient httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.build();
+
+		// Authenticate
+		VaultTemplate vaultTemplate = new VaultTemplate(vaultEndpoint,
+				new HttpComponentsClientHttpRequestFactory(httpClient),
+				new SimpleSessionManager(new TokenAuthentication(authToken)));
+		return new PooledVaultTemplate(vaultTemplate, httpClient);
+	}
+
+	/**
+	 * Pool settings of a cluster come from its register.hashicorpClusters entry,
+	 * register.hashicorp otherwise
+	 *
+	 * @return Hashicorp - configuration of the cluster
+	 */
+	Hashicorp getCluster(String host, String port, String scheme) {
+		for (Hashicorp cluster : regProps.getHashicorpClusters()) {
+			if (Objects.equals(cluster.getHost(), host) && Objects.equals(cluster.getPort(), port)
+					&& Objects.equals(cluster.getScheme(), scheme)) {
+				return cluster;
+			}
+		}
+		return regProps.getHashicorp();
+	}
+
+	/**
+	 * Close the templates and their connection pools
+	 */
+	@PreDestroy
+	public void close() {
+		for (PooledVaultTemplate template : templates.values()) {
+			try {
+				template.vaultTemplate.destroy();
+				template.httpClient.close();
+			} catch (Exception e) {
+				LOGGER.error("close >>> " + e.getMessage());
+			}
+		}
+		templates.clear();
+	}
+
+	/**
+	 * VaultTemplate together with the HTTP client it owns
+	 */
+	private static class PooledVaultTemplate {
+
+		private final VaultTemplate vaultTemplate;
+		private final CloseableHttpClient httpClient;
+
+		private PooledVaultTemplate(VaultTemplate vaultTemplate, CloseableHttpClient httpClient) {
+			this.vaultTemplate = vaultTemplate;
+			this.httpClient = httpClient;
+		}
+	}
+
+}
@@ -17,4 +17,25 @@ public interface Constants {
 	// content type form url encoded
 	public static final String FORM_URL_ENCODED_CONTENT_TYPE = "application/x-www-form-urlencoded";
 
+	// migration mode copying every secret
+	public static final String MIGRATION_MODE_FULL = "full";
+
+	// migration mode copying only new and changed secrets
+	public static final String MIGRATION_MODE_DELTA = "delta";
+
+	// secrets flow through read, encrypt and create stages with their own workers
+	public static final String MIGRATION_EXECUTION_PIPELINE = "pipeline";
+
+	// every secret is read, encrypted and created on its own virtual thread (Java 21)
+	public static final String MIGRATION_EXECUTION_VIRTUAL = "virtual";
+
+	// non-blocking Reactor flow on a small fixed set of event loop threads
+	public static final String MIGRATION_EXECUTION_REACTIVE = "reactive";
+
+	// secrets are read from the Hashicorp vault clusters
+	public static final String MIGRATION_SOURCE_VAULT = "vault";
+
+	// secrets are read from a JSON or JSONL export of the Hashicorp KV data
+	public static final String MIGRATION_SOURCE_EXPORT = "export";
+
 }
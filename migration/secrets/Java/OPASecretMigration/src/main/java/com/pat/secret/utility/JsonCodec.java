@@ -0,0 +1,71 @@
+package com.pat.secret.utility;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pat.secret.vo.ExportedSecret;
+import com.pat.secret.vo.JWKSPublicKey;
+import com.pat.secret.vo.OPAAuthTokenDetails;
+import com.pat.secret.vo.OPAVaultListResponse;
+import com.pat.secret.vo.OPAVaultRequest;
+import com.pat.secret.vo.OPAVaultResponse;
+import com.pat.secret.vo.RunReport;
+import com.pat.secret.vo.SecretVersion;
+import com.pat.secret.vo.StagedSecret;
+
+/**
+ * Shared Jackson readers and writers, one per VO type. ObjectReader and
+ * ObjectWriter are immutable and thread safe, building them once keeps the
+ * serializer lookup and the ObjectMapper allocation out of the per secret path.
+ *
+ * @author rajeshkumar
+ *
+ */
+public final class JsonCodec {
+
+	// Streams handed to the writers belong to the caller, an HTTP body sink must not be closed by Jackson
+	private static final ObjectMapper MAPPER = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+	public static final ObjectReader OPA_AUTH_TOKEN_READER = MAPPER.readerFor(OPAAuthTokenDetails.class);
+
+	public static final ObjectReader OPA_VAULT_RESPONSE_READER = MAPPER.readerFor(OPAVaultResponse.class);
+
+	public static final ObjectReader OPA_VAULT_LIST_RESPONSE_READER = MAPPER.readerFor(OPAVaultListResponse.class);
+
+	public static final ObjectWriter OPA_VAULT_REQUEST_WRITER = MAPPER.writerFor(OPAVaultRequest.class);
+
+	public static final ObjectWriter JWKS_PUBLIC_KEY_WRITER = MAPPER.writerFor(JWKSPublicKey.class);
+
+	// Hashicorp secret data, the plain text encrypted into the OPA secret
+	public static final ObjectWriter SECRET_DATA_WRITER = MAPPER.writerFor(new TypeReference<Map<String, Object>>() {
+	});
+
+	public static final ObjectReader SECRET_VERSIONS_READER = MAPPER.readerFor(new TypeReference<List<SecretVersion>>() {
+	});
+
+	public static final ObjectWriter SECRET_VERSIONS_WRITER = MAPPER.writerFor(new TypeReference<List<SecretVersion>>() {
+	});
+
+	// One record of a Hashicorp KV export
+	public static final ObjectReader EXPORTED_SECRET_READER = MAPPER.readerFor(ExportedSecret.class);
+
+	// Header of a secret in the staging file
+	public static final ObjectReader STAGED_SECRET_READER = MAPPER.readerFor(StagedSecret.class);
+
+	public static final ObjectWriter STAGED_SECRET_WRITER = MAPPER.writerFor(StagedSecret.class);
+
+	public static final ObjectReader RUN_REPORT_READER = MAPPER.readerFor(RunReport.class);
+
+	// Run reports are read by people as well, indented
+	public static final ObjectWriter RUN_REPORT_WRITER = MAPPER.writerFor(RunReport.class).withDefaultPrettyPrinter();
+
+	private JsonCodec() {
+
+	}
+
+}
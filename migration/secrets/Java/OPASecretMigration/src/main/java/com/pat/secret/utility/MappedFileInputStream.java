@@ -0,0 +1,106 @@
+package com.pat.secret.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InputStream over a memory-mapped file. The file is mapped one window at a
+ * time, so files larger than 2 GB are read as well and the heap only holds the
+ * buffer of the reader. Pages are loaded by the OS on demand and read ahead
+ * sequentially, nothing is copied through a kernel read buffer.
+ *
+ * @author rajeshkumar
+ *
+ */
+public class MappedFileInputStream extends InputStream {
+
+	private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	// Offset of the current window in the file
+	private long windowStart;
+
+	private MappedByteBuffer window;
+
+	/**
+	 * @param file
+	 * @throws IOException
+	 */
+	public MappedFileInputStream(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!hasRemaining()) {
+			return -1;
+		}
+		return window.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!hasRemaining()) {
+			return -1;
+		}
+		int count = Math.min(length, window.remaining());
+		window.get(buffer, offset, count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return window == null ? (int) Math.min(Integer.MAX_VALUE, size) : window.remaining();
+	}
+
+	/**
+	 * @return long - bytes read so far
+	 */
+	public long getPosition() {
+		return window == null ? 0 : windowStart + window.position();
+	}
+
+	/**
+	 * @return long - size of the file
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+	/**
+	 * Map the next window once the current one is read
+	 *
+	 * @return boolean - false at the end of the file
+	 * @throws IOException
+	 */
+	private boolean hasRemaining() throws IOException {
+		if (window != null && window.hasRemaining()) {
+			return true;
+		}
+		long nextStart = window == null ? 0 : windowStart + window.capacity();
+		if (nextStart >= size) {
+			return false;
+		}
+		window = channel.map(FileChannel.MapMode.READ_ONLY, nextStart, Math.min(WINDOW_SIZE, size - nextStart));
+		windowStart = nextStart;
+		return true;
+	}
+
+}
@@ -0,0 +1,363 @@
+package com.pat.secret.utility;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.pat.secret.dao.OPAApiException;
+import com.pat.secret.vo.Metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Micrometer metrics of the migration stages: latency timers with percentiles,
+ * in-flight calls, failures by HTTP status and pipeline queue depths. Meters
+ * are published over JMX and, when a dump file is configured, written in
+ * Prometheus text format at a fixed interval and once more at shutdown.
+ *
+ * Calls are tagged with system (vault, opa, jwe), operation and status. The
+ * status is the HTTP status when known, ok for a successful call without one,
+ * or the exception class name of a failed call.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class MigrationMetrics {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(MigrationMetrics.class);
+
+	public static final String SYSTEM_VAULT = "vault";
+
+	public static final String SYSTEM_OPA = "opa";
+
+	public static final String SYSTEM_JWE = "jwe";
+
+	public static final String STATUS_OK = "ok";
+
+	private static final IntSupplier NONE = () -> 0;
+
+	private static RegisterProperties regProps;
+
+	// Without any child registry every meter is a no-op
+	private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+	private final Map<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+
+	private final Map<String, Counter> failures = new ConcurrentHashMap<String, Counter>();
+
+	private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<String, AtomicInteger>();
+
+	// Pipeline and stage to the current supplier, the gauges outlive the pipelines they read
+	private final Map<String, IntSupplier> queueDepths = new ConcurrentHashMap<String, IntSupplier>();
+
+	private final Map<String, IntSupplier> busyWorkers = new ConcurrentHashMap<String, IntSupplier>();
+
+	private double[] percentiles = new double[0];
+
+	private JmxMeterRegistry jmxRegistry;
+
+	private PrometheusMeterRegistry prometheusRegistry;
+
+	private ScheduledExecutorService dumpScheduler;
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		MigrationMetrics.regProps = regProps;
+	}
+
+	public MigrationMetrics() {
+
+	}
+
+	@PostConstruct
+	private void postConstruct() {
+		Metrics metrics = regProps.getMetrics();
+		LOGGER.info("postConstruct metrics settings ---> " + metrics);
+		if (!metrics.isEnabled()) {
+			return;
+		}
+		percentiles = parsePercentiles(metrics.getPercentiles());
+		if (metrics.isJmxEnabled()) {
+			final String domain = metrics.getJmxDomain();
+			jmxRegistry = new JmxMeterRegistry(new JmxConfig() {
+				@Override
+				public String get(String key) {
+					return null;
+				}
+
+				@Override
+				public String domain() {
+					return domain;
+				}
+			}, Clock.SYSTEM);
+			registry.add(jmxRegistry);
+		}
+		if (metrics.getDumpFile() != null && !metrics.getDumpFile().trim().isEmpty()) {
+			prometheusRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+			registry.add(prometheusRegistry);
+			long intervalSeconds = Math.max(1, metrics.getDumpIntervalSeconds());
+			dumpScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "metrics-dump");
+				thread.setDaemon(true);
+				return thread;
+			});
+			dumpScheduler.scheduleAtFixedRate(this::dump, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Write the last dump and unregister the JMX beans
+	 */
+	@PreDestroy
+	private void preDestroy() {
+		if (dumpScheduler != null) {
+			dumpScheduler.shutdownNow();
+			dump();
+		}
+		registry.close();
+	}
+
+	/**
+	 * @return MeterRegistry - registry every migration meter is registered in
+	 */
+	public MeterRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * Mark the start of a call
+	 *
+	 * @param system
+	 * @param operation
+	 * @return long - start time to hand to stop
+	 */
+	public long start(String system, String operation) {
+		inFlight(system, operation).incrementAndGet();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Record the end of a call started with start
+	 *
+	 * @param system
+	 * @param operation
+	 * @param startNanos
+	 * @param status - HTTP status, STATUS_OK or exception class name
+	 */
+	public void stop(String system, String operation, long startNanos, String status) {
+		long elapsedNanos = System.nanoTime() - startNanos;
+		inFlight(system, operation).decrementAndGet();
+		timer(system, operation, status).record(elapsedNanos, TimeUnit.NANOSECONDS);
+		if (!STATUS_OK.equals(status) && !status.startsWith("2")) {
+			failure(system, operation, status).increment();
+		}
+	}
+
+	/**
+	 * Time a call
+	 *
+	 * @param system
+	 * @param operation
+	 * @param call
+	 * @return T - result of the call
+	 * @throws Exception - failure of the call
+	 */
+	public <T> T record(String system, String operation, Callable<T> call) throws Exception {
+		long startNanos = start(system, operation);
+		String status = STATUS_OK;
+		try {
+			return call.call();
+		} catch (Exception e) {
+			status = statusOf(e);
+			throw e;
+		} finally {
+			stop(system, operation, startNanos, status);
+		}
+	}
+
+	/**
+	 * Time a non-blocking call, from subscription to its completion, failure or
+	 * cancellation
+	 *
+	 * @param system
+	 * @param operation
+	 * @param call - supplies the Mono of the call, subscribed once per subscription
+	 * @return Mono - result of the call
+	 */
+	public <T> Mono<T> recordAsync(String system, String operation, Supplier<Mono<T>> call) {
+		return Mono.defer(() -> {
+			long startNanos = start(system, operation);
+			String[] status = { STATUS_OK };
+			return call.get().doOnError(e -> status[0] = statusOf(e)).doFinally(signal -> stop(system, operation,
+					startNanos, signal == SignalType.CANCEL ? "cancelled" : status[0]));
+		});
+	}
+
+	/**
+	 * Publish the queue depth and busy workers of a pipeline stage
+	 *
+	 * @param pipeline
+	 * @param stage
+	 * @param queueDepth - items waiting for the stage
+	 * @param busy - workers processing an item
+	 */
+	public void trackStage(String pipeline, String stage, IntSupplier queueDepth, IntSupplier busy) {
+		final String key = pipeline + "|" + stage;
+		if (queueDepths.put(key, queueDepth) == null) {
+			Gauge.builder("migration.pipeline.queue", queueDepths, depths -> depths.getOrDefault(key, NONE).getAsInt())
+					.description("Items waiting for a pipeline stage").tag("pipeline", pipeline).tag("stage", stage)
+					.register(registry);
+		}
+		if (busyWorkers.put(key, busy) == null) {
+			Gauge.builder("migration.pipeline.busy", busyWorkers, workers -> workers.getOrDefault(key, NONE).getAsInt())
+					.description("Pipeline stage workers processing an item").tag("pipeline", pipeline)
+					.tag("stage", stage).register(registry);
+		}
+	}
+
+	/**
+	 * Stop reading a finished pipeline stage, its gauges drop to 0
+	 *
+	 * @param pipeline
+	 * @param stage
+	 */
+	public void untrackStage(String pipeline, String stage) {
+		String key = pipeline + "|" + stage;
+		queueDepths.replace(key, NONE);
+		busyWorkers.replace(key, NONE);
+	}
+
+	/**
+	 * @param e
+	 * @return String - HTTP status of a failed call, else the exception class name
+	 */
+	public static String statusOf(Throwable e) {
+		// Spring Vault wraps the HTTP error of the RestTemplate in a VaultException
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof OPAApiException) {
+				return String.valueOf(((OPAApiException) cause).getStatusCode());
+			}
+			if (cause instanceof HttpStatusCodeException) {
+				return String.valueOf(((HttpStatusCodeException) cause).getRawStatusCode());
+			}
+			if (cause instanceof WebClientResponseException) {
+				return String.valueOf(((WebClientResponseException) cause).getRawStatusCode());
+			}
+			if (cause.getCause() == cause) {
+				break;
+			}
+		}
+		return e.getClass().getSimpleName();
+	}
+
+	/**
+	 * Write the Prometheus text dump. The file is replaced atomically so a
+	 * scraper never reads a partial dump.
+	 */
+	private void dump() {
+		if (prometheusRegistry == null) {
+			return;
+		}
+		try {
+			Path dumpFile = Paths.get(regProps.getShard().getShardFile(regProps.getMetrics().getDumpFile().trim()));
+			File parent = dumpFile.toAbsolutePath().getParent().toFile();
+			parent.mkdirs();
+			Path tempFile = File.createTempFile("metrics", ".tmp", parent).toPath();
+			Files.write(tempFile, prometheusRegistry.scrape().getBytes(StandardCharsets.UTF_8));
+			Files.move(tempFile, dumpFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.debug("dump Wrote metrics to " + dumpFile);
+		} catch (Exception e) {
+			LOGGER.error("dump >>> Unable to write metrics " + e.getMessage());
+			// e.printStackTrace();
+		}
+	}
+
+	private AtomicInteger inFlight(String system, String operation) {
+		String key = system + "|" + operation;
+		AtomicInteger count = inFlight.get(key);
+		if (count == null) {
+			AtomicInteger created = new AtomicInteger();
+			count = inFlight.putIfAbsent(key, created);
+			if (count == null) {
+				count = created;
+				Gauge.builder("migration.calls.inflight", count, AtomicInteger::get)
+						.description("Vault, OPA and JWE calls in progress").tag("system", system)
+						.tag("operation", operation).register(registry);
+			}
+		}
+		return count;
+	}
+
+	private Timer timer(String system, String operation, String status) {
+		String key = system + "|" + operation + "|" + status;
+		Timer timer = timers.get(key);
+		if (timer == null) {
+			timer = timers.computeIfAbsent(key,
+					k -> Timer.builder("migration.calls").description("Latency of Vault, OPA and JWE calls")
+							.tag("system", system).tag("operation", operation).tag("status", status)
+							.publishPercentiles(percentiles).register(registry));
+		}
+		return timer;
+	}
+
+	private Counter failure(String system, String operation, String status) {
+		String key = system + "|" + operation + "|" + status;
+		Counter counter = failures.get(key);
+		if (counter == null) {
+			counter = failures.computeIfAbsent(key,
+					k -> Counter.builder("migration.calls.failures").description("Failed Vault, OPA and JWE calls")
+							.tag("system", system).tag("operation", operation).tag("status", status)
+							.register(registry));
+		}
+		return counter;
+	}
+
+	private static double[] parsePercentiles(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return new double[0];
+		}
+		String[] parts = value.split(",");
+		double[] parsed = new double[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			parsed[i] = Double.parseDouble(parts[i].trim());
+		}
+		return parsed;
+	}
+
+}
@@ -1,5 +1,8 @@
 package com.pat.secret.utility;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -83,6 +86,18 @@ public class OPASecretUtility {
 		return endpointURL;
 	}
 
+	/**
+	 * Update Secret API Endpoint URL
+	 * 
+	 * @param secretId
+	 * @return
+	 */
+	public String getUpdateSecretAPIEndpoint(String secretId) throws Exception {
+		String endpointURL = getCreateSecretAPIEndpoint() + "/" + secretId;
+		LOGGER.debug("getUpdateSecretAPIEndpoint endpointURL ---> " + endpointURL);
+		return endpointURL;
+	}
+
 	/**
 	 * Create Folder API Endpoint URL
 	 * 
@@ -96,6 +111,18 @@ public class OPASecretUtility {
 		return endpointURL;
 	}
 
+	/**
+	 * Secret Folder Items API Endpoint URL
+	 * 
+	 * @param folderId
+	 * @return
+	 */
+	public String getFolderItemsAPIEndpoint(String folderId) throws Exception {
+		String endpointURL = getCreateFolderAPIEndpoint() + "/" + folderId + "/items";
+		LOGGER.debug("getFolderItemsAPIEndpoint endpointURL ---> " + endpointURL);
+		return endpointURL;
+	}
+
 	/**
 	 * Get API End Points URL
 	 * 
@@ -125,4 +152,24 @@ public class OPASecretUtility {
 		return hashicorp;
 	}
 
+	/**
+	 * Getting every Hashicorp cluster to migrate, register.hashicorp followed by
+	 * register.hashicorpClusters
+	 * 
+	 * @return List of clusters with at least one secret engine
+	 */
+	public List<Hashicorp> getHashicorpClusters() throws Exception {
+		List<Hashicorp> clusters = new ArrayList<Hashicorp>(1 + regProps.getHashicorpClusters().size());
+		clusters.add(getHashicorpEnvironmentDetails());
+		clusters.addAll(regProps.getHashicorpClusters());
+		List<Hashicorp> configuredClusters = new ArrayList<Hashicorp>(clusters.size());
+		for (Hashicorp hashicorp : clusters) {
+			if (hashicorp.getSecretengine() != null && !hashicorp.getSecretengine().trim().isEmpty()) {
+				configuredClusters.add(hashicorp);
+			}
+		}
+		LOGGER.debug("Hashicorp clusters >>> " + configuredClusters.size());
+		return configuredClusters;
+	}
+
 }
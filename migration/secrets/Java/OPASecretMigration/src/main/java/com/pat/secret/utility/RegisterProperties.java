@@ -1,10 +1,19 @@
 package com.pat.secret.utility;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import com.pat.secret.vo.DryRun;
 import com.pat.secret.vo.Hashicorp;
+import com.pat.secret.vo.Metrics;
+import com.pat.secret.vo.Migration;
 import com.pat.secret.vo.Oktapam;
+import com.pat.secret.vo.Resilience;
+import com.pat.secret.vo.Shard;
+import com.pat.secret.vo.Staging;
 
 /**
  * Load property start with register and load into respective Objects
@@ -18,6 +27,15 @@ public class RegisterProperties {
 
 	private Oktapam oktapam = new Oktapam();
 	private Hashicorp hashicorp = new Hashicorp();
+	private List<Hashicorp> hashicorpClusters = new ArrayList<Hashicorp>();
+	private Migration migration = new Migration();
+	private Resilience resilience = new Resilience();
+	private Metrics metrics = new Metrics();
+	private DryRun dryRun = new DryRun();
+
+	private Shard shard = new Shard();
+
+	private Staging staging = new Staging();
 
 	public Oktapam getOktapam() {
 		return oktapam;
@@ -35,9 +53,67 @@ public class RegisterProperties {
 		this.hashicorp = hashicorp;
 	}
 
+	public List<Hashicorp> getHashicorpClusters() {
+		return hashicorpClusters;
+	}
+
+	public void setHashicorpClusters(List<Hashicorp> hashicorpClusters) {
+		this.hashicorpClusters = hashicorpClusters;
+	}
+
+	public Migration getMigration() {
+		return migration;
+	}
+
+	public void setMigration(Migration migration) {
+		this.migration = migration;
+	}
+
+	public Resilience getResilience() {
+		return resilience;
+	}
+
+	public void setResilience(Resilience resilience) {
+		this.resilience = resilience;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public DryRun getDryRun() {
+		return dryRun;
+	}
+
+	public void setDryRun(DryRun dryRun) {
+		this.dryRun = dryRun;
+	}
+
+	public Shard getShard() {
+		return shard;
+	}
+
+	public void setShard(Shard shard) {
+		this.shard = shard;
+	}
+
+	public Staging getStaging() {
+		return staging;
+	}
+
+	public void setStaging(Staging staging) {
+		this.staging = staging;
+	}
+
 	@Override
 	public String toString() {
-		return "RegisterProperties [oktapam=" + oktapam + ", hashicorp=" + hashicorp + "]";
+		return "RegisterProperties [oktapam=" + oktapam + ", hashicorp=" + hashicorp + ", hashicorpClusters="
+				+ hashicorpClusters + ", migration=" + migration + ", resilience=" + resilience + ", metrics=" + metrics
+				+ ", dryRun=" + dryRun + ", shard=" + shard + ", staging=" + staging + "]";
 	}
 
 }
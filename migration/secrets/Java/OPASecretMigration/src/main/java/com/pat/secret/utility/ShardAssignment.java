@@ -0,0 +1,164 @@
+package com.pat.secret.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.pat.secret.vo.Shard;
+
+/**
+ * Assigns every secret path to exactly one shard by consistent hashing. Each
+ * shard owns virtualNodes points of a hash ring and a path belongs to the shard
+ * of the first point at or after its hash, so every process of a sharded run
+ * computes the same owner without talking to the others, and a change of the
+ * shard count only moves about 1/count of the paths.
+ *
+ * @author rajeshkumar
+ *
+ */
+
+@Component
+public class ShardAssignment {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardAssignment.class);
+
+	public static final String SHARD_INDEX_ARGUMENT = "--shard-index=";
+
+	public static final String SHARD_COUNT_ARGUMENT = "--shard-count=";
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private static RegisterProperties regProps;
+
+	// Sorted ring points and the shard owning each point
+	private long[] ring = new long[0];
+
+	private int[] owners = new int[0];
+
+	@Autowired
+	private void setRegister(RegisterProperties regProps) {
+		ShardAssignment.regProps = regProps;
+	}
+
+	public ShardAssignment() {
+
+	}
+
+	@PostConstruct
+	private void postConstruct() {
+		Shard shard = regProps.getShard();
+		if (shard.getCount() < 1 || shard.getIndex() < 0 || shard.getIndex() >= shard.getCount()) {
+			throw new IllegalArgumentException(
+					"Shard index must be between 0 and shard count - 1, got " + shard.getIndex() + " of " + shard.getCount());
+		}
+		if (!shard.isSharded()) {
+			return;
+		}
+		buildRing(shard.getCount(), Math.max(1, shard.getVirtualNodes()));
+		LOGGER.info("postConstruct Migrating shard " + shard.getIndex() + " of " + shard.getCount() + " shards");
+	}
+
+	/**
+	 * @param shardCount
+	 * @param virtualNodes - ring points per shard
+	 */
+	private void buildRing(int shardCount, int virtualNodes) {
+		long[][] points = new long[shardCount * virtualNodes][];
+		for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+			for (int node = 0; node < virtualNodes; node++) {
+				points[shardIndex * virtualNodes + node] = new long[] { hash("shard-" + shardIndex + "#" + node),
+						shardIndex };
+			}
+		}
+		Arrays.sort(points, (left, right) -> Long.compare(left[0], right[0]));
+		ring = new long[points.length];
+		owners = new int[points.length];
+		for (int i = 0; i < points.length; i++) {
+			ring[i] = points[i][0];
+			owners[i] = (int) points[i][1];
+		}
+	}
+
+	/**
+	 * @param engineKey - secret engine, prefixed by its cluster name
+	 * @param path - secret path below the engine
+	 * @return boolean - true when this process migrates the secret, always true when not sharded
+	 */
+	public boolean isOwned(String engineKey, String path) {
+		Shard shard = regProps.getShard();
+		return !shard.isSharded() || shardOf(engineKey + "/" + path) == shard.getIndex();
+	}
+
+	/**
+	 * @param key
+	 * @return int - index of the shard owning the key
+	 */
+	public int shardOf(String key) {
+		if (ring.length == 0) {
+			return 0;
+		}
+		int point = Arrays.binarySearch(ring, hash(key));
+		if (point < 0) {
+			point = -point - 1;
+		}
+		// Past the last point wraps around to the first one
+		return owners[point == ring.length ? 0 : point];
+	}
+
+	/**
+	 * FNV-1a over the UTF-8 bytes followed by the MurmurHash3 finalizer, which
+	 * spreads short keys differing in one character over the whole ring
+	 *
+	 * @param key
+	 * @return long - 64 bit hash
+	 */
+	static long hash(String key) {
+		long hash = FNV_OFFSET_BASIS;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= FNV_PRIME;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Map the --shard-index=i and --shard-count=n options to the
+	 * register.shard properties
+	 *
+	 * @param args - command line arguments
+	 * @return String[] - arguments with the shard options rewritten
+	 */
+	public static String[] withShardProperties(String... args) {
+		if (args == null) {
+			return args;
+		}
+		List<String> mapped = new ArrayList<String>(args.length);
+		for (String arg : args) {
+			if (arg.startsWith(SHARD_INDEX_ARGUMENT)) {
+				mapped.add("--register.shard.index=" + arg.substring(SHARD_INDEX_ARGUMENT.length()));
+			} else if (arg.startsWith(SHARD_COUNT_ARGUMENT)) {
+				mapped.add("--register.shard.count=" + arg.substring(SHARD_COUNT_ARGUMENT.length()));
+			} else {
+				mapped.add(arg);
+			}
+		}
+		return mapped.toArray(new String[0]);
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.pat.secret.utility;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to Java 21 virtual threads from code that still compiles for Java 8.
+ * The Java 21 API is looked up once by reflection, on an older runtime
+ * isAvailable returns false and callers fall back to platform threads.
+ *
+ * @author rajeshkumar
+ *
+ */
+public final class VirtualThreads {
+
+	// Logger
+	private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+	private static final Method OF_VIRTUAL;
+
+	private static final Method NAME;
+
+	private static final Method FACTORY;
+
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		Method newThreadPerTaskExecutor = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			name = builder.getMethod("name", String.class, long.class);
+			factory = builder.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (Exception e) {
+			LOGGER.debug("VirtualThreads not supported by Java " + System.getProperty("java.version"));
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	private VirtualThreads() {
+
+	}
+
+	/**
+	 * @return boolean - true when the runtime supports virtual threads (Java 21+)
+	 */
+	public static boolean isAvailable() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Executor starting a new virtual thread for every task
+	 *
+	 * @param namePrefix - threads are named namePrefix0, namePrefix1, ...
+	 * @return ExecutorService
+	 * @throws UnsupportedOperationException - when the runtime has no virtual threads
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+		if (!isAvailable()) {
+			throw new UnsupportedOperationException(
+					"Virtual threads need Java 21, running on " + System.getProperty("java.version"));
+		}
+		try {
+			Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+			ThreadFactory threadFactory = (ThreadFactory) FACTORY.invoke(builder);
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create a virtual thread executor", e);
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.pat.secret.vo;
+
+/**
+ * Object to load dry run (inventory and capacity planning) properties from property file
+ * @author rajeshkumar
+ *
+ */
+
+public class DryRun {
+
+	private boolean enabled = false;
+	private int engineParallelism = 4;
+	private int concurrency = 0;
+	private double opaRateLimitPerSecond = 0;
+	private double sizeSampleRate = 0;
+	private int encryptSamples = 20;
+	private int opaLatencySamples = 5;
+	private String reportFile = "";
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getEngineParallelism() {
+		return engineParallelism;
+	}
+
+	public void setEngineParallelism(int engineParallelism) {
+		this.engineParallelism = engineParallelism;
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	public double getOpaRateLimitPerSecond() {
+		return opaRateLimitPerSecond;
+	}
+
+	public void setOpaRateLimitPerSecond(double opaRateLimitPerSecond) {
+		this.opaRateLimitPerSecond = opaRateLimitPerSecond;
+	}
+
+	public double getSizeSampleRate() {
+		return sizeSampleRate;
+	}
+
+	public void setSizeSampleRate(double sizeSampleRate) {
+		this.sizeSampleRate = sizeSampleRate;
+	}
+
+	public int getEncryptSamples() {
+		return encryptSamples;
+	}
+
+	public void setEncryptSamples(int encryptSamples) {
+		this.encryptSamples = encryptSamples;
+	}
+
+	public int getOpaLatencySamples() {
+		return opaLatencySamples;
+	}
+
+	public void setOpaLatencySamples(int opaLatencySamples) {
+		this.opaLatencySamples = opaLatencySamples;
+	}
+
+	public String getReportFile() {
+		return reportFile;
+	}
+
+	public void setReportFile(String reportFile) {
+		this.reportFile = reportFile;
+	}
+
+	@Override
+	public String toString() {
+		return "DryRun [enabled=" + enabled + ", engineParallelism=" + engineParallelism + ", concurrency="
+				+ concurrency + ", opaRateLimitPerSecond=" + opaRateLimitPerSecond + ", sizeSampleRate="
+				+ sizeSampleRate + ", encryptSamples=" + encryptSamples + ", opaLatencySamples=" + opaLatencySamples
+				+ ", reportFile=" + reportFile + "]";
+	}
+
+}
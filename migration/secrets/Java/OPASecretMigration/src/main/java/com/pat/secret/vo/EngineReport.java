@@ -0,0 +1,115 @@
+package com.pat.secret.vo;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Object with the outcome of one secret engine in the run report
+ * @author rajeshkumar
+ *
+ */
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EngineReport {
+
+	@JsonProperty("engine")
+	private String engine;
+
+	@JsonProperty("discovered")
+	private long discovered;
+
+	@JsonProperty("migrated")
+	private long migrated;
+
+	@JsonProperty("skipped")
+	private long skipped;
+
+	@JsonProperty("failed")
+	private long failed;
+
+	@JsonProperty("failed_folders")
+	private long failedFolders;
+
+	@JsonProperty("elapsed_seconds")
+	private double elapsedSeconds;
+
+	@JsonProperty("engine")
+	public String getEngine() {
+		return engine;
+	}
+
+	@JsonProperty("engine")
+	public void setEngine(String engine) {
+		this.engine = engine;
+	}
+
+	@JsonProperty("discovered")
+	public long getDiscovered() {
+		return discovered;
+	}
+
+	@JsonProperty("discovered")
+	public void setDiscovered(long discovered) {
+		this.discovered = discovered;
+	}
+
+	@JsonProperty("migrated")
+	public long getMigrated() {
+		return migrated;
+	}
+
+	@JsonProperty("migrated")
+	public void setMigrated(long migrated) {
+		this.migrated = migrated;
+	}
+
+	@JsonProperty("skipped")
+	public long getSkipped() {
+		return skipped;
+	}
+
+	@JsonProperty("skipped")
+	public void setSkipped(long skipped) {
+		this.skipped = skipped;
+	}
+
+	@JsonProperty("failed")
+	public long getFailed() {
+		return failed;
+	}
+
+	@JsonProperty("failed")
+	public void setFailed(long failed) {
+		this.failed = failed;
+	}
+
+	@JsonProperty("failed_folders")
+	public long getFailedFolders() {
+		return failedFolders;
+	}
+
+	@JsonProperty("failed_folders")
+	public void setFailedFolders(long failedFolders) {
+		this.failedFolders = failedFolders;
+	}
+
+	@JsonProperty("elapsed_seconds")
+	public double getElapsedSeconds() {
+		return elapsedSeconds;
+	}
+
+	@JsonProperty("elapsed_seconds")
+	public void setElapsedSeconds(double elapsedSeconds) {
+		this.elapsedSeconds = elapsedSeconds;
+	}
+
+	@Override
+	public String toString() {
+		return "EngineReport [engine=" + engine + ", discovered=" + discovered + ", migrated=" + migrated
+				+ ", skipped=" + skipped + ", failed=" + failed + ", failedFolders=" + failedFolders
+				+ ", elapsedSeconds=" + elapsedSeconds + "]";
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.pat.secret.vo;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Object with one secret of a Hashicorp KV export. data holds the data object
+ * of the KV v2 read response, the secret under data and its version under
+ * metadata, as printed by "vault kv get -format=json".
+ * @author rajeshkumar
+ *
+ */
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ExportedSecret {
+
+	@JsonProperty("engine")
+	private String engine;
+
+	@JsonProperty("path")
+	private String path;
+
+	@JsonProperty("data")
+	private Map<String, Object> data;
+
+	@JsonProperty("engine")
+	public String getEngine() {
+		return engine;
+	}
+
+	@JsonProperty("engine")
+	public void setEngine(String engine) {
+		this.engine = engine;
+	}
+
+	@JsonProperty("path")
+	public String getPath() {
+		return path;
+	}
+
+	@JsonProperty("path")
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	@JsonProperty("data")
+	public Map<String, Object> getData() {
+		return data;
+	}
+
+	@JsonProperty("data")
+	public void setData(Map<String, Object> data) {
+		this.data = data;
+	}
+
+	@Override
+	public String toString() {
+		// Never print the secret data
+		return "ExportedSecret [engine=" + engine + ", path=" + path + "]";
+	}
+
+}
@@ -11,12 +11,38 @@ import java.util.List;
 
 public class Hashicorp {
 
+	private String name = "";
 	private String host;
 	private String port;
 	private String scheme;
 	private String token;
 	private String secretengine;
 	private String metadata;
+	private int maxConnectionsPerRoute = 20;
+	private int maxConnectionsTotal = 50;
+	private int connectTimeoutSeconds = 10;
+	private int readTimeoutSeconds = 30;
+	private int readWorkers = 0;
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Key of a secret engine in the journal, the delta state and the OPA folder
+	 * name. Engines of a named cluster are prefixed with the cluster name so
+	 * engines of the same name in two clusters do not collide.
+	 *
+	 * @param secretEngine
+	 * @return String - engine key
+	 */
+	public String getEngineKey(String secretEngine) {
+		return name == null || name.trim().isEmpty() ? secretEngine : name.trim() + "-" + secretEngine;
+	}
 
 	public String getHost() {
 		return host;
@@ -75,10 +101,53 @@ public class Hashicorp {
 		this.metadata = metadata;
 	}
 
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public int getMaxConnectionsTotal() {
+		return maxConnectionsTotal;
+	}
+
+	public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+		this.maxConnectionsTotal = maxConnectionsTotal;
+	}
+
+	public int getConnectTimeoutSeconds() {
+		return connectTimeoutSeconds;
+	}
+
+	public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+		this.connectTimeoutSeconds = connectTimeoutSeconds;
+	}
+
+	public int getReadTimeoutSeconds() {
+		return readTimeoutSeconds;
+	}
+
+	public void setReadTimeoutSeconds(int readTimeoutSeconds) {
+		this.readTimeoutSeconds = readTimeoutSeconds;
+	}
+
+	public int getReadWorkers() {
+		return readWorkers;
+	}
+
+	public void setReadWorkers(int readWorkers) {
+		this.readWorkers = readWorkers;
+	}
+
 	@Override
 	public String toString() {
-		return "Hashicorp [host=" + host + ", port=" + port + ", scheme=" + scheme + ", token=" + token
-				+ ", secretengine=" + secretengine + ", metadata=" + metadata + "]";
+		return "Hashicorp [name=" + name + ", host=" + host + ", port=" + port + ", scheme=" + scheme + ", token=" + token
+				+ ", secretengine=" + secretengine + ", metadata=" + metadata + ", maxConnectionsPerRoute="
+				+ maxConnectionsPerRoute + ", maxConnectionsTotal=" + maxConnectionsTotal + ", connectTimeoutSeconds="
+				+ connectTimeoutSeconds + ", readTimeoutSeconds=" + readTimeoutSeconds + ", readWorkers=" + readWorkers
+				+ "]";
 	}
 
 }
@@ -0,0 +1,73 @@
+package com.pat.secret.vo;
+
+/**
+ * Object to load metrics export properties from property file
+ * @author rajeshkumar
+ *
+ */
+
+public class Metrics {
+
+	private boolean enabled = true;
+	private boolean jmxEnabled = true;
+	private String jmxDomain = "opasecretmigration";
+	private String dumpFile = "";
+	private int dumpIntervalSeconds = 30;
+	private String percentiles = "0.5,0.95,0.99";
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+
+	public String getJmxDomain() {
+		return jmxDomain;
+	}
+
+	public void setJmxDomain(String jmxDomain) {
+		this.jmxDomain = jmxDomain;
+	}
+
+	public String getDumpFile() {
+		return dumpFile;
+	}
+
+	public void setDumpFile(String dumpFile) {
+		this.dumpFile = dumpFile;
+	}
+
+	public int getDumpIntervalSeconds() {
+		return dumpIntervalSeconds;
+	}
+
+	public void setDumpIntervalSeconds(int dumpIntervalSeconds) {
+		this.dumpIntervalSeconds = dumpIntervalSeconds;
+	}
+
+	public String getPercentiles() {
+		return percentiles;
+	}
+
+	public void setPercentiles(String percentiles) {
+		this.percentiles = percentiles;
+	}
+
+	@Override
+	public String toString() {
+		return "Metrics [enabled=" + enabled + ", jmxEnabled=" + jmxEnabled + ", jmxDomain=" + jmxDomain
+				+ ", dumpFile=" + dumpFile + ", dumpIntervalSeconds=" + dumpIntervalSeconds + ", percentiles="
+				+ percentiles + "]";
+	}
+
+}
@@ -0,0 +1,253 @@
+package com.pat.secret.vo;
+
+import com.pat.secret.utility.Constants;
+
+/**
+ * Object to load migration engine tuning properties from property file
+ * @author rajeshkumar
+ *
+ */
+
+public class Migration {
+
+	private String mode = Constants.MIGRATION_MODE_FULL;
+	private String deltaStateFile = "OPASecretMigration.state.json";
+	private String execution = Constants.MIGRATION_EXECUTION_PIPELINE;
+	private String source = Constants.MIGRATION_SOURCE_VAULT;
+	private String exportFile = "";
+	private int maxSecretsInFlight = 1000;
+	private int opaConcurrency = 64;
+	private int eventLoopThreads = 0;
+	private int readWorkers = 4;
+	private int encryptWorkers = 0;
+	private int createWorkers = 4;
+	private int queueCapacity = 100;
+	private int discoveryQueueCapacity = 1000;
+	private int crawlConcurrency = 4;
+	private int crawlMaxDepth = 10;
+	private String journalFile = "OPASecretMigration.journal";
+	private int journalSyncBatch = 100;
+	private long journalSyncIntervalMillis = 1000;
+	private int progressIntervalSeconds = 30;
+	private int progressWindowSeconds = 60;
+	private int engineParallelism = 4;
+	private int maxReadsInFlight = 0;
+	private int maxCreatesInFlight = 0;
+
+	public String getMode() {
+		return mode;
+	}
+
+	public void setMode(String mode) {
+		this.mode = mode;
+	}
+
+	public boolean isDeltaMode() {
+		return Constants.MIGRATION_MODE_DELTA.equalsIgnoreCase(mode == null ? "" : mode.trim());
+	}
+
+	public String getExecution() {
+		return execution;
+	}
+
+	public void setExecution(String execution) {
+		this.execution = execution;
+	}
+
+	public boolean isVirtualThreadExecution() {
+		return Constants.MIGRATION_EXECUTION_VIRTUAL.equalsIgnoreCase(execution == null ? "" : execution.trim());
+	}
+
+	public boolean isReactiveExecution() {
+		return Constants.MIGRATION_EXECUTION_REACTIVE.equalsIgnoreCase(execution == null ? "" : execution.trim());
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public void setSource(String source) {
+		this.source = source;
+	}
+
+	public boolean isExportSource() {
+		return Constants.MIGRATION_SOURCE_EXPORT.equalsIgnoreCase(source == null ? "" : source.trim());
+	}
+
+	public String getExportFile() {
+		return exportFile;
+	}
+
+	public void setExportFile(String exportFile) {
+		this.exportFile = exportFile;
+	}
+
+	public int getMaxSecretsInFlight() {
+		return maxSecretsInFlight;
+	}
+
+	public void setMaxSecretsInFlight(int maxSecretsInFlight) {
+		this.maxSecretsInFlight = maxSecretsInFlight;
+	}
+
+	public int getOpaConcurrency() {
+		return opaConcurrency;
+	}
+
+	public void setOpaConcurrency(int opaConcurrency) {
+		this.opaConcurrency = opaConcurrency;
+	}
+
+	public int getEventLoopThreads() {
+		return eventLoopThreads;
+	}
+
+	public void setEventLoopThreads(int eventLoopThreads) {
+		this.eventLoopThreads = eventLoopThreads;
+	}
+
+	public String getDeltaStateFile() {
+		return deltaStateFile;
+	}
+
+	public void setDeltaStateFile(String deltaStateFile) {
+		this.deltaStateFile = deltaStateFile;
+	}
+
+	public int getReadWorkers() {
+		return readWorkers;
+	}
+
+	public void setReadWorkers(int readWorkers) {
+		this.readWorkers = readWorkers;
+	}
+
+	public int getEncryptWorkers() {
+		return encryptWorkers;
+	}
+
+	public void setEncryptWorkers(int encryptWorkers) {
+		this.encryptWorkers = encryptWorkers;
+	}
+
+	public int getCreateWorkers() {
+		return createWorkers;
+	}
+
+	public void setCreateWorkers(int createWorkers) {
+		this.createWorkers = createWorkers;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public int getDiscoveryQueueCapacity() {
+		return discoveryQueueCapacity;
+	}
+
+	public void setDiscoveryQueueCapacity(int discoveryQueueCapacity) {
+		this.discoveryQueueCapacity = discoveryQueueCapacity;
+	}
+
+	public int getCrawlConcurrency() {
+		return crawlConcurrency;
+	}
+
+	public void setCrawlConcurrency(int crawlConcurrency) {
+		this.crawlConcurrency = crawlConcurrency;
+	}
+
+	public int getCrawlMaxDepth() {
+		return crawlMaxDepth;
+	}
+
+	public void setCrawlMaxDepth(int crawlMaxDepth) {
+		this.crawlMaxDepth = crawlMaxDepth;
+	}
+
+	public String getJournalFile() {
+		return journalFile;
+	}
+
+	public void setJournalFile(String journalFile) {
+		this.journalFile = journalFile;
+	}
+
+	public int getJournalSyncBatch() {
+		return journalSyncBatch;
+	}
+
+	public void setJournalSyncBatch(int journalSyncBatch) {
+		this.journalSyncBatch = journalSyncBatch;
+	}
+
+	public long getJournalSyncIntervalMillis() {
+		return journalSyncIntervalMillis;
+	}
+
+	public void setJournalSyncIntervalMillis(long journalSyncIntervalMillis) {
+		this.journalSyncIntervalMillis = journalSyncIntervalMillis;
+	}
+
+	public int getProgressIntervalSeconds() {
+		return progressIntervalSeconds;
+	}
+
+	public void setProgressIntervalSeconds(int progressIntervalSeconds) {
+		this.progressIntervalSeconds = progressIntervalSeconds;
+	}
+
+	public int getProgressWindowSeconds() {
+		return progressWindowSeconds;
+	}
+
+	public void setProgressWindowSeconds(int progressWindowSeconds) {
+		this.progressWindowSeconds = progressWindowSeconds;
+	}
+
+	public int getEngineParallelism() {
+		return engineParallelism;
+	}
+
+	public void setEngineParallelism(int engineParallelism) {
+		this.engineParallelism = engineParallelism;
+	}
+
+	public int getMaxReadsInFlight() {
+		return maxReadsInFlight;
+	}
+
+	public void setMaxReadsInFlight(int maxReadsInFlight) {
+		this.maxReadsInFlight = maxReadsInFlight;
+	}
+
+	public int getMaxCreatesInFlight() {
+		return maxCreatesInFlight;
+	}
+
+	public void setMaxCreatesInFlight(int maxCreatesInFlight) {
+		this.maxCreatesInFlight = maxCreatesInFlight;
+	}
+
+	@Override
+	public String toString() {
+		return "Migration [mode=" + mode + ", deltaStateFile=" + deltaStateFile + ", execution=" + execution
+				+ ", source=" + source + ", exportFile=" + exportFile + ", maxSecretsInFlight=" + maxSecretsInFlight
+				+ ", opaConcurrency=" + opaConcurrency
+				+ ", eventLoopThreads=" + eventLoopThreads + ", readWorkers=" + readWorkers + ", encryptWorkers="
+				+ encryptWorkers + ", createWorkers="
+				+ createWorkers + ", queueCapacity=" + queueCapacity + ", discoveryQueueCapacity="
+				+ discoveryQueueCapacity + ", crawlConcurrency=" + crawlConcurrency
+				+ ", crawlMaxDepth=" + crawlMaxDepth + ", journalFile=" + journalFile + ", journalSyncBatch="
+				+ journalSyncBatch + ", journalSyncIntervalMillis=" + journalSyncIntervalMillis
+				+ ", progressIntervalSeconds=" + progressIntervalSeconds
+				+ ", progressWindowSeconds=" + progressWindowSeconds + ", engineParallelism=" + engineParallelism
+				+ ", maxReadsInFlight=" + maxReadsInFlight + ", maxCreatesInFlight=" + maxCreatesInFlight + "]";
+	}
+
+}
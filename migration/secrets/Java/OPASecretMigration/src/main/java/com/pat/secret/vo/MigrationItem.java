@@ -0,0 +1,127 @@
+package com.pat.secret.vo;
+
+/**
+ * Object carrying a single secret through the migration pipeline stages
+ * @author rajeshkumar
+ *
+ */
+
+public class MigrationItem {
+
+	private String secretEngine;
+	private String engineKey;
+	private String secretName;
+	private String folderId;
+	private String secretData;
+	private OPAVaultRequest secretPayload;
+	private String keyId;
+	private int version;
+	private String updatedTime;
+	private String secretId;
+
+	public MigrationItem() {
+
+	}
+
+	public MigrationItem(String secretEngine, String secretName, String folderId) {
+		this(secretEngine, secretEngine, secretName, folderId);
+	}
+
+	public MigrationItem(String secretEngine, String engineKey, String secretName, String folderId) {
+		this.secretEngine = secretEngine;
+		this.engineKey = engineKey;
+		this.secretName = secretName;
+		this.folderId = folderId;
+	}
+
+	public String getSecretEngine() {
+		return secretEngine;
+	}
+
+	public void setSecretEngine(String secretEngine) {
+		this.secretEngine = secretEngine;
+	}
+
+	/**
+	 * @return String - key of the engine in the journal, delta state and progress
+	 */
+	public String getEngineKey() {
+		return engineKey == null ? secretEngine : engineKey;
+	}
+
+	public void setEngineKey(String engineKey) {
+		this.engineKey = engineKey;
+	}
+
+	public String getSecretName() {
+		return secretName;
+	}
+
+	public void setSecretName(String secretName) {
+		this.secretName = secretName;
+	}
+
+	public String getFolderId() {
+		return folderId;
+	}
+
+	public void setFolderId(String folderId) {
+		this.folderId = folderId;
+	}
+
+	public String getSecretData() {
+		return secretData;
+	}
+
+	public void setSecretData(String secretData) {
+		this.secretData = secretData;
+	}
+
+	public OPAVaultRequest getSecretPayload() {
+		return secretPayload;
+	}
+
+	public void setSecretPayload(OPAVaultRequest secretPayload) {
+		this.secretPayload = secretPayload;
+	}
+
+	public String getKeyId() {
+		return keyId;
+	}
+
+	public void setKeyId(String keyId) {
+		this.keyId = keyId;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public String getUpdatedTime() {
+		return updatedTime;
+	}
+
+	public void setUpdatedTime(String updatedTime) {
+		this.updatedTime = updatedTime;
+	}
+
+	public String getSecretId() {
+		return secretId;
+	}
+
+	public void setSecretId(String secretId) {
+		this.secretId = secretId;
+	}
+
+	@Override
+	public String toString() {
+		// secretData and secretPayload are left out on purpose, they carry credentials
+		return "MigrationItem [secretEngine=" + secretEngine + ", engineKey=" + engineKey + ", secretName="
+				+ secretName + ", folderId=" + folderId + "]";
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.pat.secret.vo;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Object to carry a page of secret folder items returned by OPA
+ * @author rajeshkumar
+ *
+ */
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OPAVaultListResponse {
+
+	@JsonProperty("list")
+	private List<OPAVaultResponse> items;
+
+	@JsonProperty("list")
+	public List<OPAVaultResponse> getItems() {
+		return items;
+	}
+
+	@JsonProperty("list")
+	public void setItems(List<OPAVaultResponse> items) {
+		this.items = items;
+	}
+
+	@Override
+	public String toString() {
+		return "OPAVaultListResponse [items=" + items + "]";
+	}
+
+}
@@ -42,6 +42,9 @@ public class OPAVaultResponse{
 	
 	@JsonProperty("path")
 	private List<SecretPath> secretPath;
+	
+	@JsonProperty("type")
+	private String type;
 
 	@JsonProperty("name")
 	public String getNewObjectName() {
@@ -133,12 +136,22 @@ public class OPAVaultResponse{
 		this.secretPath = secretPath;
 	}
 
+	@JsonProperty("type")
+	public String getType() {
+		return type;
+	}
+
+	@JsonProperty("type")
+	public void setType(String type) {
+		this.type = type;
+	}
+
 	@Override
 	public String toString() {
 		return "OPAVaultResponse [newObjectname=" + newObjectName + ", newObjectId=" + newObjectId + ", parentFolderId="
 				+ parentFolderId + ", secretDescription=" + secretDescription + ", createdat=" + createdat
 				+ ", createdby=" + createdby + ", updatedat=" + updatedat + ", updatedby=" + updatedby + ", secretPath="
-				+ secretPath + "]";
+				+ secretPath + ", type=" + type + "]";
 	}
 	
 	
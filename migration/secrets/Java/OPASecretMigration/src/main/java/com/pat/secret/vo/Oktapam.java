@@ -21,6 +21,21 @@ public class Oktapam {
 	private String projectId;
 	private String parentSecretFolderId;
 	private String secretFolderDesc;
+	private int connectionPoolSize = 20;
+	private int keepAliveSeconds = 300;
+	private boolean http2Enabled = true;
+	private int connectTimeoutSeconds = 10;
+	private int readTimeoutSeconds = 30;
+	private int writeTimeoutSeconds = 30;
+	private int tokenRefreshSkewSeconds = 60;
+	private int tokenDefaultLifetimeSeconds = 3600;
+	private int jwksCacheTtlSeconds = 900;
+	private double rateLimitPerSecond = 10;
+	private double rateLimitMinPerSecond = 1;
+	private double rateLimitMaxPerSecond = 50;
+	private double rateLimitIncreasePerSecond = 1;
+	private double rateLimitDecreaseFactor = 0.5;
+	private int maxThrottleRetries = 10;
 	
 	public String getHost() {
 		return host;
@@ -126,13 +141,144 @@ public class Oktapam {
 		this.secretFolderDesc = secretFolderDesc;
 	}
 
+	public int getConnectionPoolSize() {
+		return connectionPoolSize;
+	}
+
+	public void setConnectionPoolSize(int connectionPoolSize) {
+		this.connectionPoolSize = connectionPoolSize;
+	}
+
+	public int getKeepAliveSeconds() {
+		return keepAliveSeconds;
+	}
+
+	public void setKeepAliveSeconds(int keepAliveSeconds) {
+		this.keepAliveSeconds = keepAliveSeconds;
+	}
+
+	public boolean isHttp2Enabled() {
+		return http2Enabled;
+	}
+
+	public void setHttp2Enabled(boolean http2Enabled) {
+		this.http2Enabled = http2Enabled;
+	}
+
+	public int getConnectTimeoutSeconds() {
+		return connectTimeoutSeconds;
+	}
+
+	public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+		this.connectTimeoutSeconds = connectTimeoutSeconds;
+	}
+
+	public int getReadTimeoutSeconds() {
+		return readTimeoutSeconds;
+	}
+
+	public void setReadTimeoutSeconds(int readTimeoutSeconds) {
+		this.readTimeoutSeconds = readTimeoutSeconds;
+	}
+
+	public int getWriteTimeoutSeconds() {
+		return writeTimeoutSeconds;
+	}
+
+	public void setWriteTimeoutSeconds(int writeTimeoutSeconds) {
+		this.writeTimeoutSeconds = writeTimeoutSeconds;
+	}
+
+	public int getTokenRefreshSkewSeconds() {
+		return tokenRefreshSkewSeconds;
+	}
+
+	public void setTokenRefreshSkewSeconds(int tokenRefreshSkewSeconds) {
+		this.tokenRefreshSkewSeconds = tokenRefreshSkewSeconds;
+	}
+
+	public int getTokenDefaultLifetimeSeconds() {
+		return tokenDefaultLifetimeSeconds;
+	}
+
+	public void setTokenDefaultLifetimeSeconds(int tokenDefaultLifetimeSeconds) {
+		this.tokenDefaultLifetimeSeconds = tokenDefaultLifetimeSeconds;
+	}
+
+	public int getJwksCacheTtlSeconds() {
+		return jwksCacheTtlSeconds;
+	}
+
+	public void setJwksCacheTtlSeconds(int jwksCacheTtlSeconds) {
+		this.jwksCacheTtlSeconds = jwksCacheTtlSeconds;
+	}
+
+	public double getRateLimitPerSecond() {
+		return rateLimitPerSecond;
+	}
+
+	public void setRateLimitPerSecond(double rateLimitPerSecond) {
+		this.rateLimitPerSecond = rateLimitPerSecond;
+	}
+
+	public double getRateLimitMinPerSecond() {
+		return rateLimitMinPerSecond;
+	}
+
+	public void setRateLimitMinPerSecond(double rateLimitMinPerSecond) {
+		this.rateLimitMinPerSecond = rateLimitMinPerSecond;
+	}
+
+	public double getRateLimitMaxPerSecond() {
+		return rateLimitMaxPerSecond;
+	}
+
+	public void setRateLimitMaxPerSecond(double rateLimitMaxPerSecond) {
+		this.rateLimitMaxPerSecond = rateLimitMaxPerSecond;
+	}
+
+	public double getRateLimitIncreasePerSecond() {
+		return rateLimitIncreasePerSecond;
+	}
+
+	public void setRateLimitIncreasePerSecond(double rateLimitIncreasePerSecond) {
+		this.rateLimitIncreasePerSecond = rateLimitIncreasePerSecond;
+	}
+
+	public double getRateLimitDecreaseFactor() {
+		return rateLimitDecreaseFactor;
+	}
+
+	public void setRateLimitDecreaseFactor(double rateLimitDecreaseFactor) {
+		this.rateLimitDecreaseFactor = rateLimitDecreaseFactor;
+	}
+
+	public int getMaxThrottleRetries() {
+		return maxThrottleRetries;
+	}
+
+	public void setMaxThrottleRetries(int maxThrottleRetries) {
+		this.maxThrottleRetries = maxThrottleRetries;
+	}
+
 	@Override
 	public String toString() {
 		return "Oktapam [host=" + host + ", team=" + team + ", apiuri=" + apiuri + ", clientID=" + clientID
 				+ ", clientSecret=" + clientSecret + ", tokenendpoint=" + tokenendpoint + ", jwksEndpoint="
 				+ jwksEndpoint + ", createSecretEndpoint=" + createSecretEndpoint + ", createFolderEndpoint="
 				+ createFolderEndpoint + ", resourceGroupId=" + resourceGroupId + ", projectId=" + projectId
-				+ ", parentSecretFolderId=" + parentSecretFolderId + ", secretFolderDesc=" + secretFolderDesc + "]";
+				+ ", parentSecretFolderId=" + parentSecretFolderId + ", secretFolderDesc=" + secretFolderDesc
+				+ ", connectionPoolSize=" + connectionPoolSize + ", keepAliveSeconds=" + keepAliveSeconds
+				+ ", http2Enabled=" + http2Enabled + ", connectTimeoutSeconds=" + connectTimeoutSeconds
+				+ ", readTimeoutSeconds=" + readTimeoutSeconds + ", writeTimeoutSeconds=" + writeTimeoutSeconds
+				+ ", tokenRefreshSkewSeconds=" + tokenRefreshSkewSeconds + ", tokenDefaultLifetimeSeconds="
+				+ tokenDefaultLifetimeSeconds + ", jwksCacheTtlSeconds=" + jwksCacheTtlSeconds
+				+ ", rateLimitPerSecond=" + rateLimitPerSecond
+				+ ", rateLimitMinPerSecond=" + rateLimitMinPerSecond
+				+ ", rateLimitMaxPerSecond=" + rateLimitMaxPerSecond
+				+ ", rateLimitIncreasePerSecond=" + rateLimitIncreasePerSecond
+				+ ", rateLimitDecreaseFactor=" + rateLimitDecreaseFactor
+				+ ", maxThrottleRetries=" + maxThrottleRetries + "]";
 	}
 	
 }
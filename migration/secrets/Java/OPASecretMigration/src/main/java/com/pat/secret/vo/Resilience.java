@@ -0,0 +1,83 @@
+package com.pat.secret.vo;
+
+/**
+ * Object to load retry and circuit breaker properties from property file
+ * @author rajeshkumar
+ *
+ */
+
+public class Resilience {
+
+	private int maxAttempts = 4;
+	private long baseDelayMillis = 100;
+	private long maxDelayMillis = 5000;
+	private int retryBudgetPercent = 20;
+	private double retryBudgetMinPerSecond = 5;
+	private int circuitFailureThreshold = 5;
+	private int circuitOpenSeconds = 10;
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+
+	public long getBaseDelayMillis() {
+		return baseDelayMillis;
+	}
+
+	public void setBaseDelayMillis(long baseDelayMillis) {
+		this.baseDelayMillis = baseDelayMillis;
+	}
+
+	public long getMaxDelayMillis() {
+		return maxDelayMillis;
+	}
+
+	public void setMaxDelayMillis(long maxDelayMillis) {
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	public int getRetryBudgetPercent() {
+		return retryBudgetPercent;
+	}
+
+	public void setRetryBudgetPercent(int retryBudgetPercent) {
+		this.retryBudgetPercent = retryBudgetPercent;
+	}
+
+	public double getRetryBudgetMinPerSecond() {
+		return retryBudgetMinPerSecond;
+	}
+
+	public void setRetryBudgetMinPerSecond(double retryBudgetMinPerSecond) {
+		this.retryBudgetMinPerSecond = retryBudgetMinPerSecond;
+	}
+
+	public int getCircuitFailureThreshold() {
+		return circuitFailureThreshold;
+	}
+
+	public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+		this.circuitFailureThreshold = circuitFailureThreshold;
+	}
+
+	public int getCircuitOpenSeconds() {
+		return circuitOpenSeconds;
+	}
+
+	public void setCircuitOpenSeconds(int circuitOpenSeconds) {
+		this.circuitOpenSeconds = circuitOpenSeconds;
+	}
+
+	@Override
+	public String toString() {
+		return "Resilience [maxAttempts=" + maxAttempts + ", baseDelayMillis=" + baseDelayMillis + ", maxDelayMillis="
+				+ maxDelayMillis + ", retryBudgetPercent=" + retryBudgetPercent + ", retryBudgetMinPerSecond="
+				+ retryBudgetMinPerSecond + ", circuitFailureThreshold=" + circuitFailureThreshold
+				+ ", circuitOpenSeconds=" + circuitOpenSeconds + "]";
+	}
+
+}
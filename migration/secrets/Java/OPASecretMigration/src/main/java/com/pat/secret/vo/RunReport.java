@@ -0,0 +1,197 @@
+package com.pat.secret.vo;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Object with the outcome of a migration run, of one shard or merged from all shards
+ * @author rajeshkumar
+ *
+ */
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class RunReport {
+
+	@JsonProperty("shard_count")
+	private int shardCount;
+
+	@JsonProperty("shards")
+	private List<Integer> shards;
+
+	@JsonProperty("missing_shards")
+	private List<Integer> missingShards;
+
+	@JsonProperty("started_at")
+	private String startedAt;
+
+	@JsonProperty("finished_at")
+	private String finishedAt;
+
+	@JsonProperty("elapsed_seconds")
+	private double elapsedSeconds;
+
+	@JsonProperty("discovered")
+	private long discovered;
+
+	@JsonProperty("migrated")
+	private long migrated;
+
+	@JsonProperty("skipped")
+	private long skipped;
+
+	@JsonProperty("failed")
+	private long failed;
+
+	@JsonProperty("failed_folders")
+	private long failedFolders;
+
+	@JsonProperty("rate")
+	private double rate;
+
+	@JsonProperty("engines")
+	private List<EngineReport> engines;
+
+	@JsonProperty("shard_count")
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	@JsonProperty("shard_count")
+	public void setShardCount(int shardCount) {
+		this.shardCount = shardCount;
+	}
+
+	@JsonProperty("shards")
+	public List<Integer> getShards() {
+		return shards;
+	}
+
+	@JsonProperty("shards")
+	public void setShards(List<Integer> shards) {
+		this.shards = shards;
+	}
+
+	@JsonProperty("missing_shards")
+	public List<Integer> getMissingShards() {
+		return missingShards;
+	}
+
+	@JsonProperty("missing_shards")
+	public void setMissingShards(List<Integer> missingShards) {
+		this.missingShards = missingShards;
+	}
+
+	@JsonProperty("started_at")
+	public String getStartedAt() {
+		return startedAt;
+	}
+
+	@JsonProperty("started_at")
+	public void setStartedAt(String startedAt) {
+		this.startedAt = startedAt;
+	}
+
+	@JsonProperty("finished_at")
+	public String getFinishedAt() {
+		return finishedAt;
+	}
+
+	@JsonProperty("finished_at")
+	public void setFinishedAt(String finishedAt) {
+		this.finishedAt = finishedAt;
+	}
+
+	@JsonProperty("elapsed_seconds")
+	public double getElapsedSeconds() {
+		return elapsedSeconds;
+	}
+
+	@JsonProperty("elapsed_seconds")
+	public void setElapsedSeconds(double elapsedSeconds) {
+		this.elapsedSeconds = elapsedSeconds;
+	}
+
+	@JsonProperty("discovered")
+	public long getDiscovered() {
+		return discovered;
+	}
+
+	@JsonProperty("discovered")
+	public void setDiscovered(long discovered) {
+		this.discovered = discovered;
+	}
+
+	@JsonProperty("migrated")
+	public long getMigrated() {
+		return migrated;
+	}
+
+	@JsonProperty("migrated")
+	public void setMigrated(long migrated) {
+		this.migrated = migrated;
+	}
+
+	@JsonProperty("skipped")
+	public long getSkipped() {
+		return skipped;
+	}
+
+	@JsonProperty("skipped")
+	public void setSkipped(long skipped) {
+		this.skipped = skipped;
+	}
+
+	@JsonProperty("failed")
+	public long getFailed() {
+		return failed;
+	}
+
+	@JsonProperty("failed")
+	public void setFailed(long failed) {
+		this.failed = failed;
+	}
+
+	@JsonProperty("failed_folders")
+	public long getFailedFolders() {
+		return failedFolders;
+	}
+
+	@JsonProperty("failed_folders")
+	public void setFailedFolders(long failedFolders) {
+		this.failedFolders = failedFolders;
+	}
+
+	@JsonProperty("rate")
+	public double getRate() {
+		return rate;
+	}
+
+	@JsonProperty("rate")
+	public void setRate(double rate) {
+		this.rate = rate;
+	}
+
+	@JsonProperty("engines")
+	public List<EngineReport> getEngines() {
+		return engines;
+	}
+
+	@JsonProperty("engines")
+	public void setEngines(List<EngineReport> engines) {
+		this.engines = engines;
+	}
+
+	@Override
+	public String toString() {
+		return "RunReport [shardCount=" + shardCount + ", shards=" + shards
+				+ ", missingShards=" + missingShards + ", startedAt=" + startedAt + ", finishedAt=" + finishedAt
+				+ ", elapsedSeconds=" + elapsedSeconds + ", discovered=" + discovered + ", migrated=" + migrated
+				+ ", skipped=" + skipped + ", failed=" + failed + ", failedFolders=" + failedFolders + ", rate=" + rate
+				+ ", engines=" + engines + "]";
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.pat.secret.vo;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Object with the Hashicorp version of a secret synced into OPA
+ * @author rajeshkumar
+ *
+ */
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SecretVersion {
+
+	@JsonProperty("secret_engine")
+	private String secretEngine;
+
+	@JsonProperty("path")
+	private String path;
+
+	@JsonProperty("version")
+	private int version;
+
+	@JsonProperty("updated_time")
+	private String updatedTime;
+
+	@JsonProperty("secret_id")
+	private String secretId;
+
+	@JsonProperty("secret_engine")
+	public String getSecretEngine() {
+		return secretEngine;
+	}
+
+	@JsonProperty("secret_engine")
+	public void setSecretEngine(String secretEngine) {
+		this.secretEngine = secretEngine;
+	}
+
+	@JsonProperty("path")
+	public String getPath() {
+		return path;
+	}
+
+	@JsonProperty("path")
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	@JsonProperty("version")
+	public int getVersion() {
+		return version;
+	}
+
+	@JsonProperty("version")
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	@JsonProperty("updated_time")
+	public String getUpdatedTime() {
+		return updatedTime;
+	}
+
+	@JsonProperty("updated_time")
+	public void setUpdatedTime(String updatedTime) {
+		this.updatedTime = updatedTime;
+	}
+
+	@JsonProperty("secret_id")
+	public String getSecretId() {
+		return secretId;
+	}
+
+	@JsonProperty("secret_id")
+	public void setSecretId(String secretId) {
+		this.secretId = secretId;
+	}
+
+	@Override
+	public String toString() {
+		return "SecretVersion [secretEngine=" + secretEngine + ", path=" + path + ", version=" + version
+				+ ", updatedTime=" + updatedTime + ", secretId=" + secretId + "]";
+	}
+
+}
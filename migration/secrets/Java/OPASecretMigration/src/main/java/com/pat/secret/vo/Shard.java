@@ -0,0 +1,94 @@
+package com.pat.secret.vo;
+
+/**
+ * Object to load shard properties from property file. A sharded migration runs
+ * one process per shard, each migrating the secret paths consistent hashing
+ * assigns to it.
+ * @author rajeshkumar
+ *
+ */
+
+public class Shard {
+
+	private int index = 0;
+	private int count = 1;
+	private int virtualNodes = 128;
+	private int folderWaitSeconds = 300;
+	private String reportFile = "OPASecretMigration.report.json";
+
+	public int getIndex() {
+		return index;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	public int getVirtualNodes() {
+		return virtualNodes;
+	}
+
+	public void setVirtualNodes(int virtualNodes) {
+		this.virtualNodes = virtualNodes;
+	}
+
+	public int getFolderWaitSeconds() {
+		return folderWaitSeconds;
+	}
+
+	public void setFolderWaitSeconds(int folderWaitSeconds) {
+		this.folderWaitSeconds = folderWaitSeconds;
+	}
+
+	public String getReportFile() {
+		return reportFile;
+	}
+
+	public void setReportFile(String reportFile) {
+		this.reportFile = reportFile;
+	}
+
+	public boolean isSharded() {
+		return count > 1;
+	}
+
+	/**
+	 * Name of the file of this shard, e.g. OPASecretMigration.journal becomes
+	 * OPASecretMigration.shard-1.journal
+	 *
+	 * @param file
+	 * @return String - file of the shard, the file itself when not sharded
+	 */
+	public String getShardFile(String file) {
+		return isSharded() ? getShardFile(file, index) : file;
+	}
+
+	/**
+	 * @param file
+	 * @param shardIndex
+	 * @return String - file of the given shard
+	 */
+	public static String getShardFile(String file, int shardIndex) {
+		int slash = Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\'));
+		int dot = file.lastIndexOf('.');
+		if (dot <= slash + 1) {
+			return file + ".shard-" + shardIndex;
+		}
+		return file.substring(0, dot) + ".shard-" + shardIndex + file.substring(dot);
+	}
+
+	@Override
+	public String toString() {
+		return "Shard [index=" + index + ", count=" + count + ", virtualNodes=" + virtualNodes
+				+ ", folderWaitSeconds=" + folderWaitSeconds + ", reportFile=" + reportFile + "]";
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.pat.secret.vo;
+
+/**
+ * Object to load staging file properties from property file. The staging file
+ * holds the encrypted secrets of an extract run until a load run sends them to
+ * OPA.
+ * @author rajeshkumar
+ *
+ */
+
+public class Staging {
+
+	private String file = "OPASecretMigration.staging";
+	private int syncBatch = 1000;
+	private int loadConcurrency = 64;
+	private int offsetSyncIntervalSeconds = 5;
+
+	public String getFile() {
+		return file;
+	}
+
+	public void setFile(String file) {
+		this.file = file;
+	}
+
+	public int getSyncBatch() {
+		return syncBatch;
+	}
+
+	public void setSyncBatch(int syncBatch) {
+		this.syncBatch = syncBatch;
+	}
+
+	public int getLoadConcurrency() {
+		return loadConcurrency;
+	}
+
+	public void setLoadConcurrency(int loadConcurrency) {
+		this.loadConcurrency = loadConcurrency;
+	}
+
+	public int getOffsetSyncIntervalSeconds() {
+		return offsetSyncIntervalSeconds;
+	}
+
+	public void setOffsetSyncIntervalSeconds(int offsetSyncIntervalSeconds) {
+		this.offsetSyncIntervalSeconds = offsetSyncIntervalSeconds;
+	}
+
+	@Override
+	public String toString() {
+		return "Staging [file=" + file + ", syncBatch=" + syncBatch + ", loadConcurrency=" + loadConcurrency
+				+ ", offsetSyncIntervalSeconds=" + offsetSyncIntervalSeconds + "]";
+	}
+
+}
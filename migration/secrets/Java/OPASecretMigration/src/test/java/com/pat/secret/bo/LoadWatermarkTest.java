@@ -0,0 +1,84 @@
+package com.pat.secret.bo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.pat.secret.bo.StagedMigrationBO.LoadWatermark;
+
+/**
+ * Offset saved by a load, the one a rerun starts from
+ *
+ * @author rajeshkumar
+ *
+ */
+class LoadWatermarkTest {
+
+	@Test
+	void advancesOnceEarlierRecordsCompleteOutOfOrder() {
+		LoadWatermark watermark = new LoadWatermark(0);
+
+		watermark.loaded(20, 30);
+		watermark.loaded(10, 20);
+		assertThat(watermark.get()).isZero();
+
+		watermark.loaded(0, 10);
+		assertThat(watermark.get()).isEqualTo(30);
+
+		watermark.loaded(40, 50);
+		assertThat(watermark.get()).isEqualTo(30);
+
+		watermark.loaded(30, 40);
+		assertThat(watermark.get()).isEqualTo(50);
+	}
+
+	@Test
+	void startsFromResumedOffset() {
+		LoadWatermark watermark = new LoadWatermark(100);
+
+		watermark.loaded(120, 150);
+		assertThat(watermark.get()).isEqualTo(100);
+
+		watermark.loaded(100, 120);
+		assertThat(watermark.get()).isEqualTo(150);
+	}
+
+	@Test
+	void staysAtFirstFailureWhateverLoadsAfterIt() {
+		LoadWatermark watermark = new LoadWatermark(0);
+
+		watermark.loaded(0, 10);
+		watermark.failed(10);
+		watermark.loaded(20, 30);
+		watermark.loaded(30, 40);
+
+		assertThat(watermark.get()).isEqualTo(10);
+	}
+
+	@Test
+	void dropsLoadsCompletedBeforeTheFailure() {
+		LoadWatermark watermark = new LoadWatermark(0);
+
+		// Loaded ahead of a record that then fails, they must not be skipped past it
+		watermark.loaded(20, 30);
+		watermark.loaded(30, 40);
+		watermark.failed(10);
+		watermark.loaded(0, 10);
+
+		assertThat(watermark.get()).isEqualTo(10);
+	}
+
+	@Test
+	void keepsTheEarliestFailure() {
+		LoadWatermark watermark = new LoadWatermark(0);
+
+		watermark.failed(30);
+		watermark.loaded(0, 10);
+		watermark.failed(10);
+		watermark.loaded(10, 20);
+		watermark.loaded(20, 30);
+
+		assertThat(watermark.get()).isEqualTo(10);
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.pat.secret.bo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.pat.secret.dao.OPASecretServicesDAO;
+import com.pat.secret.utility.OPASecretUtility;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.OPAVaultRequest;
+import com.pat.secret.vo.OPAVaultResponse;
+
+/**
+ * Folder resolution when the folder listing fails: nothing is created and the
+ * failure is not cached
+ *
+ * @author rajeshkumar
+ *
+ */
+class OPAFolderResolverTest {
+
+	private static final String LIST_URL = "https://opa.test/folders/parent/items";
+
+	private static final String CREATE_URL = "https://opa.test/folders";
+
+	private OPASecretServicesDAO opaSecretServicesDAO;
+
+	private OPAFolderResolver folderResolver;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() throws Exception {
+		RegisterProperties regProps = new RegisterProperties();
+		regProps.getOktapam().setParentSecretFolderId("parent");
+		OPASecretUtility opaSecretUtility = mock(OPASecretUtility.class);
+		when(opaSecretUtility.getFolderItemsAPIEndpoint("parent")).thenReturn(LIST_URL);
+		when(opaSecretUtility.getCreateFolderAPIEndpoint()).thenReturn(CREATE_URL);
+		OPATokenManager opaTokenManager = mock(OPATokenManager.class);
+		when(opaTokenManager.callWithToken(any()))
+				.thenAnswer(invocation -> ((Function<String, Object>) invocation.getArgument(0)).apply("token"));
+		opaSecretServicesDAO = mock(OPASecretServicesDAO.class);
+
+		folderResolver = new OPAFolderResolver();
+		ReflectionTestUtils.invokeMethod(folderResolver, "setRegister", regProps);
+		ReflectionTestUtils.invokeMethod(folderResolver, "setRegister", opaSecretUtility);
+		ReflectionTestUtils.invokeMethod(folderResolver, "setOPASecretServicesDAO", opaSecretServicesDAO);
+		ReflectionTestUtils.invokeMethod(folderResolver, "setOPATokenManager", opaTokenManager);
+	}
+
+	@Test
+	void failedListingCreatesNothing() {
+		when(opaSecretServicesDAO.listOPASecretFolderItems(LIST_URL, "token"))
+				.thenThrow(new IllegalStateException("Unable to list page 2"));
+
+		assertThat(folderResolver.resolveFolder("engine")).isNull();
+
+		verify(opaSecretServicesDAO, never()).createOPASecretFolder(any(OPAVaultRequest.class), anyString(),
+				anyString());
+	}
+
+	@Test
+	void failedListingIsListedAgainByNextCaller() {
+		when(opaSecretServicesDAO.listOPASecretFolderItems(LIST_URL, "token"))
+				.thenThrow(new IllegalStateException("Unable to list page 2"))
+				.thenReturn(Collections.singletonList(folder("engine", "folder-1")));
+
+		assertThat(folderResolver.resolveFolder("engine")).isNull();
+		assertThat(folderResolver.resolveFolder("engine")).isEqualTo("folder-1");
+
+		verify(opaSecretServicesDAO, times(2)).listOPASecretFolderItems(LIST_URL, "token");
+		verify(opaSecretServicesDAO, never()).createOPASecretFolder(any(OPAVaultRequest.class), anyString(),
+				anyString());
+	}
+
+	@Test
+	void createsFolderMissingFromFullListing() {
+		when(opaSecretServicesDAO.listOPASecretFolderItems(LIST_URL, "token"))
+				.thenReturn(Collections.singletonList(folder("other", "folder-1")));
+		when(opaSecretServicesDAO.createOPASecretFolder(any(OPAVaultRequest.class), anyString(), anyString()))
+				.thenReturn(folder("engine", "folder-2"));
+
+		assertThat(folderResolver.resolveFolder("engine")).isEqualTo("folder-2");
+		assertThat(folderResolver.resolveFolder("other")).isEqualTo("folder-1");
+
+		verify(opaSecretServicesDAO, times(1)).listOPASecretFolderItems(LIST_URL, "token");
+		verify(opaSecretServicesDAO, times(1)).createOPASecretFolder(any(OPAVaultRequest.class), anyString(),
+				anyString());
+	}
+
+	private static OPAVaultResponse folder(String name, String id) {
+		OPAVaultResponse folder = new OPAVaultResponse();
+		folder.setNewObjectName(name);
+		folder.setNewObjectId(id);
+		folder.setType("secret_folder");
+		return folder;
+	}
+
+}
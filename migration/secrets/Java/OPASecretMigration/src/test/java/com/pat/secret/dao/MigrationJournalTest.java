@@ -0,0 +1,122 @@
+package com.pat.secret.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.pat.secret.utility.RegisterProperties;
+
+/**
+ * Opening the journal of an interrupted run: complete lines are replayed, a
+ * torn last line is cut off before new records are appended
+ *
+ * @author rajeshkumar
+ *
+ */
+class MigrationJournalTest {
+
+	@TempDir
+	Path tempDir;
+
+	private Path journalPath;
+
+	private MigrationJournal journal;
+
+	@BeforeEach
+	void setUp() {
+		journalPath = tempDir.resolve("test.journal");
+		journal = newJournal();
+	}
+
+	@AfterEach
+	void tearDown() {
+		journal.close();
+	}
+
+	@Test
+	void truncatesPartialLastLine() throws Exception {
+		String complete = "engine\tpath-1\tid-1\nengine\tpath-2\tid-2\n";
+		Files.write(journalPath, (complete + "engine\tpath-3\ti").getBytes(StandardCharsets.UTF_8));
+
+		journal.open(journalPath);
+
+		assertThat(journal.getSecretId("engine", "path-1")).isEqualTo("id-1");
+		assertThat(journal.getSecretId("engine", "path-2")).isEqualTo("id-2");
+		assertThat(journal.isMigrated("engine", "path-3")).isFalse();
+		assertThat(Files.size(journalPath)).isEqualTo(complete.length());
+	}
+
+	@Test
+	void appendsAfterTruncatedLineOnACleanLine() throws Exception {
+		Files.write(journalPath, "engine\tpath-1\tid-1\nengine\tpa".getBytes(StandardCharsets.UTF_8));
+		journal.open(journalPath);
+		journal.record("engine", "path-2", "id-2");
+		journal.close();
+
+		assertThat(new String(Files.readAllBytes(journalPath), StandardCharsets.UTF_8))
+				.isEqualTo("engine\tpath-1\tid-1\nengine\tpath-2\tid-2\n");
+		journal = newJournal();
+		journal.open(journalPath);
+		assertThat(journal.getSecretId("engine", "path-1")).isEqualTo("id-1");
+		assertThat(journal.getSecretId("engine", "path-2")).isEqualTo("id-2");
+	}
+
+	@Test
+	void truncatesInsideMultiByteCharacterByBytes() throws Exception {
+		byte[] complete = "engine\tpüth-1\tid-1\n".getBytes(StandardCharsets.UTF_8);
+		byte[] torn = "engine\tp".getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream journalBytes = new ByteArrayOutputStream();
+		journalBytes.write(complete);
+		journalBytes.write(torn);
+		// First byte of the two byte "ü"
+		journalBytes.write(0xC3);
+		Files.write(journalPath, journalBytes.toByteArray());
+
+		journal.open(journalPath);
+
+		assertThat(journal.getSecretId("engine", "püth-1")).isEqualTo("id-1");
+		assertThat(Files.size(journalPath)).isEqualTo(complete.length);
+	}
+
+	@Test
+	void keepsMalformedCompleteLine() throws Exception {
+		String lines = "not a record\nengine\tpath-1\tid-1\n";
+		Files.write(journalPath, lines.getBytes(StandardCharsets.UTF_8));
+
+		journal.open(journalPath);
+
+		assertThat(journal.getSecretId("engine", "path-1")).isEqualTo("id-1");
+		assertThat(Files.size(journalPath)).isEqualTo(lines.length());
+	}
+
+	@Test
+	void replaysEscapedValues() throws Exception {
+		journal.open(journalPath);
+		journal.record("engine", "a\tb\nc\\d", "id-1");
+		journal.recordFolder("engine", "folder-1");
+		journal.close();
+
+		journal = newJournal();
+		journal.open(journalPath);
+		assertThat(journal.getSecretId("engine", "a\tb\nc\\d")).isEqualTo("id-1");
+		assertThat(journal.getFolderId("engine")).isEqualTo("folder-1");
+	}
+
+	private static MigrationJournal newJournal() {
+		RegisterProperties regProps = new RegisterProperties();
+		regProps.getMigration().setJournalSyncBatch(1);
+		MigrationJournal journal = new MigrationJournal();
+		ReflectionTestUtils.invokeMethod(journal, "setRegister", regProps);
+		return journal;
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.pat.secret.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.pat.secret.utility.RegisterProperties;
+
+/**
+ * AIMD rate of OPARateLimiter: cut on 429, grown on success, bounded by the
+ * configured minimum and maximum, and paused by Retry-After
+ *
+ * @author rajeshkumar
+ *
+ */
+class OPARateLimiterTest {
+
+	private RegisterProperties regProps;
+
+	@BeforeEach
+	void setUp() {
+		regProps = new RegisterProperties();
+		regProps.getOktapam().setRateLimitPerSecond(10);
+		regProps.getOktapam().setRateLimitMinPerSecond(1);
+		regProps.getOktapam().setRateLimitMaxPerSecond(20);
+		regProps.getOktapam().setRateLimitIncreasePerSecond(1);
+		regProps.getOktapam().setRateLimitDecreaseFactor(0.5);
+	}
+
+	@Test
+	void cutsRateOnThrottle() {
+		OPARateLimiter rateLimiter = newRateLimiter();
+
+		long waitMillis = rateLimiter.onThrottled(null);
+
+		assertThat(rateLimiter.getRate()).isEqualTo(5);
+		// One permit at the lowered rate
+		assertThat(waitMillis).isEqualTo(200);
+	}
+
+	@Test
+	void cutsOnceForCallsThrottledTogether() {
+		OPARateLimiter rateLimiter = newRateLimiter();
+
+		// Calls in flight when the rate was cut report the same 429
+		rateLimiter.onThrottled(null);
+		rateLimiter.onThrottled(null);
+		rateLimiter.onThrottled(null);
+
+		assertThat(rateLimiter.getRate()).isEqualTo(5);
+	}
+
+	@Test
+	void neverCutsBelowMinimum() {
+		regProps.getOktapam().setRateLimitMinPerSecond(8);
+		OPARateLimiter rateLimiter = newRateLimiter();
+
+		rateLimiter.onThrottled(null);
+
+		assertThat(rateLimiter.getRate()).isEqualTo(8);
+	}
+
+	@Test
+	void growsBackUpToMaximum() {
+		OPARateLimiter rateLimiter = newRateLimiter();
+		rateLimiter.onThrottled(null);
+
+		rateLimiter.onSuccess();
+		assertThat(rateLimiter.getRate()).isCloseTo(5.2, within(1e-9));
+
+		for (int i = 0; i < 10000; i++) {
+			rateLimiter.onSuccess();
+		}
+		assertThat(rateLimiter.getRate()).isEqualTo(20);
+	}
+
+	@Test
+	void pausesForRetryAfterSeconds() {
+		OPARateLimiter rateLimiter = newRateLimiter();
+
+		assertThat(rateLimiter.onThrottled("2")).isEqualTo(2000);
+
+		assertThat(rateLimiter.reserve()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(1900));
+	}
+
+	@Test
+	void pausesForRetryAfterDate() {
+		OPARateLimiter rateLimiter = newRateLimiter();
+		String retryAt = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(3));
+
+		// The date has a precision of one second
+		assertThat(rateLimiter.onThrottled(retryAt)).isBetween(1000L, 3000L);
+		assertThat(rateLimiter.reserve()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(900));
+	}
+
+	@Test
+	void ignoresUnreadableRetryAfter() {
+		OPARateLimiter rateLimiter = newRateLimiter();
+
+		assertThat(rateLimiter.onThrottled("soon")).isEqualTo(200);
+	}
+
+	@Test
+	void queuesCallersBeyondTheBurst() {
+		OPARateLimiter rateLimiter = newRateLimiter();
+
+		assertThat(rateLimiter.reserve()).isLessThanOrEqualTo(0);
+		// The second permit is a tenth of a second away at 10 permits per second
+		assertThat(rateLimiter.reserve()).isBetween(TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.MILLISECONDS.toNanos(100));
+		assertThat(rateLimiter.reserve()).isBetween(TimeUnit.MILLISECONDS.toNanos(150), TimeUnit.MILLISECONDS.toNanos(200));
+	}
+
+	@Test
+	void splitsRateBetweenShards() {
+		regProps.getShard().setCount(2);
+
+		assertThat(newRateLimiter().getRate()).isEqualTo(5);
+	}
+
+	private OPARateLimiter newRateLimiter() {
+		OPARateLimiter rateLimiter = new OPARateLimiter();
+		ReflectionTestUtils.invokeMethod(rateLimiter, "setRegister", regProps);
+		ReflectionTestUtils.invokeMethod(rateLimiter, "postConstruct");
+		return rateLimiter;
+	}
+
+}
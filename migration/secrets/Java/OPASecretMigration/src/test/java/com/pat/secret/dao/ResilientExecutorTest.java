@@ -0,0 +1,206 @@
+package com.pat.secret.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.pat.secret.utility.RegisterProperties;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Circuit breaker of ResilientExecutor: opening after consecutive transient
+ * failures, the half open probe and its release when it ends without outcome,
+ * and the retry of idempotent calls
+ *
+ * @author rajeshkumar
+ *
+ */
+class ResilientExecutorTest {
+
+	private static final String ENDPOINT = "opa test createSecret";
+
+	// Longer than the one second open period
+	private static final long OPEN_WAIT_MILLIS = 1100;
+
+	private RegisterProperties regProps;
+
+	private ResilientExecutor resilientExecutor;
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@BeforeEach
+	void setUp() {
+		regProps = new RegisterProperties();
+		regProps.getResilience().setMaxAttempts(1);
+		regProps.getResilience().setCircuitFailureThreshold(2);
+		regProps.getResilience().setCircuitOpenSeconds(1);
+		resilientExecutor = new ResilientExecutor();
+		ReflectionTestUtils.invokeMethod(resilientExecutor, "setRegister", regProps);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void opensAfterConsecutiveTransientFailures() throws Exception {
+		fail();
+		assertThat(call()).isEqualTo("ok");
+		fail();
+		fail();
+
+		assertThatThrownBy(this::call).isInstanceOf(CircuitOpenException.class);
+		// The rejected call never ran
+		assertThat(calls).hasValue(4);
+	}
+
+	@Test
+	void staysClosedWhenEndpointRefusesCalls() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			assertThatThrownBy(() -> resilientExecutor.call(ENDPOINT, true, () -> {
+				calls.incrementAndGet();
+				throw new OPAApiException("createSecret", 400, "bad request");
+			})).isInstanceOf(OPAApiException.class);
+		}
+
+		assertThat(call()).isEqualTo("ok");
+		assertThat(calls).hasValue(6);
+	}
+
+	@Test
+	void successfulProbeClosesCircuit() throws Exception {
+		open();
+		Thread.sleep(OPEN_WAIT_MILLIS);
+
+		assertThat(call()).isEqualTo("ok");
+		// Closed again, one failure is below the threshold
+		fail();
+		assertThat(call()).isEqualTo("ok");
+	}
+
+	@Test
+	void failedProbeReopensCircuit() throws Exception {
+		open();
+		Thread.sleep(OPEN_WAIT_MILLIS);
+
+		fail();
+
+		assertThatThrownBy(this::call).isInstanceOf(CircuitOpenException.class);
+	}
+
+	@Test
+	void letsOneProbeThroughAtATime() throws Exception {
+		open();
+		Thread.sleep(OPEN_WAIT_MILLIS);
+		CountDownLatch probeStarted = new CountDownLatch(1);
+		CountDownLatch releaseProbe = new CountDownLatch(1);
+		Future<String> probe = executor.submit(() -> resilientExecutor.call(ENDPOINT, true, () -> {
+			probeStarted.countDown();
+			releaseProbe.await();
+			return "probe";
+		}));
+		assertThat(probeStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThatThrownBy(this::call).isInstanceOf(CircuitOpenException.class);
+
+		releaseProbe.countDown();
+		assertThat(probe.get(5, TimeUnit.SECONDS)).isEqualTo("probe");
+		assertThat(call()).isEqualTo("ok");
+	}
+
+	@Test
+	void releasesProbeFailingWithError() throws Exception {
+		open();
+		Thread.sleep(OPEN_WAIT_MILLIS);
+
+		assertThatThrownBy(() -> resilientExecutor.call(ENDPOINT, true, () -> {
+			throw new AssertionError("probe died");
+		})).isInstanceOf(AssertionError.class);
+
+		// The next call is the probe instead of waiting for an outcome that never comes
+		assertThat(call()).isEqualTo("ok");
+	}
+
+	@Test
+	void releasesCancelledAsyncProbe() throws Exception {
+		open();
+		Thread.sleep(OPEN_WAIT_MILLIS);
+		Disposable probe = resilientExecutor.callAsync(ENDPOINT, true, () -> Mono.<String>never()).subscribe();
+
+		assertThatThrownBy(this::call).isInstanceOf(CircuitOpenException.class);
+		probe.dispose();
+
+		assertThat(resilientExecutor.callAsync(ENDPOINT, true, () -> Mono.just("ok")).block()).isEqualTo("ok");
+	}
+
+	@Test
+	void retriesIdempotentCallsOnly() throws Exception {
+		regProps.getResilience().setMaxAttempts(3);
+		regProps.getResilience().setBaseDelayMillis(1);
+		regProps.getResilience().setMaxDelayMillis(1);
+		regProps.getResilience().setCircuitFailureThreshold(100);
+
+		assertThat(resilientExecutor.call(ENDPOINT, true, () -> {
+			if (calls.incrementAndGet() < 3) {
+				throw new IOException("connection reset");
+			}
+			return "ok";
+		})).isEqualTo("ok");
+		assertThat(calls).hasValue(3);
+
+		// The create may have reached OPA, replaying it could create the secret twice
+		calls.set(0);
+		assertThatThrownBy(() -> resilientExecutor.call(ENDPOINT, false, () -> {
+			calls.incrementAndGet();
+			throw new IOException("connection reset");
+		})).isInstanceOf(IOException.class);
+		assertThat(calls).hasValue(1);
+
+		// A refused connection never reached OPA
+		calls.set(0);
+		assertThatThrownBy(() -> resilientExecutor.call(ENDPOINT, false, () -> {
+			calls.incrementAndGet();
+			throw new ConnectException("connection refused");
+		})).isInstanceOf(ConnectException.class);
+		assertThat(calls).hasValue(3);
+	}
+
+	private String call() throws Exception {
+		return resilientExecutor.call(ENDPOINT, true, () -> {
+			calls.incrementAndGet();
+			return "ok";
+		});
+	}
+
+	private void fail() {
+		assertThatThrownBy(() -> resilientExecutor.call(ENDPOINT, true, () -> {
+			calls.incrementAndGet();
+			throw new IOException("connection reset");
+		})).isInstanceOf(IOException.class);
+	}
+
+	private void open() {
+		fail();
+		fail();
+		assertThatThrownBy(this::call).isInstanceOf(CircuitOpenException.class);
+	}
+
+}
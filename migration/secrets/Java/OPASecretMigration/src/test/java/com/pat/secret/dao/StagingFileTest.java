@@ -0,0 +1,193 @@
+package com.pat.secret.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.utility.RegisterProperties;
+import com.pat.secret.vo.OPAVaultRequest;
+import com.pat.secret.vo.StagedSecret;
+
+/**
+ * Reading the staging file back: window re-mapping, resuming from an offset
+ * and the torn tail of an interrupted extract
+ *
+ * @author rajeshkumar
+ *
+ */
+class StagingFileTest {
+
+	private static final int RECORD_COUNT = 8;
+
+	@TempDir
+	Path tempDir;
+
+	private StagingFile stagingFile;
+
+	// Body of every record and the offset it starts at, the last offset is the end of the file
+	private final List<String> bodies = new ArrayList<String>();
+
+	private final List<Long> offsets = new ArrayList<Long>();
+
+	@BeforeEach
+	void setUp() throws IOException {
+		RegisterProperties regProps = new RegisterProperties();
+		regProps.getStaging().setFile(tempDir.resolve("test.staging").toString());
+		regProps.getStaging().setSyncBatch(3);
+		stagingFile = new StagingFile();
+		ReflectionTestUtils.invokeMethod(stagingFile, "setRegister", regProps);
+		stagingFile.create();
+		offsets.add(0L);
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			StagedSecret stagedSecret = new StagedSecret();
+			stagedSecret.setSecretEngine("engine");
+			stagedSecret.setPath("path-" + i);
+			OPAVaultRequest request = new OPAVaultRequest();
+			// Records of different sizes so they end at every position of a window
+			request.setName("secret-" + i + pad(i * 13));
+			request.setSecretJwe("jwe-" + i);
+			stagingFile.append(stagedSecret, request);
+			bodies.add(new String(JsonCodec.OPA_VAULT_REQUEST_WRITER.writeValueAsBytes(request), StandardCharsets.UTF_8));
+			offsets.add(Files.size(stagingFile.getPath()));
+		}
+		stagingFile.close();
+	}
+
+	@AfterEach
+	void tearDown() {
+		stagingFile.close();
+	}
+
+	@Test
+	void readsEveryRecordInOrder() throws Exception {
+		List<String> read = new ArrayList<String>();
+		long end = stagingFile.read(0, collect(read, 0));
+
+		assertThat(read).containsExactlyElementsOf(expected(0));
+		assertThat(end).isEqualTo(offsets.get(RECORD_COUNT));
+	}
+
+	@Test
+	void readsRecordsStraddlingWindows() throws Exception {
+		// Smaller than one record, around a record and spanning a few records
+		for (long windowSize : new long[] { 16, 37, 64, 100, 211, 1000 }) {
+			stagingFile.windowSize = windowSize;
+			List<String> read = new ArrayList<String>();
+			long end = stagingFile.read(0, collect(read, 0));
+
+			assertThat(read).as("window of %d bytes", windowSize).containsExactlyElementsOf(expected(0));
+			assertThat(end).as("window of %d bytes", windowSize).isEqualTo(offsets.get(RECORD_COUNT));
+		}
+	}
+
+	@Test
+	void resumesFromSavedOffset() throws Exception {
+		stagingFile.windowSize = 64;
+		List<String> read = new ArrayList<String>();
+		long end = stagingFile.read(offsets.get(5), collect(read, 5));
+
+		assertThat(read).containsExactlyElementsOf(expected(5));
+		assertThat(end).isEqualTo(offsets.get(RECORD_COUNT));
+	}
+
+	@Test
+	void stopsBeforeTruncatedLastFrame() throws Exception {
+		long lastStart = offsets.get(RECORD_COUNT - 1);
+		truncate(offsets.get(RECORD_COUNT) - 5);
+		for (long windowSize : new long[] { 16, 100, 1000 }) {
+			stagingFile.windowSize = windowSize;
+			List<String> read = new ArrayList<String>();
+			long end = stagingFile.read(0, collect(read, 0));
+
+			assertThat(read).containsExactlyElementsOf(expected(0).subList(0, RECORD_COUNT - 1));
+			assertThat(end).isEqualTo(lastStart);
+		}
+	}
+
+	@Test
+	void stopsBeforeTruncatedLengthPrefix() throws Exception {
+		long lastStart = offsets.get(RECORD_COUNT - 1);
+		truncate(lastStart + 2);
+		List<String> read = new ArrayList<String>();
+		long end = stagingFile.read(0, collect(read, 0));
+
+		assertThat(read).hasSize(RECORD_COUNT - 1);
+		assertThat(end).isEqualTo(lastStart);
+	}
+
+	@Test
+	void failsOnCorruptFrameLength() throws Exception {
+		try (FileChannel channel = FileChannel.open(stagingFile.getPath(), StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.allocate(12).putInt(0, 2));
+		}
+		List<String> read = new ArrayList<String>();
+
+		assertThatThrownBy(() -> stagingFile.read(0, collect(read, 0))).isInstanceOf(IOException.class)
+				.hasMessageContaining("offset " + offsets.get(RECORD_COUNT));
+		assertThat(read).hasSize(RECORD_COUNT);
+	}
+
+	@Test
+	void savesOffsetUntilNextExtract() throws Exception {
+		assertThat(stagingFile.readOffset()).isZero();
+
+		stagingFile.saveOffset(offsets.get(3));
+		assertThat(stagingFile.readOffset()).isEqualTo(offsets.get(3));
+
+		stagingFile.create();
+		assertThat(stagingFile.readOffset()).isZero();
+	}
+
+	/**
+	 * @param read - receives "path body" of every record
+	 * @param first - index of the first record read
+	 * @return StagedRecordConsumer - checking the offsets of every record
+	 */
+	private StagingFile.StagedRecordConsumer collect(List<String> read, int first) {
+		return (offset, nextOffset, stagedSecret, body) -> {
+			int index = first + read.size();
+			assertThat(offset).isEqualTo(offsets.get(index));
+			assertThat(nextOffset).isEqualTo(offsets.get(index + 1));
+			read.add(stagedSecret.getPath() + " " + StandardCharsets.UTF_8.decode(body));
+		};
+	}
+
+	private List<String> expected(int first) {
+		List<String> expected = new ArrayList<String>();
+		for (int i = first; i < RECORD_COUNT; i++) {
+			expected.add("path-" + i + " " + bodies.get(i));
+		}
+		return expected;
+	}
+
+	private void truncate(long size) throws IOException {
+		try (FileChannel channel = FileChannel.open(stagingFile.getPath(), StandardOpenOption.WRITE)) {
+			channel.truncate(size);
+		}
+	}
+
+	private static String pad(int length) {
+		StringBuilder pad = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			pad.append('x');
+		}
+		return pad.toString();
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.pat.secret.utility;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Consistent hash ring of ShardAssignment: every secret is owned by exactly
+ * one shard, shards get an even share, and a new shard only takes paths over
+ *
+ * @author rajeshkumar
+ *
+ */
+class ShardAssignmentTest {
+
+	private static final int PATH_COUNT = 20000;
+
+	private RegisterProperties regProps;
+
+	@BeforeEach
+	void setUp() {
+		regProps = new RegisterProperties();
+	}
+
+	@Test
+	void everyPathOwnedByExactlyOneShard() {
+		for (int shardCount : new int[] { 1, 2, 3, 7 }) {
+			ShardAssignment shardAssignment = newShardAssignment(shardCount);
+			int[] owned = new int[shardCount];
+			for (int i = 0; i < PATH_COUNT; i++) {
+				int owners = 0;
+				for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+					regProps.getShard().setIndex(shardIndex);
+					if (shardAssignment.isOwned("vault1/secret", path(i))) {
+						owners++;
+						owned[shardIndex]++;
+					}
+				}
+				assertThat(owners).as("owners of %s with %d shards", path(i), shardCount).isEqualTo(1);
+			}
+			int total = 0;
+			for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+				// An even share is PATH_COUNT / shardCount
+				assertThat(owned[shardIndex]).as("paths of shard %d of %d", shardIndex, shardCount)
+						.isBetween(PATH_COUNT / shardCount * 3 / 4, PATH_COUNT / shardCount * 5 / 4);
+				total += owned[shardIndex];
+			}
+			assertThat(total).isEqualTo(PATH_COUNT);
+		}
+	}
+
+	@Test
+	void addedShardOnlyTakesPathsOver() {
+		ShardAssignment fourShards = newShardAssignment(4);
+		ShardAssignment fiveShards = newShardAssignment(5);
+		int moved = 0;
+		for (int i = 0; i < PATH_COUNT; i++) {
+			String key = "vault1/secret/" + path(i);
+			int before = fourShards.shardOf(key);
+			int after = fiveShards.shardOf(key);
+			if (before != after) {
+				assertThat(after).as("new owner of %s", key).isEqualTo(4);
+				moved++;
+			}
+		}
+		// About a fifth of the paths move to the new shard
+		assertThat(moved).isBetween(PATH_COUNT / 5 * 3 / 4, PATH_COUNT / 5 * 5 / 4);
+	}
+
+	@Test
+	void ownsEverythingWhenNotSharded() {
+		ShardAssignment shardAssignment = newShardAssignment(1);
+
+		assertThat(shardAssignment.isOwned("vault1/secret", "app/db")).isTrue();
+		assertThat(shardAssignment.shardOf("vault1/secret/app/db")).isZero();
+	}
+
+	@Test
+	void rejectsIndexOutsideShardCount() {
+		regProps.getShard().setIndex(3);
+
+		assertThatThrownBy(() -> newShardAssignment(3)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void mapsShardOptionsToProperties() {
+		assertThat(ShardAssignment.withShardProperties("--shard-index=1", "--shard-count=4", "--load"))
+				.containsExactly("--register.shard.index=1", "--register.shard.count=4", "--load");
+	}
+
+	private ShardAssignment newShardAssignment(int shardCount) {
+		regProps.getShard().setCount(shardCount);
+		ShardAssignment shardAssignment = new ShardAssignment();
+		ReflectionTestUtils.invokeMethod(shardAssignment, "setRegister", regProps);
+		ReflectionTestUtils.invokeMethod(shardAssignment, "postConstruct");
+		return shardAssignment;
+	}
+
+	private static String path(int i) {
+		return "team-" + (i % 37) + "/app-" + i;
+	}
+
+}
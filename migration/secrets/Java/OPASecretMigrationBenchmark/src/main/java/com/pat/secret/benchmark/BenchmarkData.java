@@ -0,0 +1,46 @@
+package com.pat.secret.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Synthetic secret data shared by the benchmarks
+ *
+ * @author rajeshkumar
+ *
+ */
+public final class BenchmarkData {
+
+	private BenchmarkData() {
+
+	}
+
+	/**
+	 * Secret shaped like a typical KV v2 entry, padded to the requested size
+	 *
+	 * @param valueSize - approximate size in characters of the serialized data
+	 * @return Map - Vault secret data
+	 */
+	public static Map<String, String> secretData(int valueSize) {
+		Map<String, String> secretData = new LinkedHashMap<String, String>(4);
+		secretData.put("username", "svc-migration");
+		secretData.put("url", "https://app.example.com/login");
+		secretData.put("password", randomText(Math.max(1, valueSize - 64)));
+		return secretData;
+	}
+
+	/**
+	 * @param length
+	 * @return String - printable text of the given length
+	 */
+	public static String randomText(int length) {
+		StringBuilder text = new StringBuilder(length);
+		long seed = 0x5DEECE66DL;
+		for (int i = 0; i < length; i++) {
+			seed = (seed * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+			text.append((char) ('!' + (int) ((seed >>> 17) % 94)));
+		}
+		return text.toString();
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.pat.secret.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.RSAEncrypter;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+
+/**
+ * RSA-OAEP-256 + A256GCM encryption and compact serialization of one secret,
+ * the CPU bound part of a migration. encryptSharedEncrypter is the path used by
+ * the encrypt stage, encryptNewEncrypter parses the JWK and builds a new
+ * encrypter for every secret.
+ *
+ * @author rajeshkumar
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class JWEBenchmark {
+
+	@Param({ "64", "1024", "16384" })
+	public int payloadSize;
+
+	private String secretData;
+
+	private String publicJWKJson;
+
+	private RSAEncrypter encrypter;
+
+	private JWEHeader header;
+
+	@Setup
+	public void setup() throws Exception {
+		secretData = new ObjectMapper().writeValueAsString(BenchmarkData.secretData(payloadSize));
+		RSAKey publicJWK = new RSAKeyGenerator(2048).keyID(UUID.randomUUID().toString()).generate().toPublicJWK();
+		publicJWKJson = publicJWK.toJSONString();
+		header = newHeader(publicJWK);
+		encrypter = new RSAEncrypter(publicJWK);
+	}
+
+	@Benchmark
+	public String encryptSharedEncrypter() throws Exception {
+		JWEObject jweObject = new JWEObject(header, new Payload(secretData));
+		jweObject.encrypt(encrypter);
+		return jweObject.serialize();
+	}
+
+	@Benchmark
+	public String encryptNewEncrypter() throws Exception {
+		RSAKey publicJWK = RSAKey.parse(publicJWKJson);
+		JWEObject jweObject = new JWEObject(newHeader(publicJWK), new Payload(secretData));
+		jweObject.encrypt(new RSAEncrypter(publicJWK));
+		return jweObject.serialize();
+	}
+
+	private static JWEHeader newHeader(RSAKey publicJWK) {
+		return new JWEHeader.Builder(JWEAlgorithm.RSA_OAEP_256, EncryptionMethod.A256GCM)
+				.keyID(publicJWK.getKeyID()).contentType("text/plain").build();
+	}
+
+}
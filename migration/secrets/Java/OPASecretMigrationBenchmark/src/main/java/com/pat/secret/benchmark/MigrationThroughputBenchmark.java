@@ -0,0 +1,123 @@
+package com.pat.secret.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+
+import com.pat.secret.OPASecretMigrationApplication;
+import com.pat.secret.bo.OPASecretServicesBO;
+import com.pat.secret.standin.StandInConfig;
+import com.pat.secret.standin.StandInEnvironment;
+
+/**
+ * End to end throughput of migrateHashicorpSecret against local Vault and OPA
+ * stand-ins. Every invocation migrates the whole stand-in secret engine, the score is
+ * in migrated secrets per second.
+ *
+ * @author rajeshkumar
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 10, time = 5)
+@Fork(value = 3, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class MigrationThroughputBenchmark {
+
+	private static final int SECRET_COUNT = 1000;
+
+	@Param({ "1024" })
+	public int valueSize;
+
+	private StandInEnvironment standIns;
+
+	private ConfigurableApplicationContext context;
+
+	private OPASecretServicesBO opaSecretServicesBO;
+
+	// Secrets created by the OPA stand-in before the current iteration, and invocations since
+	private long createdBeforeIteration;
+
+	private int iterationInvocations;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		StandInConfig config = new StandInConfig();
+		config.setSecretCount(SECRET_COUNT);
+		config.setValueSize(valueSize);
+		standIns = new StandInEnvironment(config);
+		standIns.start();
+		context = new SpringApplicationBuilder(MigrationContext.class).web(WebApplicationType.NONE)
+				.run(standIns.migrationArgs());
+		opaSecretServicesBO = context.getBean(OPASecretServicesBO.class);
+	}
+
+	@Setup(Level.Iteration)
+	public void startIteration() {
+		createdBeforeIteration = standIns.getOpa().getCreatedSecrets();
+		iterationInvocations = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void checkMigrated() {
+		// The score counts SECRET_COUNT secrets per invocation, fewer would inflate it
+		long created = standIns.getOpa().getCreatedSecrets() - createdBeforeIteration;
+		if (iterationInvocations == 0 || created != (long) iterationInvocations * SECRET_COUNT) {
+			throw new IllegalStateException("OPA stand-in created " + created + " secrets in " + iterationInvocations
+					+ " invocations, expected " + SECRET_COUNT + " per invocation");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		context.close();
+		standIns.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SECRET_COUNT)
+	public void migrateHashicorpSecret() {
+		long createdBefore = standIns.getOpa().getCreatedSecrets();
+		opaSecretServicesBO.migrateHashicorpSecret();
+		iterationInvocations++;
+		long created = standIns.getOpa().getCreatedSecrets() - createdBefore;
+		if (created != SECRET_COUNT) {
+			throw new IllegalStateException(
+					"OPA stand-in created " + created + " secrets, expected " + SECRET_COUNT);
+		}
+	}
+
+	/**
+	 * Migration tool context without the command line runner, the benchmark
+	 * starts every migration itself
+	 */
+	@SpringBootConfiguration
+	@EnableAutoConfiguration
+	@ComponentScan(basePackageClasses = OPASecretMigrationApplication.class, excludeFilters = @ComponentScan.Filter(
+			type = FilterType.ASSIGNABLE_TYPE, classes = OPASecretMigrationApplication.class))
+	public static class MigrationContext {
+
+	}
+
+}
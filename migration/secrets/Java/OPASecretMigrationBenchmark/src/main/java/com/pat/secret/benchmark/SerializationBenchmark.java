@@ -0,0 +1,141 @@
+package com.pat.secret.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pat.secret.dao.JsonRequestBody;
+import com.pat.secret.utility.Constants;
+import com.pat.secret.utility.JsonCodec;
+import com.pat.secret.vo.OPAVaultRequest;
+import com.pat.secret.vo.OPAVaultResponse;
+
+/**
+ * Jackson work done for every migrated secret: Vault data map to JSON,
+ * OPAVaultRequest to JSON and OPAVaultResponse parsing. The newMapper
+ * variants build an ObjectMapper per call, the sharedMapper variants reuse one.
+ * The codec variants are the path of the migration: shared JsonCodec writers,
+ * request bodies written to an okio sink and responses parsed from a byte
+ * stream. opaRequestStringSink is the String request body the codec replaced,
+ * written to the same sink.
+ *
+ * @author rajeshkumar
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class SerializationBenchmark {
+
+	@Param({ "64", "1024", "16384" })
+	public int payloadSize;
+
+	private static final MediaType JSON_MEDIA_TYPE = MediaType.parse(Constants.JASON_CONTENT_TYPE);
+
+	private final ObjectMapper sharedMapper = new ObjectMapper();
+
+	private Map<String, String> secretData;
+
+	private OPAVaultRequest opaVaultRequest;
+
+	private String responseJson;
+
+	private byte[] responseBytes;
+
+	@Setup
+	public void setup() throws Exception {
+		secretData = BenchmarkData.secretData(payloadSize);
+		opaVaultRequest = new OPAVaultRequest();
+		// A compact JWE is about 4/3 of the data plus the RSA-2048 wrapped key
+		opaVaultRequest.setSecretJwe(BenchmarkData.randomText(payloadSize * 4 / 3 + 600));
+		opaVaultRequest.setSecretDescription("Migrated from Hashicorp vault");
+		opaVaultRequest.setParentFolderId("8a6e7b4c-0d1f-4e2a-9b3c-5d6e7f8a9b0c");
+		opaVaultRequest.setName("secret-1");
+		responseJson = "{\"id\":\"1f0e2d3c-4b5a-6978-8776-a5b4c3d2e1f0\",\"name\":\"secret-1\","
+				+ "\"parent_folder_id\":\"8a6e7b4c-0d1f-4e2a-9b3c-5d6e7f8a9b0c\","
+				+ "\"description\":\"Migrated from Hashicorp vault\",\"created_at\":\"2024-01-01T00:00:00Z\","
+				+ "\"created_by\":\"svc-migration\",\"updated_at\":\"2024-01-01T00:00:00Z\","
+				+ "\"updated_by\":\"svc-migration\",\"path\":[]}";
+		responseBytes = responseJson.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public String vaultDataNewMapper() throws Exception {
+		return new ObjectMapper().writeValueAsString(secretData);
+	}
+
+	@Benchmark
+	public String vaultDataSharedMapper() throws Exception {
+		return sharedMapper.writeValueAsString(secretData);
+	}
+
+	@Benchmark
+	public String opaRequestNewMapper() throws Exception {
+		return new ObjectMapper().writeValueAsString(opaVaultRequest);
+	}
+
+	@Benchmark
+	public String opaRequestSharedMapper() throws Exception {
+		return sharedMapper.writeValueAsString(opaVaultRequest);
+	}
+
+	@Benchmark
+	public OPAVaultResponse opaResponseNewMapper() throws Exception {
+		return new ObjectMapper().readValue(responseJson, OPAVaultResponse.class);
+	}
+
+	@Benchmark
+	public OPAVaultResponse opaResponseSharedMapper() throws Exception {
+		return sharedMapper.readValue(responseJson, OPAVaultResponse.class);
+	}
+
+	@Benchmark
+	public String vaultDataCodec() throws Exception {
+		return JsonCodec.SECRET_DATA_WRITER.writeValueAsString(secretData);
+	}
+
+	@Benchmark
+	public long opaRequestStringSink() throws Exception {
+		Buffer sink = new Buffer();
+		RequestBody.create(JSON_MEDIA_TYPE, sharedMapper.writeValueAsString(opaVaultRequest)).writeTo(sink);
+		long size = sink.size();
+		sink.clear();
+		return size;
+	}
+
+	@Benchmark
+	public long opaRequestCodecSink() throws Exception {
+		Buffer sink = new Buffer();
+		new JsonRequestBody(JsonCodec.OPA_VAULT_REQUEST_WRITER, opaVaultRequest).writeTo(sink);
+		long size = sink.size();
+		sink.clear();
+		return size;
+	}
+
+	@Benchmark
+	public OPAVaultResponse opaResponseCodecStream() throws Exception {
+		return JsonCodec.OPA_VAULT_RESPONSE_READER.readValue(new ByteArrayInputStream(responseBytes));
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.pat.secret.standin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.pat.secret.benchmark.MigrationThroughputBenchmark;
+import com.pat.secret.bo.OPASecretServicesBO;
+
+/**
+ * Runs full migrations against the Vault and OPA stand-ins at several
+ * concurrency levels and reports secrets per second for every level. Every
+ * level gets a fresh migration context sized to the level.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.pat.secret.standin.LoadTestRunner \
+ *     secrets=1000000 valueSize=1024 concurrency=1,4,16,64 latencyMillis=5 errorRate=0.01
+ * </pre>
+ *
+ * Arguments are key=value pairs named after the StandInConfig fields (engines
+ * for engineCount), plus concurrency (comma separated levels) and runs
+ * (migrations per level).
+ * Arguments starting with -- are handed to the migration tool as Spring Boot
+ * properties, e.g. --register.metrics.dumpFile=load-metrics.prom
+ *
+ * @author rajeshkumar
+ *
+ */
+public class LoadTestRunner {
+
+	public static void main(String[] args) throws Exception {
+		StandInConfig config = new StandInConfig();
+		int[] levels = { 1, 4, 16 };
+		int runs = 1;
+		List<String> migrationProperties = new ArrayList<String>();
+		for (String arg : args) {
+			if (arg.startsWith("--")) {
+				migrationProperties.add(arg);
+				continue;
+			}
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected key=value but got " + arg);
+			}
+			String key = arg.substring(0, separator);
+			String value = arg.substring(separator + 1);
+			switch (key) {
+			case "secrets":
+			case "secretCount":
+				config.setSecretCount(Integer.parseInt(value));
+				break;
+			case "engines":
+			case "engineCount":
+				config.setEngineCount(Integer.parseInt(value));
+				break;
+			case "valueSize":
+				config.setValueSize(Integer.parseInt(value));
+				break;
+			case "secretsPerFolder":
+				config.setSecretsPerFolder(Integer.parseInt(value));
+				break;
+			case "latencyMillis":
+				config.setLatencyMillis(Long.parseLong(value));
+				break;
+			case "latencyJitterMillis":
+				config.setLatencyJitterMillis(Long.parseLong(value));
+				break;
+			case "errorRate":
+				config.setErrorRate(Double.parseDouble(value));
+				break;
+			case "errorStatus":
+				config.setErrorStatus(Integer.parseInt(value));
+				break;
+			case "disconnectRate":
+				config.setDisconnectRate(Double.parseDouble(value));
+				break;
+			case "throttleRate":
+				config.setThrottleRate(Double.parseDouble(value));
+				break;
+			case "retryAfterSeconds":
+				config.setRetryAfterSeconds(Integer.parseInt(value));
+				break;
+			case "opaRateLimit":
+			case "opaRateLimitPerSecond":
+				config.setOpaRateLimitPerSecond(Double.parseDouble(value));
+				break;
+			case "concurrency":
+				levels = parseLevels(value);
+				break;
+			case "runs":
+				runs = Integer.parseInt(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + key);
+			}
+		}
+
+		System.out.println("Stand-in configuration " + config);
+		List<String> results = new ArrayList<String>();
+		results.add(String.format(Locale.ROOT, "%11s %4s %12s %10s %10s %9s %9s %11s", "concurrency", "run",
+				"secrets/sec", "created", "missing", "errors", "drops", "throttled"));
+		try (StandInEnvironment environment = new StandInEnvironment(config)) {
+			environment.start();
+			for (int level : levels) {
+				try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+						MigrationThroughputBenchmark.MigrationContext.class).web(WebApplicationType.NONE)
+								.run(environment.migrationArgs(sizedTo(level, migrationProperties)))) {
+					OPASecretServicesBO opaSecretServicesBO = context.getBean(OPASecretServicesBO.class);
+					for (int run = 1; run <= runs; run++) {
+						results.add(migrate(environment, opaSecretServicesBO, config, level, run));
+						System.out.println(results.get(results.size() - 1));
+					}
+				}
+			}
+		}
+		System.out.println();
+		for (String result : results) {
+			System.out.println(result);
+		}
+	}
+
+	/**
+	 * Run one full migration and describe it as one result line
+	 */
+	private static String migrate(StandInEnvironment environment, OPASecretServicesBO opaSecretServicesBO,
+			StandInConfig config, int level, int run) {
+		OPAStandIn opa = environment.getOpa();
+		VaultStandIn vault = environment.getVault();
+		long createdBefore = opa.getCreatedSecrets();
+		long errorsBefore = vault.getInjectedErrors() + opa.getInjectedErrors();
+		long dropsBefore = vault.getInjectedDisconnects() + opa.getInjectedDisconnects();
+		long throttledBefore = opa.getThrottledCalls();
+		long start = System.nanoTime();
+		opaSecretServicesBO.migrateHashicorpSecret();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long created = opa.getCreatedSecrets() - createdBefore;
+		long expected = (long) config.getSecretCount() * environment.getSecretEngines().length;
+		return String.format(Locale.ROOT, "%11d %4d %12.1f %10d %10d %9d %9d %11d", level, run, created / seconds,
+				created, Math.max(0, expected - created),
+				vault.getInjectedErrors() + opa.getInjectedErrors() - errorsBefore,
+				vault.getInjectedDisconnects() + opa.getInjectedDisconnects() - dropsBefore,
+				opa.getThrottledCalls() - throttledBefore);
+	}
+
+	/**
+	 * Worker, crawler and connection pool settings for one concurrency level
+	 */
+	private static String[] sizedTo(int level, List<String> migrationProperties) {
+		List<String> args = new ArrayList<String>(migrationProperties);
+		args.addAll(Arrays.asList("--register.migration.readWorkers=" + level,
+				"--register.migration.createWorkers=" + level, "--register.migration.crawlConcurrency=" + level,
+				"--register.oktapam.connectionPoolSize=" + Math.max(20, level),
+				"--register.hashicorp.maxConnectionsPerRoute=" + Math.max(20, level),
+				"--register.hashicorp.maxConnectionsTotal=" + Math.max(50, 2 * level)));
+		return args.toArray(new String[0]);
+	}
+
+	private static int[] parseLevels(String value) {
+		String[] parts = value.split(",");
+		int[] levels = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			levels[i] = Integer.parseInt(parts[i].trim());
+		}
+		return levels;
+	}
+
+}
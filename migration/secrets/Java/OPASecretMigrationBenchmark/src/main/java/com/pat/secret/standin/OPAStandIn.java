@@ -0,0 +1,177 @@
+package com.pat.secret.standin;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * OPA stand-in serving the token, JWKS, secret folder and secret endpoints.
+ * Created folders are remembered so folder lookups and name conflicts behave
+ * like OPA, created secrets are only counted. Calls beyond
+ * opaRateLimitPerSecond, and a throttleRate share of all calls, are answered
+ * with 429 and a Retry-After header.
+ *
+ * @author rajeshkumar
+ *
+ */
+public class OPAStandIn extends StandInServer {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final String jwksResponse;
+
+	// Folder name to folder id
+	private final Map<String, String> folders = new ConcurrentHashMap<String, String>();
+
+	private final AtomicLong createdSecrets = new AtomicLong();
+
+	private final AtomicLong updatedSecrets = new AtomicLong();
+
+	private final AtomicLong throttledCalls = new AtomicLong();
+
+	private final Object rateLock = new Object();
+
+	private long windowStartMillis;
+
+	private int windowCalls;
+
+	/**
+	 * @param config
+	 * @throws Exception
+	 */
+	public OPAStandIn(StandInConfig config) throws Exception {
+		super(config);
+		RSAKey rsaKey = new RSAKeyGenerator(2048).keyID(UUID.randomUUID().toString()).keyUse(KeyUse.ENCRYPTION)
+				.algorithm(JWEAlgorithm.RSA_OAEP_256).generate();
+		Map<String, Object> jwks = new LinkedHashMap<String, Object>();
+		List<Object> keys = new ArrayList<Object>(1);
+		keys.add(rsaKey.toPublicJWK().toJSONObject());
+		jwks.put("keys", keys);
+		this.jwksResponse = mapper.writeValueAsString(jwks);
+	}
+
+	public long getCreatedSecrets() {
+		return createdSecrets.get();
+	}
+
+	public long getUpdatedSecrets() {
+		return updatedSecrets.get();
+	}
+
+	public long getThrottledCalls() {
+		return throttledCalls.get();
+	}
+
+	public int getFolderCount() {
+		return folders.size();
+	}
+
+	@Override
+	protected MockResponse respond(RecordedRequest request) {
+		if (throttle()) {
+			throttledCalls.incrementAndGet();
+			return json("{\"message\":\"rate limited\"}").setResponseCode(429).setHeader("Retry-After",
+					config.getRetryAfterSeconds());
+		}
+		String path = request.getRequestUrl().encodedPath();
+		String method = request.getMethod();
+		if (path.endsWith("/service_token")) {
+			return json("{\"bearer_token\":\"standin\",\"expires_at\":\"" + OffsetDateTime.now().plusHours(1)
+					+ "\",\"team_name\":\"standin\"}");
+		}
+		if (path.endsWith("/vault/jwks.json")) {
+			return json(jwksResponse);
+		}
+		if (path.endsWith("/items")) {
+			return listFolders();
+		}
+		if ("POST".equals(method) && path.endsWith("/secret_folders")) {
+			return createFolder(request);
+		}
+		if ("POST".equals(method) && path.endsWith("/secrets")) {
+			createdSecrets.incrementAndGet();
+			return json("{\"id\":\"" + UUID.randomUUID() + "\"}").setResponseCode(201);
+		}
+		if ("PUT".equals(method)) {
+			updatedSecrets.incrementAndGet();
+			return new MockResponse().setResponseCode(204);
+		}
+		return json("{\"message\":\"not found\"}").setResponseCode(404);
+	}
+
+	/**
+	 * Fixed one second window limit plus random throttling
+	 *
+	 * @return boolean - true when the call has to be answered with 429
+	 */
+	private boolean throttle() {
+		if (chance(config.getThrottleRate())) {
+			return true;
+		}
+		double limit = config.getOpaRateLimitPerSecond();
+		if (limit <= 0) {
+			return false;
+		}
+		synchronized (rateLock) {
+			long now = System.currentTimeMillis();
+			if (now - windowStartMillis >= 1000) {
+				windowStartMillis = now;
+				windowCalls = 0;
+			}
+			return ++windowCalls > limit;
+		}
+	}
+
+	private MockResponse listFolders() {
+		StringBuilder list = new StringBuilder(64 * folders.size() + 16);
+		list.append("{\"list\":[");
+		boolean first = true;
+		for (Map.Entry<String, String> folder : folders.entrySet()) {
+			list.append(first ? "" : ",").append("{\"id\":\"").append(folder.getValue()).append("\",\"name\":")
+					.append(quote(folder.getKey())).append(",\"type\":\"secret_folder\"}");
+			first = false;
+		}
+		list.append("]}");
+		return json(list.toString());
+	}
+
+	private MockResponse createFolder(RecordedRequest request) {
+		String name;
+		try {
+			JsonNode body = mapper.readTree(request.getBody().readUtf8());
+			name = body.path("name").asText();
+		} catch (Exception e) {
+			return json("{\"message\":\"bad request\"}").setResponseCode(400);
+		}
+		String folderId = UUID.randomUUID().toString();
+		if (folders.putIfAbsent(name, folderId) != null) {
+			return json("{\"message\":\"folder already exists\"}").setResponseCode(409);
+		}
+		return json("{\"id\":\"" + folderId + "\",\"name\":" + quote(name) + ",\"type\":\"secret_folder\"}")
+				.setResponseCode(201);
+	}
+
+	private String quote(String value) {
+		try {
+			return mapper.writeValueAsString(value);
+		} catch (Exception e) {
+			return "\"\"";
+		}
+	}
+
+}
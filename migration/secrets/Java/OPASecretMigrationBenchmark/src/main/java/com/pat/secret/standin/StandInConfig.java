@@ -0,0 +1,153 @@
+package com.pat.secret.standin;
+
+/**
+ * Dataset and fault injection settings of the Vault and OPA stand-ins
+ *
+ * @author rajeshkumar
+ *
+ */
+public class StandInConfig {
+
+	// Number of secrets in every Vault secret engine
+	private int secretCount = 1000;
+
+	// Number of Vault secret engines served
+	private int engineCount = 1;
+
+	// Approximate size in characters of every secret
+	private int valueSize = 1024;
+
+	// Secrets listed per Vault folder, larger engines are split into folder-N/ sub folders
+	private int secretsPerFolder = 1000;
+
+	// Fixed delay before every response
+	private long latencyMillis = 0;
+
+	// Random extra delay, up to this value, before every response
+	private long latencyJitterMillis = 0;
+
+	// Share of calls answered with errorStatus
+	private double errorRate = 0;
+
+	// HTTP status of injected errors
+	private int errorStatus = 503;
+
+	// Share of calls whose connection is dropped after the request is read
+	private double disconnectRate = 0;
+
+	// Share of OPA calls answered with 429
+	private double throttleRate = 0;
+
+	// Retry-After of throttled OPA calls
+	private int retryAfterSeconds = 1;
+
+	// OPA tenant rate limit, calls above it are answered with 429. 0 for no limit
+	private double opaRateLimitPerSecond = 0;
+
+	public int getSecretCount() {
+		return secretCount;
+	}
+
+	public void setSecretCount(int secretCount) {
+		this.secretCount = secretCount;
+	}
+
+	public int getEngineCount() {
+		return engineCount;
+	}
+
+	public void setEngineCount(int engineCount) {
+		this.engineCount = engineCount;
+	}
+
+	public int getValueSize() {
+		return valueSize;
+	}
+
+	public void setValueSize(int valueSize) {
+		this.valueSize = valueSize;
+	}
+
+	public int getSecretsPerFolder() {
+		return secretsPerFolder;
+	}
+
+	public void setSecretsPerFolder(int secretsPerFolder) {
+		this.secretsPerFolder = secretsPerFolder;
+	}
+
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	public long getLatencyJitterMillis() {
+		return latencyJitterMillis;
+	}
+
+	public void setLatencyJitterMillis(long latencyJitterMillis) {
+		this.latencyJitterMillis = latencyJitterMillis;
+	}
+
+	public double getErrorRate() {
+		return errorRate;
+	}
+
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	public int getErrorStatus() {
+		return errorStatus;
+	}
+
+	public void setErrorStatus(int errorStatus) {
+		this.errorStatus = errorStatus;
+	}
+
+	public double getDisconnectRate() {
+		return disconnectRate;
+	}
+
+	public void setDisconnectRate(double disconnectRate) {
+		this.disconnectRate = disconnectRate;
+	}
+
+	public double getThrottleRate() {
+		return throttleRate;
+	}
+
+	public void setThrottleRate(double throttleRate) {
+		this.throttleRate = throttleRate;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	public void setRetryAfterSeconds(int retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public double getOpaRateLimitPerSecond() {
+		return opaRateLimitPerSecond;
+	}
+
+	public void setOpaRateLimitPerSecond(double opaRateLimitPerSecond) {
+		this.opaRateLimitPerSecond = opaRateLimitPerSecond;
+	}
+
+	@Override
+	public String toString() {
+		return "StandInConfig [secretCount=" + secretCount + ", engineCount=" + engineCount + ", valueSize="
+				+ valueSize + ", secretsPerFolder=" + secretsPerFolder + ", latencyMillis=" + latencyMillis
+				+ ", latencyJitterMillis=" + latencyJitterMillis + ", errorRate=" + errorRate
+				+ ", errorStatus=" + errorStatus + ", disconnectRate=" + disconnectRate
+				+ ", throttleRate=" + throttleRate + ", retryAfterSeconds=" + retryAfterSeconds
+				+ ", opaRateLimitPerSecond=" + opaRateLimitPerSecond + "]";
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.pat.secret.standin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Vault stand-in and an OPA stand-in sharing one configuration, plus the
+ * command line arguments pointing the migration tool to them
+ *
+ * @author rajeshkumar
+ *
+ */
+public class StandInEnvironment implements Closeable {
+
+	public static final String SECRET_ENGINE = "standin";
+
+	private static final String TEAM_URI = "/v1/teams/standin";
+
+	private final String[] secretEngines;
+
+	private final VaultStandIn vault;
+
+	private final OPAStandIn opa;
+
+	/**
+	 * @param config
+	 * @throws Exception
+	 */
+	public StandInEnvironment(StandInConfig config) throws Exception {
+		// standin, standin-2, standin-3, ...
+		this.secretEngines = new String[Math.max(1, config.getEngineCount())];
+		for (int i = 0; i < secretEngines.length; i++) {
+			secretEngines[i] = i == 0 ? SECRET_ENGINE : SECRET_ENGINE + "-" + (i + 1);
+		}
+		this.vault = new VaultStandIn(config, secretEngines);
+		this.opa = new OPAStandIn(config);
+	}
+
+	/**
+	 * Start both stand-ins on free local ports
+	 *
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+		vault.start();
+		opa.start();
+	}
+
+	/**
+	 * @return String[] - names of the secret engines served by the Vault stand-in
+	 */
+	public String[] getSecretEngines() {
+		return secretEngines.clone();
+	}
+
+	public VaultStandIn getVault() {
+		return vault;
+	}
+
+	public OPAStandIn getOpa() {
+		return opa;
+	}
+
+	/**
+	 * Command line arguments pointing the migration tool to the stand-ins. The
+	 * client side OPA rate limit is lifted so the stand-in limit is the only one
+	 * applied, journal and delta state are disabled so every run migrates the
+	 * whole engines.
+	 *
+	 * @param extraArgs - additional Spring Boot command line properties
+	 * @return String[] - Spring Boot command line properties
+	 */
+	public String[] migrationArgs(String... extraArgs) {
+		List<String> args = new ArrayList<String>(Arrays.asList("--register.oktapam.host=http://127.0.0.1:" + opa.getPort(),
+				"--register.oktapam.apiuri=" + TEAM_URI, "--register.oktapam.clientID=standin",
+				"--register.oktapam.clientSecret=standin", "--register.oktapam.resourceGroupId=rg",
+				"--register.oktapam.projectId=project", "--register.oktapam.parentSecretFolderId=parent",
+				"--register.oktapam.rateLimitPerSecond=1000000", "--register.oktapam.rateLimitMaxPerSecond=1000000",
+				"--register.hashicorp.host=127.0.0.1", "--register.hashicorp.port=" + vault.getPort(),
+				"--register.hashicorp.scheme=http", "--register.hashicorp.token=standin",
+				"--register.hashicorp.secretengine=" + String.join(",", secretEngines), "--register.migration.journalFile=",
+				"--register.migration.deltaStateFile=", "--logging.level.com.pat=WARN",
+				"--logging.level.okhttp3.mockwebserver=WARN"));
+		args.addAll(Arrays.asList(extraArgs));
+		return args.toArray(new String[0]);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			vault.close();
+		} finally {
+			opa.close();
+		}
+	}
+
+}
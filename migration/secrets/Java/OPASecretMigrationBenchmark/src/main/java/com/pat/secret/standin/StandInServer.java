@@ -0,0 +1,175 @@
+package com.pat.secret.standin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ServerSocketFactory;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * MockWebServer based stand-in with latency and fault injection. Recorded
+ * requests are discarded as they arrive so memory stays flat over millions of
+ * calls.
+ *
+ * @author rajeshkumar
+ *
+ */
+public abstract class StandInServer implements Closeable {
+
+	// Strong reference, java.util.logging only keeps weak references to configured loggers
+	private static final Logger MOCK_WEB_SERVER_LOGGER = Logger.getLogger(MockWebServer.class.getName());
+
+	protected final StandInConfig config;
+
+	private final MockWebServer server = new MockWebServer();
+
+	private final AtomicLong injectedErrors = new AtomicLong();
+
+	private final AtomicLong injectedDisconnects = new AtomicLong();
+
+	private Thread drainer;
+
+	protected StandInServer(StandInConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * Answer one call without any fault
+	 *
+	 * @param request
+	 * @return MockResponse
+	 */
+	protected abstract MockResponse respond(RecordedRequest request);
+
+	/**
+	 * Start the stand-in on a free local port
+	 *
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+		// MockWebServer logs every call through java.util.logging
+		MOCK_WEB_SERVER_LOGGER.setLevel(Level.WARNING);
+		server.setServerSocketFactory(new NoDelayServerSocketFactory());
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return withLatency(injectFault(request));
+			}
+		});
+		server.start();
+		drainer = new Thread(this::drain, getClass().getSimpleName() + "-drainer");
+		drainer.setDaemon(true);
+		drainer.start();
+	}
+
+	public int getPort() {
+		return server.getPort();
+	}
+
+	public long getInjectedErrors() {
+		return injectedErrors.get();
+	}
+
+	public long getInjectedDisconnects() {
+		return injectedDisconnects.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (drainer != null) {
+			drainer.interrupt();
+		}
+		server.shutdown();
+	}
+
+	protected static MockResponse json(String body) {
+		return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+	}
+
+	protected static boolean chance(double rate) {
+		return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+	}
+
+	private MockResponse injectFault(RecordedRequest request) {
+		if (chance(config.getDisconnectRate())) {
+			injectedDisconnects.incrementAndGet();
+			return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+		}
+		if (chance(config.getErrorRate())) {
+			injectedErrors.incrementAndGet();
+			return json("{\"errors\":[\"injected error\"]}").setResponseCode(config.getErrorStatus());
+		}
+		return respond(request);
+	}
+
+	private MockResponse withLatency(MockResponse response) {
+		long delayMillis = config.getLatencyMillis();
+		if (config.getLatencyJitterMillis() > 0) {
+			delayMillis += ThreadLocalRandom.current().nextLong(config.getLatencyJitterMillis() + 1);
+		}
+		if (delayMillis > 0) {
+			response.setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+		}
+		return response;
+	}
+
+	private void drain() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				server.takeRequest();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * MockWebServer writes headers and body separately. Without TCP_NODELAY the
+	 * body waits for the delayed ACK of the headers, adding about 40 ms to every
+	 * call.
+	 */
+	private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+		@Override
+		public ServerSocket createServerSocket() throws IOException {
+			return new ServerSocket() {
+				@Override
+				public Socket accept() throws IOException {
+					Socket socket = new Socket();
+					implAccept(socket);
+					socket.setTcpNoDelay(true);
+					return socket;
+				}
+			};
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.pat.secret.standin;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pat.secret.benchmark.BenchmarkData;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Hashicorp vault KV v2 stand-in serving synthetic secret engines of the same
+ * size. Secrets are generated on the fly from their index, so an engine can hold
+ * millions of secrets without keeping them in memory. Engines larger than
+ * secretsPerFolder are split into folder-N/ sub folders.
+ *
+ * @author rajeshkumar
+ *
+ */
+public class VaultStandIn extends StandInServer {
+
+	private final Set<String> secretEngines;
+
+	private final String secretPrefix;
+
+	private final String secretSuffix;
+
+	/**
+	 * @param config
+	 * @param secretEngines - names of the secret engines served
+	 * @throws Exception
+	 */
+	public VaultStandIn(StandInConfig config, String... secretEngines) throws Exception {
+		super(config);
+		this.secretEngines = new HashSet<String>(Arrays.asList(secretEngines));
+		String secretData = new ObjectMapper().writeValueAsString(BenchmarkData.secretData(config.getValueSize()));
+		// The secret name is spliced into every response so no two secrets are equal
+		this.secretPrefix = "{\"data\":{\"data\":{\"name\":\"";
+		this.secretSuffix = "\"," + secretData.substring(1)
+				+ ",\"metadata\":{\"created_time\":\"2024-01-01T00:00:00.000000Z\",\"version\":1}}}";
+	}
+
+	@Override
+	protected MockResponse respond(RecordedRequest request) {
+		HttpUrl url = request.getRequestUrl();
+		String path = url.encodedPath();
+		String secretEngine = engineOf(path);
+		if (!secretEngines.contains(secretEngine)) {
+			return json("{\"errors\":[]}").setResponseCode(404);
+		}
+		String metadataPrefix = "/v1/" + secretEngine + "/metadata/";
+		String dataPrefix = "/v1/" + secretEngine + "/data/";
+		if (path.startsWith(metadataPrefix) || path.equals(metadataPrefix.substring(0, metadataPrefix.length() - 1))) {
+			String folder = path.length() > metadataPrefix.length() ? path.substring(metadataPrefix.length()) : "";
+			if ("true".equals(url.queryParameter("list"))) {
+				return list(folder);
+			}
+			return json("{\"data\":{\"current_version\":1,\"updated_time\":\"2024-01-01T00:00:00.000000Z\"}}");
+		}
+		if (path.startsWith(dataPrefix)) {
+			return json(secretPrefix + path.substring(dataPrefix.length()) + secretSuffix);
+		}
+		return json("{\"errors\":[]}").setResponseCode(404);
+	}
+
+	/**
+	 * List the engine root or one folder-N/ folder
+	 *
+	 * @param folder
+	 * @return MockResponse
+	 */
+	private MockResponse list(String folder) {
+		int secretCount = config.getSecretCount();
+		int perFolder = Math.max(1, config.getSecretsPerFolder());
+		StringBuilder keys = new StringBuilder(64 * Math.min(secretCount, perFolder) + 32);
+		keys.append("{\"data\":{\"keys\":[");
+		if (folder.isEmpty() && secretCount > perFolder) {
+			int folders = (secretCount + perFolder - 1) / perFolder;
+			for (int f = 0; f < folders; f++) {
+				keys.append(f == 0 ? "\"" : ",\"").append("folder-").append(f).append("/\"");
+			}
+		} else {
+			int first = 0;
+			int last = secretCount;
+			if (!folder.isEmpty()) {
+				int f = parseFolder(folder);
+				if (f < 0 || secretCount <= perFolder) {
+					return json("{\"errors\":[]}").setResponseCode(404);
+				}
+				first = f * perFolder;
+				last = Math.min(secretCount, first + perFolder);
+			}
+			for (int i = first; i < last; i++) {
+				keys.append(i == first ? "\"" : ",\"").append("secret-").append(i).append('"');
+			}
+		}
+		keys.append("]}}");
+		return json(keys.toString());
+	}
+
+	/**
+	 * @param path - /v1/engine/...
+	 * @return String - the engine segment of the path, empty when there is none
+	 */
+	private static String engineOf(String path) {
+		if (!path.startsWith("/v1/")) {
+			return "";
+		}
+		int end = path.indexOf('/', 4);
+		return end < 0 ? path.substring(4) : path.substring(4, end);
+	}
+
+	private static int parseFolder(String folder) {
+		String name = folder.endsWith("/") ? folder.substring(0, folder.length() - 1) : folder;
+		if (!name.startsWith("folder-")) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(name.substring("folder-".length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}